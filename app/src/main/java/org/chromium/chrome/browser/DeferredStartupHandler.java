@@ -29,6 +29,7 @@ import org.chromium.base.TraceEvent;
 import org.chromium.base.VisibleForTesting;
 import org.chromium.base.metrics.RecordHistogram;
 import org.chromium.chrome.browser.bookmarkswidget.BookmarkWidgetProvider;
+import org.chromium.chrome.browser.contextualsearch.ContextualSearchBlacklist;
 import org.chromium.chrome.browser.crash.MinidumpUploadService;
 import org.chromium.chrome.browser.init.ProcessInitializationHandler;
 import org.chromium.chrome.browser.locale.LocaleManager;
@@ -275,6 +276,9 @@ public class DeferredStartupHandler {
 
                     removeSnapshotDatabase();
 
+                    // Extend the Contextual Search blacklist with the stop words of the locale.
+                    ContextualSearchBlacklist.loadLexiconForDefaultLocale(mAppContext);
+
                     cacheIsChromeDefaultBrowser();
 
                     RecordHistogram.recordLongTimesHistogram(
@@ -285,6 +289,7 @@ public class DeferredStartupHandler {
                     // Warm up all web app shared prefs. This must be run after the WebappRegistry
                     // instance is initialized.
                     WebappRegistry.warmUpSharedPrefs();
+                    WebappRegistry.migrateImagesToIconStore();
 
                     return null;
                 } finally {
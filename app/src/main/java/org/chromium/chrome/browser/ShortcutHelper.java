@@ -236,20 +236,8 @@ public class ShortcutHelper {
     @SuppressWarnings("unused")
     @CalledByNative
     private static void storeWebappSplashImage(final String id, final Bitmap splashImage) {
-        final WebappDataStorage storage = WebappRegistry.getInstance().getWebappDataStorage(id);
-        if (storage != null) {
-            new AsyncTask<Void, Void, String>() {
-                @Override
-                protected String doInBackground(Void... args0) {
-                    return encodeBitmapAsString(splashImage);
-                }
-
-                @Override
-                protected void onPostExecute(String encodedImage) {
-                    storage.updateSplashScreenImage(encodedImage);
-                }
-            }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-        }
+        WebappDataStorage storage = WebappRegistry.getInstance().getWebappDataStorage(id);
+        if (storage != null) storage.updateSplashScreenImage(splashImage);
     }
 
     /**
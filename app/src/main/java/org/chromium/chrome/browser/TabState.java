@@ -5,7 +5,6 @@
 package org.chromium.chrome.browser;
 
 import android.graphics.Color;
-import android.os.Build;
 import android.os.Handler;
 import android.util.Log;
 import android.util.Pair;
@@ -16,6 +15,7 @@ import org.chromium.chrome.browser.tab.Tab;
 import org.chromium.content.browser.crypto.CipherFactory;
 import org.chromium.content_public.browser.WebContents;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -24,13 +24,14 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.security.GeneralSecurityException;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
 
 /**
  * Object that contains the state of a tab, including its navigation history.
@@ -56,6 +57,12 @@ public class TabState {
     /** Checks if the TabState header is loaded properly. */
     private static final long KEY_CHECKER = 0;
 
+    /** Suffix of the file a TabState is written to before it replaces the real one. */
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /** Amount of WebContents state that is encrypted at a time. */
+    private static final int CIPHER_CHUNK_SIZE = 64 * 1024;
+
     /** Overrides the Chrome channel/package name to test a variant channel-specific behaviour. */
     private static String sChannelNameOverrideForTest;
 
@@ -151,7 +158,15 @@ public class TabState {
      * @return TabState that has been restored, or null if it failed.
      */
     public static TabState restoreTabState(File stateFolder, int id) {
-        // First try finding an unencrypted file.
+        // Tabs saved through the segment store take precedence over standalone files, which are
+        // only left behind by older versions.
+        TabStateSegmentStore store = TabStateSegmentStore.getExistingInstance(stateFolder);
+        if (store != null) {
+            TabState tabState = store.restoreTabState(id);
+            if (tabState != null) return tabState;
+        }
+
+        // Then try finding an unencrypted file.
         boolean encrypted = false;
         File file = getTabStateFile(stateFolder, id, encrypted);
 
@@ -192,19 +207,23 @@ public class TabState {
 
     /**
      * Restores a particular TabState file from storage.
-     * @param input Location of the TabState file.
+     * @param input Stream positioned at the start of the TabState data.  It is closed once read.
      * @param encrypted Whether the file is encrypted or not.
      * @return TabState that has been restored, or null if it failed.
      */
-    private static TabState readState(FileInputStream input, boolean encrypted) throws IOException {
+    static TabState readState(FileInputStream input, boolean encrypted) throws IOException {
         DataInputStream stream = null;
+        DecryptingInputStream decryptingStream = null;
         if (encrypted) {
             Cipher cipher = CipherFactory.getInstance().getCipher(Cipher.DECRYPT_MODE);
-            if (cipher != null) {
-                stream = new DataInputStream(new CipherInputStream(input, cipher));
+            if (cipher == null) {
+                // Without the key there is no way to read the file.
+                StreamUtil.closeQuietly(input);
+                return null;
             }
-        }
-        if (stream == null) {
+            decryptingStream = new DecryptingInputStream(input, cipher);
+            stream = new DataInputStream(decryptingStream);
+        } else {
             stream = new DataInputStream(input);
         }
         try {
@@ -216,11 +235,10 @@ public class TabState {
             tabState.timestampMillis = stream.readLong();
             int size = stream.readInt();
             if (encrypted) {
-                // If it's encrypted, we have to read the stream normally to apply the cipher.
-                byte[] state = new byte[size];
-                stream.readFully(state);
+                // If it's encrypted, we have to read the stream normally to apply the cipher. The
+                // state is decrypted straight into the direct buffer, chunk by chunk.
                 tabState.contentsState = new WebContentsState(ByteBuffer.allocateDirect(size));
-                tabState.contentsState.buffer().put(state);
+                decryptingStream.readFully(tabState.contentsState.buffer());
             } else {
                 // If not, we can mmap the file directly, saving time and copies into the java heap.
                 FileChannel channel = input.getChannel();
@@ -285,6 +303,111 @@ public class TabState {
         }
     }
 
+    /**
+     * Decrypts a TabState file chunk by chunk.  Unlike {@link javax.crypto.CipherInputStream}, it
+     * can decrypt straight into a direct ByteBuffer, so the WebContents state of an incognito tab
+     * never has to pass through the Java heap.
+     */
+    private static class DecryptingInputStream extends InputStream {
+        private final FileInputStream mInput;
+        private final FileChannel mChannel;
+        private final Cipher mCipher;
+        private final ByteBuffer mCipherText = ByteBuffer.allocate(CIPHER_CHUNK_SIZE);
+
+        /** Decrypted bytes that have not been read yet. */
+        private ByteBuffer mPlainText = ByteBuffer.allocate(0);
+        private boolean mFinished;
+
+        public DecryptingInputStream(FileInputStream input, Cipher cipher) {
+            mInput = input;
+            mChannel = input.getChannel();
+            mCipher = cipher;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fillPlainText()) return -1;
+            return mPlainText.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            if (!fillPlainText()) return -1;
+            int count = Math.min(length, mPlainText.remaining());
+            mPlainText.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mInput.close();
+        }
+
+        /**
+         * Decrypts exactly as many bytes as {@code target} has room for into it.
+         * @param target Buffer to fill.
+         */
+        public void readFully(ByteBuffer target) throws IOException {
+            while (target.hasRemaining()) {
+                if (mPlainText.hasRemaining()) {
+                    int count = Math.min(target.remaining(), mPlainText.remaining());
+                    ByteBuffer pending = mPlainText.slice();
+                    pending.limit(count);
+                    target.put(pending);
+                    mPlainText.position(mPlainText.position() + count);
+                } else if (!decryptNextChunk(target)) {
+                    throw new EOFException();
+                }
+            }
+        }
+
+        /** @return Whether there are decrypted bytes to read, false at the end of the file. */
+        private boolean fillPlainText() throws IOException {
+            while (!mPlainText.hasRemaining()) {
+                if (!decryptNextChunk(null)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Decrypts the next chunk of the file.
+         * @param target Buffer to decrypt into if it can hold the whole chunk.  Otherwise, or if
+         *               null, the chunk is decrypted into the pending plain text.
+         * @return Whether a chunk was decrypted, false if the end of the file was already reached.
+         */
+        private boolean decryptNextChunk(ByteBuffer target) throws IOException {
+            if (mFinished) return false;
+
+            mCipherText.clear();
+            boolean endOfFile = mChannel.read(mCipherText) < 0;
+            mCipherText.flip();
+
+            ByteBuffer output = target;
+            int outputSize = mCipher.getOutputSize(mCipherText.remaining());
+            if (output == null || output.remaining() < outputSize) {
+                if (mPlainText.capacity() < outputSize) {
+                    mPlainText = ByteBuffer.allocate(outputSize);
+                }
+                mPlainText.clear();
+                output = mPlainText;
+            }
+
+            try {
+                if (endOfFile) {
+                    mFinished = true;
+                    mCipher.doFinal(mCipherText, output);
+                } else {
+                    mCipher.update(mCipherText, output);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Failed to decrypt tab state: " + e);
+            }
+            if (output == mPlainText) mPlainText.flip();
+            return true;
+        }
+    }
+
     /**
      * Writes the TabState to disk. This method may be called on either the UI or background thread.
      * @param file File to write the tab's state to.
@@ -296,62 +419,138 @@ public class TabState {
             return;
         }
 
-        // Create the byte array from contentsState before opening the FileOutputStream, in case
-        // contentsState.buffer is an instance of MappedByteBuffer that is mapped to
-        // the tab state file.
-        byte[] contentsStateBytes = new byte[state.contentsState.buffer().limit()];
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            state.contentsState.buffer().rewind();
-            state.contentsState.buffer().get(contentsStateBytes);
-        } else {
-            // For JellyBean and below a bug in MappedByteBufferAdapter causes rewind to not be
-            // propagated to the underlying ByteBuffer, and results in an underflow exception. See:
-            // http://b.android.com/53637.
-            for (int i = 0; i < state.contentsState.buffer().limit(); i++) {
-                contentsStateBytes[i] = state.contentsState.buffer().get(i);
+        Cipher cipher = null;
+        if (encrypted) {
+            cipher = CipherFactory.getInstance().getCipher(Cipher.ENCRYPT_MODE);
+            if (cipher == null) {
+                // If cipher is null, getRandomBytes failed, which means encryption is
+                // meaningless. Therefore, do not save anything. This will cause users
+                // to lose Incognito state in certain cases. That is annoying, but is
+                // better than failing to provide the guarantee of Incognito Mode.
+                return;
             }
         }
 
-        DataOutputStream dataOutputStream = null;
+        // Opening a FileOutputStream truncates the file, so if contentsState.buffer is a
+        // MappedByteBuffer it may be mapped to the very file being written.  Write such states
+        // to a temporary file that replaces the tab state file once complete.
+        boolean useTempFile = state.contentsState.buffer() instanceof MappedByteBuffer;
+        File outputFile = useTempFile ? new File(file.getPath() + TEMP_FILE_SUFFIX) : file;
+
         FileOutputStream fileOutputStream = null;
+        boolean saved = false;
         try {
-            fileOutputStream = new FileOutputStream(file);
-
+            fileOutputStream = new FileOutputStream(outputFile);
             if (encrypted) {
-                Cipher cipher = CipherFactory.getInstance().getCipher(Cipher.ENCRYPT_MODE);
-                if (cipher != null) {
-                    dataOutputStream = new DataOutputStream(new CipherOutputStream(
-                            fileOutputStream, cipher));
-                } else {
-                    // If cipher is null, getRandomBytes failed, which means encryption is
-                    // meaningless. Therefore, do not save anything. This will cause users
-                    // to lose Incognito state in certain cases. That is annoying, but is
-                    // better than failing to provide the guarantee of Incognito Mode.
-                    return;
-                }
+                writeEncryptedState(fileOutputStream.getChannel(), state, cipher);
             } else {
-                dataOutputStream = new DataOutputStream(fileOutputStream);
+                writeState(fileOutputStream.getChannel(), state);
             }
-            if (encrypted) {
-                dataOutputStream.writeLong(KEY_CHECKER);
-            }
-            dataOutputStream.writeLong(state.timestampMillis);
-            dataOutputStream.writeInt(contentsStateBytes.length);
-            dataOutputStream.write(contentsStateBytes);
-            dataOutputStream.writeInt(state.parentId);
-            dataOutputStream.writeUTF(state.openerAppId != null ? state.openerAppId : "");
-            dataOutputStream.writeInt(state.contentsState.version());
-            dataOutputStream.writeLong(state.syncId);
-            dataOutputStream.writeBoolean(state.shouldPreserve);
-            dataOutputStream.writeInt(state.themeColor);
+            fileOutputStream.close();
+            fileOutputStream = null;
+            saved = !useTempFile || outputFile.renameTo(file);
+            if (!saved) Log.w(TAG, "Failed to replace TabState file: " + file);
         } catch (FileNotFoundException e) {
             Log.w(TAG, "FileNotFoundException while attempting to save TabState.");
         } catch (IOException e) {
             Log.w(TAG, "IOException while attempting to save TabState.");
+        } catch (GeneralSecurityException e) {
+            Log.w(TAG, "Encryption failed while attempting to save TabState.");
         } finally {
-            StreamUtil.closeQuietly(dataOutputStream);
             StreamUtil.closeQuietly(fileOutputStream);
+            if (useTempFile && !saved && outputFile.exists() && !outputFile.delete()) {
+                Log.w(TAG, "Failed to delete temporary TabState file: " + outputFile);
+            }
+        }
+    }
+
+    /**
+     * Writes the unencrypted TabState to the current position of the channel, using the format
+     * read by {@link #readState}.  The WebContents state is written straight out of its buffer,
+     * gathered together with the fields surrounding it into a single write.
+     * @param channel Channel to write to.
+     * @param state State object obtained from from {@link Tab#getState()}.
+     * @return The number of bytes written.
+     */
+    static long writeState(FileChannel channel, TabState state) throws IOException {
+        ByteBuffer contents = getContentsStateBuffer(state);
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putLong(state.timestampMillis).putInt(contents.remaining()).flip();
+        ByteBuffer trailer = serializeTrailer(state);
+
+        ByteBuffer[] buffers = new ByteBuffer[] {header, contents, trailer};
+        long total = header.remaining() + contents.remaining() + trailer.remaining();
+        long remaining = total;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
         }
+        return total;
+    }
+
+    /**
+     * Encrypts the TabState chunk by chunk into the channel, so that the WebContents state never
+     * has to be copied in full into the Java heap.
+     */
+    private static void writeEncryptedState(FileChannel channel, TabState state, Cipher cipher)
+            throws IOException, GeneralSecurityException {
+        ByteBuffer contents = getContentsStateBuffer(state);
+        ByteBuffer header = ByteBuffer.allocate(20);
+        header.putLong(KEY_CHECKER).putLong(state.timestampMillis).putInt(contents.remaining());
+        header.flip();
+
+        ByteBuffer output = ByteBuffer.allocate(cipher.getOutputSize(CIPHER_CHUNK_SIZE));
+        output = encryptChunk(channel, cipher, header, output);
+        while (contents.hasRemaining()) {
+            ByteBuffer chunk = contents.slice();
+            chunk.limit(Math.min(CIPHER_CHUNK_SIZE, chunk.remaining()));
+            contents.position(contents.position() + chunk.remaining());
+            output = encryptChunk(channel, cipher, chunk, output);
+        }
+        output = encryptChunk(channel, cipher, serializeTrailer(state), output);
+
+        output.clear();
+        cipher.doFinal(ByteBuffer.allocate(0), output);
+        output.flip();
+        while (output.hasRemaining()) channel.write(output);
+    }
+
+    /**
+     * Encrypts the input and writes the result to the channel.
+     * @return The output buffer, which is grown if it was too small to hold the result.
+     */
+    private static ByteBuffer encryptChunk(FileChannel channel, Cipher cipher, ByteBuffer input,
+            ByteBuffer output) throws IOException, GeneralSecurityException {
+        int outputSize = cipher.getOutputSize(input.remaining());
+        if (output.capacity() < outputSize) output = ByteBuffer.allocate(outputSize);
+        output.clear();
+        cipher.update(input, output);
+        output.flip();
+        while (output.hasRemaining()) channel.write(output);
+        return output;
+    }
+
+    /**
+     * @return A view of the WebContents state spanning the whole buffer.  The view has its own
+     *         position, so the buffer shared with the tab is left untouched.
+     */
+    private static ByteBuffer getContentsStateBuffer(TabState state) {
+        ByteBuffer buffer = state.contentsState.buffer().duplicate();
+        buffer.rewind();
+        return buffer;
+    }
+
+    /** @return The fields that follow the WebContents state in the serialized TabState. */
+    private static ByteBuffer serializeTrailer(TabState state) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(output);
+        stream.writeInt(state.parentId);
+        stream.writeUTF(state.openerAppId != null ? state.openerAppId : "");
+        stream.writeInt(state.contentsState.version());
+        stream.writeLong(state.syncId);
+        stream.writeBoolean(state.shouldPreserve);
+        stream.writeInt(state.themeColor);
+        stream.close();
+        return ByteBuffer.wrap(output.toByteArray());
     }
 
     /**
@@ -0,0 +1,500 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser;
+
+import android.os.AsyncTask;
+import android.util.SparseArray;
+
+import org.chromium.base.Log;
+import org.chromium.base.StreamUtil;
+import org.chromium.base.VisibleForTesting;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only store for unencrypted {@link TabState}s.
+ *
+ * Rather than writing one file per tab, every save appends a record to a single segment file in
+ * the tab state directory, and an in-memory index maps each tab ID to its most recent record.
+ * Saving a tab therefore costs a write proportional to the size of its state, without opening a
+ * file.  Records that have been superseded or deleted are reclaimed by a background compaction
+ * once they make up the majority of the segment.
+ *
+ * The segment starts with a header ({@link #FILE_MAGIC}, {@link #FORMAT_VERSION}) followed by
+ * records of the form [int tabId][int payloadLength][payload].  The payload uses the same format
+ * as a standalone TabState file, so it can be read through {@link TabState#readState} and its
+ * WebContents state can be mmap'd directly out of the segment.  A payload length of
+ * {@link #TOMBSTONE} marks the tab as deleted, while a length of {@link #UNCOMMITTED} marks a
+ * record whose write never finished; the segment is truncated at the first such record.
+ */
+public class TabStateSegmentStore {
+    private static final String TAG = "TabStateStore";
+
+    /** Name of the segment file inside of a tab state directory. */
+    public static final String SEGMENT_FILE_NAME = "tab_segment";
+
+    /** Suffix of the temporary file used while compacting the segment. */
+    private static final String COMPACTION_FILE_SUFFIX = ".compact";
+
+    private static final int FILE_MAGIC = 0x54425347;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int UNCOMMITTED = 0;
+    private static final int TOMBSTONE = -1;
+
+    /** Stale bytes need to exceed this before compaction is considered. */
+    private static final long COMPACTION_MIN_STALE_BYTES = 2 * 1024 * 1024;
+
+    /** Stores keyed by the absolute path of the directory they live in. */
+    private static final Map<String, TabStateSegmentStore> sStores = new HashMap<>();
+
+    /** Location of the payload of the latest record for a tab. */
+    private static final class RecordLocation {
+        public final long offset;
+        public final int length;
+
+        public RecordLocation(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File mDirectory;
+    private final File mSegmentFile;
+    private final SparseArray<RecordLocation> mIndex = new SparseArray<>();
+
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    private boolean mIndexLoaded;
+    private boolean mCompactionScheduled;
+    private long mLiveBytes;
+
+    /** Incremented whenever the segment is discarded, invalidating in-flight compactions. */
+    private int mGeneration;
+
+    /**
+     * Returns the store for the given directory, creating it if necessary.  The segment file
+     * itself is only created once the first tab is saved.
+     * @param directory Tab state directory the store lives in.
+     * @return The store for {@code directory}.
+     */
+    public static TabStateSegmentStore getInstance(File directory) {
+        synchronized (sStores) {
+            String key = directory.getAbsolutePath();
+            TabStateSegmentStore store = sStores.get(key);
+            if (store == null) {
+                store = new TabStateSegmentStore(directory);
+                sStores.put(key, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * @param directory Tab state directory to check.
+     * @return The store for the given directory, or null if no segment has been written there.
+     */
+    static TabStateSegmentStore getExistingInstance(File directory) {
+        synchronized (sStores) {
+            TabStateSegmentStore store = sStores.get(directory.getAbsolutePath());
+            if (store != null) return store;
+            if (!new File(directory, SEGMENT_FILE_NAME).exists()) return null;
+            return getInstance(directory);
+        }
+    }
+
+    /**
+     * @param directory Tab state directory to check.
+     * @return IDs of all tabs that have a live record in the segment of {@code directory}.
+     */
+    public static int[] getTabIds(File directory) {
+        TabStateSegmentStore store = getExistingInstance(directory);
+        return store == null ? new int[0] : store.getTabIds();
+    }
+
+    /**
+     * Discards the segments of all stores.  Used when the whole tab state directory is wiped.
+     */
+    public static void clearAll() {
+        synchronized (sStores) {
+            for (TabStateSegmentStore store : sStores.values()) store.clear();
+        }
+    }
+
+    private TabStateSegmentStore(File directory) {
+        mDirectory = directory;
+        mSegmentFile = new File(directory, SEGMENT_FILE_NAME);
+    }
+
+    /**
+     * Appends the state of a tab to the segment, superseding any earlier record for it.
+     * @param tabId ID of the tab.
+     * @param state State to save.
+     */
+    public synchronized void saveTabState(int tabId, TabState state) throws IOException {
+        ensureOpenLocked();
+
+        long recordStart = mChannel.size();
+        mChannel.position(recordStart);
+        try {
+            writeRecordHeaderLocked(tabId, UNCOMMITTED);
+            long length = TabState.writeState(mChannel, state);
+            if (length <= 0 || length > Integer.MAX_VALUE) throw new IOException();
+
+            // Committing the record by filling in its length makes it visible on the next scan.
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+            lengthBuffer.putInt((int) length).flip();
+            writeFully(mChannel, lengthBuffer, recordStart + 4);
+
+            putLocked(tabId, new RecordLocation(recordStart + RECORD_HEADER_SIZE, (int) length));
+        } catch (IOException e) {
+            // Drop the partial record so that later appends do not end up behind it.
+            mChannel.truncate(recordStart);
+            mChannel.position(recordStart);
+            throw e;
+        }
+        maybeScheduleCompactionLocked();
+    }
+
+    /**
+     * Restores the latest state saved for a tab.
+     * @param tabId ID of the tab.
+     * @return The restored TabState, or null if the segment does not contain the tab.
+     */
+    public TabState restoreTabState(int tabId) {
+        FileInputStream stream = null;
+        try {
+            synchronized (this) {
+                if (!hasSegmentLocked()) return null;
+                ensureOpenLocked();
+                RecordLocation location = mIndex.get(tabId);
+                if (location == null) return null;
+
+                // Opening the stream while holding the lock guarantees that the offset refers to
+                // the file being read, even if a compaction swaps the segment afterwards.
+                stream = new FileInputStream(mSegmentFile);
+                stream.getChannel().position(location.offset);
+            }
+            TabState state = TabState.readState(stream, false);
+            stream = null;
+            return state;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to restore tab state for tab: " + tabId, e);
+            return null;
+        } finally {
+            StreamUtil.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Marks the state of a tab as deleted.
+     * @param tabId ID of the tab.
+     */
+    public synchronized void deleteTabState(int tabId) {
+        try {
+            if (!hasSegmentLocked()) return;
+            ensureOpenLocked();
+            if (mIndex.get(tabId) == null) return;
+
+            mChannel.position(mChannel.size());
+            writeRecordHeaderLocked(tabId, TOMBSTONE);
+            removeLocked(tabId);
+            maybeScheduleCompactionLocked();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to delete tab state for tab: " + tabId, e);
+        }
+    }
+
+    /** @return IDs of all tabs that have a live record in the segment. */
+    public synchronized int[] getTabIds() {
+        try {
+            if (!hasSegmentLocked()) return new int[0];
+            ensureOpenLocked();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read tab state segment.", e);
+            return new int[0];
+        }
+        int[] tabIds = new int[mIndex.size()];
+        for (int i = 0; i < tabIds.length; i++) tabIds[i] = mIndex.keyAt(i);
+        return tabIds;
+    }
+
+    /**
+     * Closes and deletes the segment.
+     */
+    public synchronized void clear() {
+        closeLocked();
+        mIndex.clear();
+        mIndexLoaded = false;
+        mLiveBytes = 0;
+        mGeneration++;
+        if (mSegmentFile.exists() && !mSegmentFile.delete()) {
+            Log.e(TAG, "Failed to delete file: " + mSegmentFile);
+        }
+    }
+
+    /**
+     * Rewrites the segment so that it only contains the latest record of every live tab.  The
+     * live records are copied without holding the lock; records appended in the meantime are
+     * copied over afterwards, right before the new segment replaces the old one.
+     */
+    @VisibleForTesting
+    void compact() {
+        SparseArray<RecordLocation> snapshot;
+        long snapshotEnd;
+        int generation;
+        synchronized (this) {
+            if (mChannel == null) {
+                mCompactionScheduled = false;
+                return;
+            }
+            snapshot = mIndex.clone();
+            generation = mGeneration;
+            try {
+                snapshotEnd = mChannel.size();
+            } catch (IOException e) {
+                mCompactionScheduled = false;
+                return;
+            }
+        }
+
+        File compactedFile = new File(mDirectory, SEGMENT_FILE_NAME + COMPACTION_FILE_SUFFIX);
+        RandomAccessFile output = null;
+        FileInputStream input = null;
+        boolean swapped = false;
+        try {
+            input = new FileInputStream(mSegmentFile);
+            FileChannel inputChannel = input.getChannel();
+            output = new RandomAccessFile(compactedFile, "rw");
+            output.setLength(0);
+            FileChannel outputChannel = output.getChannel();
+            writeFileHeader(outputChannel);
+
+            SparseArray<RecordLocation> relocated = new SparseArray<>(snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                RecordLocation location = snapshot.valueAt(i);
+                long newOffset = outputChannel.position() + RECORD_HEADER_SIZE;
+                transferFully(inputChannel, location.offset - RECORD_HEADER_SIZE,
+                        RECORD_HEADER_SIZE + location.length, outputChannel);
+                relocated.put(snapshot.keyAt(i), new RecordLocation(newOffset, location.length));
+            }
+
+            synchronized (this) {
+                if (generation != mGeneration || mChannel == null) return;
+
+                // Carry over everything that was appended while copying.
+                long tailStart = outputChannel.position();
+                long segmentEnd = mChannel.size();
+                transferFully(mChannel, snapshotEnd, segmentEnd - snapshotEnd, outputChannel);
+
+                SparseArray<RecordLocation> newIndex = new SparseArray<>(mIndex.size());
+                for (int i = 0; i < mIndex.size(); i++) {
+                    RecordLocation location = mIndex.valueAt(i);
+                    if (location.offset >= snapshotEnd) {
+                        location = new RecordLocation(
+                                tailStart + location.offset - snapshotEnd, location.length);
+                    } else {
+                        location = relocated.get(mIndex.keyAt(i));
+                        assert location != null;
+                    }
+                    newIndex.put(mIndex.keyAt(i), location);
+                }
+
+                StreamUtil.closeQuietly(output);
+                output = null;
+                if (!compactedFile.renameTo(mSegmentFile)) {
+                    throw new IOException("Failed to replace " + mSegmentFile);
+                }
+                swapped = true;
+
+                // Buffers that are still mapped from the old segment stay valid after the swap.
+                closeLocked();
+                openChannelLocked();
+                mChannel.position(mChannel.size());
+                mIndex.clear();
+                for (int i = 0; i < newIndex.size(); i++) {
+                    mIndex.put(newIndex.keyAt(i), newIndex.valueAt(i));
+                }
+                Log.i(TAG, "Compacted tab state segment from " + segmentEnd + " to "
+                        + mChannel.size() + " bytes.");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to compact tab state segment.", e);
+            if (swapped) {
+                // The index no longer matches the file on disk; rebuild it from the new segment.
+                synchronized (this) {
+                    closeLocked();
+                    mIndex.clear();
+                    mIndexLoaded = false;
+                    mLiveBytes = 0;
+                }
+            }
+        } finally {
+            StreamUtil.closeQuietly(input);
+            StreamUtil.closeQuietly(output);
+            if (!swapped && compactedFile.exists() && !compactedFile.delete()) {
+                Log.e(TAG, "Failed to delete file: " + compactedFile);
+            }
+            synchronized (this) {
+                mCompactionScheduled = false;
+            }
+        }
+    }
+
+    private boolean hasSegmentLocked() {
+        return mChannel != null || mSegmentFile.exists();
+    }
+
+    private void ensureOpenLocked() throws IOException {
+        if (mChannel != null) return;
+        openChannelLocked();
+
+        long size = mChannel.size();
+        if (size < FILE_HEADER_SIZE || !hasValidFileHeader(mChannel)) {
+            if (size != 0) Log.w(TAG, "Discarding unreadable tab state segment.");
+            mChannel.truncate(0);
+            writeFileHeader(mChannel);
+            mIndex.clear();
+            mLiveBytes = 0;
+            mIndexLoaded = true;
+            return;
+        }
+
+        if (!mIndexLoaded) {
+            long end = loadIndexLocked(size);
+            if (end != size) {
+                Log.w(TAG, "Dropping " + (size - end) + " bytes of incomplete tab state records.");
+                mChannel.truncate(end);
+            }
+            mIndexLoaded = true;
+        }
+        mChannel.position(mChannel.size());
+    }
+
+    /**
+     * Scans the records in the segment and rebuilds the index from them.
+     * @param size Size of the segment.
+     * @return Offset right behind the last complete record.
+     */
+    private long loadIndexLocked(long size) throws IOException {
+        mIndex.clear();
+        mLiveBytes = 0;
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long position = FILE_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(mChannel, header, position);
+            header.flip();
+            int tabId = header.getInt();
+            int length = header.getInt();
+
+            if (length == TOMBSTONE) {
+                removeLocked(tabId);
+                position += RECORD_HEADER_SIZE;
+                continue;
+            }
+            if (length <= UNCOMMITTED || position + RECORD_HEADER_SIZE + length > size) break;
+
+            putLocked(tabId, new RecordLocation(position + RECORD_HEADER_SIZE, length));
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void openChannelLocked() throws IOException {
+        mFile = new RandomAccessFile(mSegmentFile, "rw");
+        mChannel = mFile.getChannel();
+    }
+
+    private void closeLocked() {
+        StreamUtil.closeQuietly(mFile);
+        mFile = null;
+        mChannel = null;
+    }
+
+    private void putLocked(int tabId, RecordLocation location) {
+        removeLocked(tabId);
+        mIndex.put(tabId, location);
+        mLiveBytes += RECORD_HEADER_SIZE + location.length;
+    }
+
+    private void removeLocked(int tabId) {
+        RecordLocation previous = mIndex.get(tabId);
+        if (previous == null) return;
+        mIndex.remove(tabId);
+        mLiveBytes -= RECORD_HEADER_SIZE + previous.length;
+    }
+
+    private void writeRecordHeaderLocked(int tabId, int length) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        header.putInt(tabId).putInt(length).flip();
+        while (header.hasRemaining()) mChannel.write(header);
+    }
+
+    private void maybeScheduleCompactionLocked() throws IOException {
+        if (mCompactionScheduled) return;
+        long staleBytes = mChannel.size() - FILE_HEADER_SIZE - mLiveBytes;
+        if (staleBytes < COMPACTION_MIN_STALE_BYTES || staleBytes < mLiveBytes) return;
+
+        mCompactionScheduled = true;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                compact();
+            }
+        });
+    }
+
+    private static boolean hasValidFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        return header.getInt() == FILE_MAGIC && header.getInt() == FORMAT_VERSION;
+    }
+
+    private static void writeFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(FILE_MAGIC).putInt(FORMAT_VERSION).flip();
+        writeFully(channel, header, 0);
+        channel.position(FILE_HEADER_SIZE);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new EOFException();
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void transferFully(FileChannel source, long position, long count,
+            FileChannel target) throws IOException {
+        while (count > 0) {
+            long transferred = source.transferTo(position, count, target);
+            if (transferred <= 0) throw new EOFException();
+            position += transferred;
+            count -= transferred;
+        }
+    }
+}
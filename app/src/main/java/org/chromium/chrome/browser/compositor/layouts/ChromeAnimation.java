@@ -10,7 +10,6 @@ import android.view.animation.DecelerateInterpolator;
 import android.view.animation.Interpolator;
 import android.view.animation.LinearInterpolator;
 
-import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -35,10 +34,29 @@ public class ChromeAnimation<T> {
      */
     private static final int ANIMATION_MULTIPLIER = 1;
 
+    private static final int INITIAL_TRACK_CAPACITY = 8;
+
     private final AtomicBoolean mFinishCalled = new AtomicBoolean();
-    private final ArrayList<Animation<T>> mAnimations = new ArrayList<Animation<T>>();
     private long mCurrentTime;
 
+    // The animations are kept as tracks in parallel arrays, in the order they were added.  A track
+    // either runs an Animation object, or directly animates a property of an Animatable, so that
+    // sets built from many property animations don't allocate an object per animation.
+    private int mTrackCount;
+    private Animation<T>[] mTrackAnimations;
+    private Animatable<?>[] mTrackAnimatables;
+    private Enum<?>[] mTrackProperties;
+    private Interpolator[] mTrackInterpolators;
+    private float[] mTrackStart;
+    private float[] mTrackEnd;
+    private long[] mTrackCurrentTime;
+    private long[] mTrackDuration;
+    private long[] mTrackStartDelay;
+    private boolean[] mTrackDelayStartValue;
+    private boolean[] mTrackHasFinished;
+    // Cancelled tracks are skipped rather than removed, so cancelling doesn't shift the arrays.
+    private boolean[] mTrackCancelled;
+
     // Keep a reference to one of each standard interpolator to avoid allocations.
     private static AccelerateInterpolator sAccelerateInterpolator;
     private static LinearInterpolator sLinearInterpolator;
@@ -89,7 +107,90 @@ public class ChromeAnimation<T> {
      *         ChromeAnimation.
      */
     public void add(ChromeAnimation.Animation<T> a) {
-        mAnimations.add(a);
+        int track = addTrack();
+        mTrackAnimations[track] = a;
+    }
+
+    /**
+     * Adds an animation of a property of an {@link Animatable} to this set, without creating an
+     * {@link Animation} for it.  This set must animate {@link Animatable}s.
+     * See {@link AnimatableAnimation#AnimatableAnimation} for the parameters.
+     */
+    private void addAnimatableTrack(Animatable<?> animatable, Enum<?> property, float start,
+            float end, long duration, long startTime, boolean delayStartValue,
+            Interpolator interpolator) {
+        assert duration > 0;
+        int track = addTrack();
+        mTrackAnimatables[track] = animatable;
+        mTrackProperties[track] = property;
+        mTrackInterpolators[track] = interpolator;
+        mTrackStart[track] = start;
+        mTrackEnd[track] = end;
+        mTrackCurrentTime[track] = 0;
+        mTrackDuration[track] = duration * ANIMATION_MULTIPLIER;
+        mTrackStartDelay[track] = startTime * ANIMATION_MULTIPLIER;
+        mTrackDelayStartValue[track] = delayStartValue;
+    }
+
+    /**
+     * @return The index of a new track, with all its values cleared.
+     */
+    private int addTrack() {
+        if (mTrackAnimations == null || mTrackCount == mTrackAnimations.length) {
+            growTracks(mTrackAnimations == null
+                    ? INITIAL_TRACK_CAPACITY : mTrackAnimations.length * 2);
+        }
+        int track = mTrackCount++;
+        mTrackAnimations[track] = null;
+        mTrackAnimatables[track] = null;
+        mTrackProperties[track] = null;
+        mTrackInterpolators[track] = null;
+        mTrackHasFinished[track] = false;
+        mTrackCancelled[track] = false;
+        return track;
+    }
+
+    private void growTracks(int capacity) {
+        // Arrays of a generic type can't be created directly.
+        @SuppressWarnings("unchecked")
+        Animation<T>[] animations = new Animation[capacity];
+        Animatable<?>[] animatables = new Animatable<?>[capacity];
+        Enum<?>[] properties = new Enum<?>[capacity];
+        Interpolator[] interpolators = new Interpolator[capacity];
+        float[] start = new float[capacity];
+        float[] end = new float[capacity];
+        long[] currentTime = new long[capacity];
+        long[] duration = new long[capacity];
+        long[] startDelay = new long[capacity];
+        boolean[] delayStartValue = new boolean[capacity];
+        boolean[] hasFinished = new boolean[capacity];
+        boolean[] cancelled = new boolean[capacity];
+        if (mTrackAnimations != null) {
+            System.arraycopy(mTrackAnimations, 0, animations, 0, mTrackCount);
+            System.arraycopy(mTrackAnimatables, 0, animatables, 0, mTrackCount);
+            System.arraycopy(mTrackProperties, 0, properties, 0, mTrackCount);
+            System.arraycopy(mTrackInterpolators, 0, interpolators, 0, mTrackCount);
+            System.arraycopy(mTrackStart, 0, start, 0, mTrackCount);
+            System.arraycopy(mTrackEnd, 0, end, 0, mTrackCount);
+            System.arraycopy(mTrackCurrentTime, 0, currentTime, 0, mTrackCount);
+            System.arraycopy(mTrackDuration, 0, duration, 0, mTrackCount);
+            System.arraycopy(mTrackStartDelay, 0, startDelay, 0, mTrackCount);
+            System.arraycopy(mTrackDelayStartValue, 0, delayStartValue, 0, mTrackCount);
+            System.arraycopy(mTrackHasFinished, 0, hasFinished, 0, mTrackCount);
+            System.arraycopy(mTrackCancelled, 0, cancelled, 0, mTrackCount);
+        }
+        mTrackAnimations = animations;
+        mTrackAnimatables = animatables;
+        mTrackProperties = properties;
+        mTrackInterpolators = interpolators;
+        mTrackStart = start;
+        mTrackEnd = end;
+        mTrackCurrentTime = currentTime;
+        mTrackDuration = duration;
+        mTrackStartDelay = startDelay;
+        mTrackDelayStartValue = delayStartValue;
+        mTrackHasFinished = hasFinished;
+        mTrackCancelled = cancelled;
     }
 
     /**
@@ -100,9 +201,15 @@ public class ChromeAnimation<T> {
     public void start() {
         mFinishCalled.set(false);
         mCurrentTime = 0;
-        for (int i = 0; i < mAnimations.size(); ++i) {
-            Animation<T> a = mAnimations.get(i);
-            a.start();
+        for (int i = 0; i < mTrackCount; ++i) {
+            if (mTrackCancelled[i]) continue;
+            if (mTrackAnimations[i] != null) {
+                mTrackAnimations[i].start();
+            } else {
+                mTrackHasFinished[i] = false;
+                mTrackCurrentTime[i] = 0;
+                updateTrack(i, 0);
+            }
         }
     }
 
@@ -113,12 +220,19 @@ public class ChromeAnimation<T> {
      * @param property property to find animations to be aborted.
      */
     public <V extends Enum<?>> void cancel(T object, V property) {
-        for (int  i = mAnimations.size() - 1; i >= 0; i--) {
-            Animation<T> animation = mAnimations.get(i);
-            if ((object == null || animation.getAnimatedObject() == object)
-                    && animation.checkProperty(property)) {
-                mAnimations.remove(i);
-            }
+        for (int i = 0; i < mTrackCount; i++) {
+            if (mTrackCancelled[i]) continue;
+            Animation<T> animation = mTrackAnimations[i];
+            boolean matches = animation != null
+                    ? (object == null || animation.getAnimatedObject() == object)
+                            && animation.checkProperty(property)
+                    : (object == null || mTrackAnimatables[i] == object)
+                            && mTrackProperties[i] == property;
+            if (!matches) continue;
+            mTrackCancelled[i] = true;
+            mTrackAnimations[i] = null;
+            mTrackAnimatables[i] = null;
+            mTrackInterpolators[i] = null;
         }
     }
 
@@ -127,8 +241,14 @@ public class ChromeAnimation<T> {
      * Animation.
      */
     public void updateAndFinish() {
-        for (int i = 0; i < mAnimations.size(); ++i) {
-            mAnimations.get(i).updateAndFinish();
+        for (int i = 0; i < mTrackCount; ++i) {
+            if (mTrackCancelled[i]) continue;
+            if (mTrackAnimations[i] != null) {
+                mTrackAnimations[i].updateAndFinish();
+            } else {
+                mTrackCurrentTime[i] = mTrackDuration[i] + mTrackStartDelay[i];
+                setTrackProperty(i, mTrackEnd[i]);
+            }
         }
         finishInternal();
     }
@@ -159,9 +279,10 @@ public class ChromeAnimation<T> {
         long dtMs = time - mCurrentTime;
         mCurrentTime += dtMs;
         boolean finished = true;
-        for (int i = 0; i < mAnimations.size(); ++i) {
-            mAnimations.get(i).update(dtMs);
-            finished &= mAnimations.get(i).finished();
+        for (int i = 0; i < mTrackCount; ++i) {
+            if (mTrackCancelled[i]) continue;
+            updateTrack(i, dtMs);
+            finished &= isTrackFinished(i);
         }
 
         if (finished) {
@@ -178,8 +299,8 @@ public class ChromeAnimation<T> {
             return true;
         }
 
-        for (int i = 0; i < mAnimations.size(); ++i) {
-            if (!mAnimations.get(i).finished()) {
+        for (int i = 0; i < mTrackCount; ++i) {
+            if (!mTrackCancelled[i] && !isTrackFinished(i)) {
                 return false;
             }
         }
@@ -187,6 +308,68 @@ public class ChromeAnimation<T> {
         return true;
     }
 
+    /**
+     * Same as {@link Animation#update(long)}, for a track.
+     */
+    private void updateTrack(int track, long dtMs) {
+        if (mTrackAnimations[track] != null) {
+            mTrackAnimations[track].update(dtMs);
+            return;
+        }
+
+        final long duration = mTrackDuration[track];
+        final long startDelay = mTrackStartDelay[track];
+        final long currentTime = Math.min(mTrackCurrentTime[track] + dtMs, duration + startDelay);
+        mTrackCurrentTime[track] = currentTime;
+        if (mTrackDelayStartValue[track] && currentTime < startDelay) return;
+
+        setTrackProperty(track, computeValue(mTrackStart[track], mTrackEnd[track], currentTime,
+                duration, startDelay, mTrackInterpolators[track]));
+    }
+
+    /**
+     * Same as {@link Animation#finished()}, for a track.
+     */
+    private boolean isTrackFinished(int track) {
+        if (mTrackAnimations[track] != null) return mTrackAnimations[track].finished();
+
+        if (!mTrackHasFinished[track]
+                && mTrackCurrentTime[track] >= mTrackDuration[track] + mTrackStartDelay[track]) {
+            mTrackHasFinished[track] = true;
+            getTrackAnimatable(track).onPropertyAnimationFinished(mTrackProperties[track]);
+        }
+        return mTrackHasFinished[track];
+    }
+
+    private void setTrackProperty(int track, float value) {
+        getTrackAnimatable(track).setProperty(mTrackProperties[track], value);
+    }
+
+    // The property of a track is always one of the properties of its Animatable, as both are
+    // passed together to addAnimatableTrack().
+    @SuppressWarnings("unchecked")
+    private Animatable<Enum<?>> getTrackAnimatable(int track) {
+        return (Animatable<Enum<?>>) mTrackAnimatables[track];
+    }
+
+    /**
+     * @param start        The starting value of the animation.
+     * @param end          The ending value of the animation.
+     * @param currentTime  The time elapsed since the animation started, including its start delay.
+     * @param duration     The duration of the animation.
+     * @param startDelay   The time at which the animation starts.
+     * @param interpolator The Interpolator used by the animation.
+     * @return The animated value at the given time.
+     */
+    private static float computeValue(float start, float end, long currentTime, long duration,
+            long startDelay, Interpolator interpolator) {
+        // Figure out the relative fraction of time we need to animate.
+        long relativeTime = Math.max(0, Math.min(currentTime - startDelay, duration));
+
+        return start + (end - start)
+                * interpolator.getInterpolation((float) relativeTime / (float) duration);
+    }
+
     private void finishInternal() {
         if (mFinishCalled.get()) return;
 
@@ -302,12 +485,8 @@ public class ChromeAnimation<T> {
                 return;
             }
 
-            // Figure out the relative fraction of time we need to animate.
-            long relativeTime = Math.max(0, Math.min(mCurrentTime - mStartDelay,
-                    mDuration));
-
-            setProperty(mStart + (mEnd - mStart)
-                    * mInterpolator.getInterpolation((float) relativeTime / (float) mDuration));
+            setProperty(computeValue(
+                    mStart, mEnd, mCurrentTime, mDuration, mStartDelay, mInterpolator));
         }
 
         /**
@@ -453,8 +632,9 @@ public class ChromeAnimation<T> {
         }
 
         /**
-         * Helper method to add an {@link ChromeAnimation.AnimatableAnimation}
-         * to a {@link ChromeAnimation}
+         * Helper method to add an animation of a property of an
+         * {@link ChromeAnimation.Animatable} to a {@link ChromeAnimation}.  It behaves like an
+         * {@link ChromeAnimation.AnimatableAnimation}, but no object is created for it.
          *
          * @param <T> The Enum type of the Property being used
          * @param set The set to add the animation to
@@ -472,9 +652,8 @@ public class ChromeAnimation<T> {
                 Animatable<T> object, T prop, float start, float end, long duration, long startTime,
                 boolean setStartValueAfterStartDelay, Interpolator interpolator) {
             if (duration <= 0) return;
-            Animation<Animatable<?>> animation = createAnimation(object, prop, start, end,
-                    duration, startTime, setStartValueAfterStartDelay, interpolator);
-            set.add(animation);
+            set.addAnimatableTrack(object, prop, start, end, duration, startTime,
+                    setStartValueAfterStartDelay, interpolator);
         }
 
         /**
@@ -33,6 +33,7 @@ public class TabContentManager {
     private final int mFullResThumbnailsMaxSize;
     private final ContentOffsetProvider mContentOffsetProvider;
     private int[] mPriorityTabIds;
+    private boolean mPriorityTabIdsSent;
     private long mNativeTabContentManager;
 
     /**
@@ -285,14 +286,23 @@ public class TabContentManager {
         if (mNativeTabContentManager != 0) {
             int idsSize = Math.min(mFullResThumbnailsMaxSize, priority.size());
 
+            // Only the first ids are sent, so nothing needs to be sent if they didn't change.
+            boolean changed = !mPriorityTabIdsSent;
             if (idsSize != mPriorityTabIds.length) {
                 mPriorityTabIds = new int[idsSize];
+                changed = true;
             }
 
             for (int i = 0; i < idsSize; i++) {
-                mPriorityTabIds[i] = priority.get(i);
+                int id = priority.get(i);
+                if (mPriorityTabIds[i] != id) {
+                    mPriorityTabIds[i] = id;
+                    changed = true;
+                }
             }
+            if (!changed) return;
             nativeUpdateVisibleIds(mNativeTabContentManager, mPriorityTabIds);
+            mPriorityTabIdsSent = true;
         }
     }
 
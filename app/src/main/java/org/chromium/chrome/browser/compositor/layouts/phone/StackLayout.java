@@ -119,6 +119,8 @@ public class StackLayout extends Layout implements Animatable<StackLayout.Proper
     private final VisibilityComparator mVisibilityComparator = new VisibilityComparator();
     private final OrderComparator mOrderComparator = new OrderComparator();
     private Comparator<StackTab> mSortingComparator = mVisibilityComparator;
+    // Whether mSortedPriorityArray must be sorted again, e.g. as the comparator changed.
+    private boolean mSortedPriorityArrayDirty = true;
 
     private static final int LAYOUTTAB_ASYNCHRONOUS_INITIALIZATION_BATCH_SIZE = 4;
     private boolean mDelayedLayoutTabInitRequired = false;
@@ -454,6 +456,7 @@ public class StackLayout extends Layout implements Animatable<StackLayout.Proper
      */
     public void uiDoneEnteringStack() {
         mSortingComparator = mVisibilityComparator;
+        mSortedPriorityArrayDirty = true;
         doneShowing();
     }
 
@@ -510,6 +513,7 @@ public class StackLayout extends Layout implements Animatable<StackLayout.Proper
         }
         // Initialize the animation and the positioning of all the elements
         mSortingComparator = mOrderComparator;
+        mSortedPriorityArrayDirty = true;
         resetScrollData();
         for (int i = mStacks.length - 1; i >= 0; --i) {
             if (mStacks[i].isDisplayable()) {
@@ -1112,11 +1116,23 @@ public class StackLayout extends Layout implements Animatable<StackLayout.Proper
      * comparator stored in {@link #mSortingComparator}.
      *
      * Do not use {@link #mSortedPriorityArray} out side this context. It is only a member to avoid
-     * doing an allocation every frames.
+     * doing an allocation every frames, and to keep the order while no tab changed.
      */
     private void updateTabPriority() {
-        if (!updateSortedPriorityArray(mSortingComparator)) return;
-        updateTabsVisibility(mSortedPriorityArray);
+        // Both stacks must be asked, so that neither keeps reporting a stale change.
+        boolean stack0Changed = mStacks[0].checkAndClearTabPriorityChanged();
+        boolean stack1Changed = mStacks[1].checkAndClearTabPriorityChanged();
+        if (stack0Changed || stack1Changed || mSortedPriorityArrayDirty) {
+            // Sorting the same tabs by the same values would produce the same order, so only
+            // sort and update the visible tabs when something changed.
+            mSortedPriorityArrayDirty = false;
+            if (!updateSortedPriorityArray(mSortingComparator)) {
+                mSortedPriorityArray = null;
+                return;
+            }
+            updateTabsVisibility(mSortedPriorityArray);
+        }
+        if (mSortedPriorityArray == null) return;
         updateDelayedLayoutTabInit(mSortedPriorityArray);
     }
 
@@ -155,6 +155,7 @@ public class Stack {
     private int mSpacing;
     private float mWarpSize;
     private StackTab[] mStackTabs; // mStackTabs can be null if there are no tabs
+    private final StackTabArrays mTabArrays = new StackTabArrays();
 
     private int mLongPressSelected = -1;
 
@@ -216,6 +217,10 @@ public class Stack {
 
     private boolean mRecomputePosition = true;
 
+    // Whether the tabs or their visibility sorting values changed since the layout last sorted
+    // them by priority.
+    private boolean mTabPriorityChanged = true;
+
     private int mReferenceOrderIndex = -1;
 
     // Orientation Variables
@@ -299,6 +304,16 @@ public class Stack {
         return visibleCount;
     }
 
+    /**
+     * Reports whether the tabs need to be sorted by priority again, and resets that state.
+     * @return Whether the tabs or their visibility sorting values changed since the last call.
+     */
+    public boolean checkAndClearTabPriorityChanged() {
+        boolean changed = mTabPriorityChanged;
+        mTabPriorityChanged = false;
+        return changed;
+    }
+
     /*
      * Main Interaction Methods for the rest of the application
      *
@@ -622,6 +637,7 @@ public class Stack {
 
                 StackTab[] oldTabs = mStackTabs;
                 mStackTabs = new StackTab[nNumberOfLiveTabs];
+                mTabPriorityChanged = true;
 
                 int newIndex = 0;
                 for (int i = 0; i < oldTabs.length; ++i) {
@@ -1423,22 +1439,20 @@ public class Stack {
     private void computeTabScaleAlphaDepthHelper(RectF stackRect) {
         final float stackScale = getStackScale(stackRect);
         final float discardRange = getDiscardRange();
+        final StackTabArrays tabs = mTabArrays;
 
-        for (int i = 0; i < mStackTabs.length; ++i) {
-            assert mStackTabs[i] != null;
-            StackTab stackTab = mStackTabs[i];
-            LayoutTab layoutTab = stackTab.getLayoutTab();
-            final float discard = stackTab.getDiscardAmount();
+        for (int i = 0; i < tabs.count; ++i) {
+            final float discard = tabs.discardAmount[i];
 
             // Scale
             float discardScale =
-                    computeDiscardScale(discard, discardRange, stackTab.getDiscardFromClick());
-            layoutTab.setScale(stackTab.getScale() * discardScale * stackScale);
-            layoutTab.setBorderScale(discardScale);
+                    computeDiscardScale(discard, discardRange, tabs.discardFromClick[i]);
+            tabs.scale[i] = tabs.stackTabScale[i] * discardScale * stackScale;
+            tabs.borderScale[i] = discardScale;
 
             // Alpha
             float discardAlpha = computeDiscardAlpha(discard, discardRange);
-            layoutTab.setAlpha(stackTab.getAlpha() * discardAlpha);
+            tabs.alpha[i] = tabs.stackTabAlpha[i] * discardAlpha;
         }
     }
 
@@ -1447,17 +1461,21 @@ public class Stack {
      * Adjust the scroll offsets of each tab so no there is no void in between tabs.
      */
     private void computeTabScrollOffsetHelper() {
+        final boolean portrait = mCurrentMode == Orientation.PORTRAIT;
+        final StackTabArrays tabs = mTabArrays;
+        final float[] originalContentSize =
+                portrait ? tabs.originalContentHeight : tabs.originalContentWidth;
+
         float maxScrollOffset = Float.MAX_VALUE;
-        for (int i = 0; i < mStackTabs.length; ++i) {
-            if (mStackTabs[i].isDying()) continue;
+        for (int i = 0; i < tabs.count; ++i) {
+            if (tabs.dying[i]) continue;
 
-            float tabScrollOffset = Math.min(maxScrollOffset, mStackTabs[i].getScrollOffset());
-            mStackTabs[i].setScrollOffset(tabScrollOffset);
+            float tabScrollOffset = Math.min(maxScrollOffset, tabs.scrollOffset[i]);
+            tabs.scrollOffset[i] = tabScrollOffset;
 
             float maxScreenScrollOffset = scrollToScreen(mScrollOffset + tabScrollOffset);
-            maxScrollOffset = -mScrollOffset
-                    + screenToScroll(maxScreenScrollOffset
-                                      + mStackTabs[i].getSizeInScrollDirection(mCurrentMode));
+            maxScrollOffset = -mScrollOffset + screenToScroll(
+                    maxScreenScrollOffset + originalContentSize[i] * tabs.scale[i]);
         }
     }
 
@@ -1469,6 +1487,8 @@ public class Stack {
      */
     private void computeTabOffsetHelper(RectF stackRect) {
         final boolean portrait = mCurrentMode == Orientation.PORTRAIT;
+        final boolean rtl = LocalizationUtils.isLayoutRtl();
+        final StackTabArrays tabs = mTabArrays;
 
         // Precompute the position using scroll offset and top stacking.
         final float parentWidth = stackRect.width();
@@ -1480,28 +1500,24 @@ public class Stack {
 
         int stackedCount = 0;
         float minStackedPosition = 0.0f;
-        for (int i = 0; i < mStackTabs.length; ++i) {
-            assert mStackTabs[i] != null;
-            StackTab stackTab = mStackTabs[i];
-            LayoutTab layoutTab = stackTab.getLayoutTab();
-
+        for (int i = 0; i < tabs.count; ++i) {
             // Position
             final float stackScrollOffset =
-                    stackTab.isDying() ? mScrollOffsetForDyingTabs : scrollOffset;
-            float screenScrollOffset = approxScreen(stackTab, stackScrollOffset);
+                    tabs.dying[i] ? mScrollOffsetForDyingTabs : scrollOffset;
+            float screenScrollOffset = scrollToScreen(tabs.scrollOffset[i] + stackScrollOffset);
 
             // Resolve top stacking
             screenScrollOffset = Math.max(minStackedPosition, screenScrollOffset);
             if (stackedCount < MAX_NUMBER_OF_STACKED_TABS_TOP) {
                 // This make sure all the tab get stacked up as one when all the tabs do a
                 // full roll animation.
-                final float tiltXcos = (float) Math.cos(Math.toRadians(layoutTab.getTiltX()));
-                final float tiltYcos = (float) Math.cos(Math.toRadians(layoutTab.getTiltY()));
+                final float tiltXcos = (float) Math.cos(Math.toRadians(tabs.tiltX[i]));
+                final float tiltYcos = (float) Math.cos(Math.toRadians(tabs.tiltY[i]));
                 float collapse = Math.min(Math.abs(tiltXcos), Math.abs(tiltYcos));
-                collapse *= layoutTab.getAlpha();
+                collapse *= tabs.alpha[i];
                 minStackedPosition += StackTab.sStackedTabVisibleSize * collapse;
             }
-            stackedCount += stackTab.isDying() ? 0 : 1;
+            stackedCount += tabs.dying[i] ? 0 : 1;
             if (overscrollPercent < 0) {
                 // Oversroll at the top of the screen. For the first
                 // OVERSCROLL_TOP_SLIDE_PCTG of the overscroll, slide the tabs
@@ -1515,26 +1531,26 @@ public class Stack {
             //       because it interferes the scaling center.
 
             // Centers the tab in its parent.
-            float xIn = (parentWidth - layoutTab.getScaledContentWidth()) / 2.0f;
-            float yIn = (parentHeight - layoutTab.getScaledContentHeight()) / 2.0f;
+            float xIn = (parentWidth - tabs.originalContentWidth[i] * tabs.scale[i]) / 2.0f;
+            float yIn = (parentHeight - tabs.originalContentHeight[i] * tabs.scale[i]) / 2.0f;
 
             // We want slight offset from the center so that multiple tab browsing
             // have more space to its expanding direction. e.g., On portrait mode,
             // there will be more space on the bottom than top.
             final float horizontalPadding =
                     (parentWidth
-                            - layoutTab.getOriginalContentWidth() * StackAnimation.SCALE_AMOUNT
+                            - tabs.originalContentWidth[i] * StackAnimation.SCALE_AMOUNT
                                     * stackScale) / 2.0f;
             final float verticalPadding =
                     (parentHeight
-                            - layoutTab.getOriginalContentHeight() * StackAnimation.SCALE_AMOUNT
+                            - tabs.originalContentHeight[i] * StackAnimation.SCALE_AMOUNT
                                     * stackScale) / 2.0f;
 
             if (portrait) {
                 yIn += STACK_PORTRAIT_Y_OFFSET_PROPORTION * verticalPadding;
                 yIn += screenScrollOffset;
             } else {
-                if (LocalizationUtils.isLayoutRtl()) {
+                if (rtl) {
                     xIn -= STACK_LANDSCAPE_START_OFFSET_PROPORTION * horizontalPadding;
                     xIn -= screenScrollOffset;
                 } else {
@@ -1544,34 +1560,31 @@ public class Stack {
                 yIn += STACK_LANDSCAPE_Y_OFFSET_PROPORTION * verticalPadding;
             }
 
-            layoutTab.setX(xIn);
-            layoutTab.setY(yIn);
+            tabs.x[i] = xIn;
+            tabs.y[i] = yIn;
         }
 
         // Resolve bottom stacking
         stackedCount = 0;
         float maxStackedPosition =
                 portrait ? mLayout.getHeightMinusBrowserControls() : mLayout.getWidth();
-        for (int i = mStackTabs.length - 1; i >= 0; i--) {
-            assert mStackTabs[i] != null;
-            StackTab stackTab = mStackTabs[i];
-            LayoutTab layoutTab = stackTab.getLayoutTab();
-            if (stackTab.isDying()) continue;
+        final float layoutWidth = mLayout.getWidth();
+        for (int i = tabs.count - 1; i >= 0; i--) {
+            if (tabs.dying[i]) continue;
 
             float pos;
             if (portrait) {
-                pos = layoutTab.getY();
-                layoutTab.setY(Math.min(pos, maxStackedPosition));
-            } else if (LocalizationUtils.isLayoutRtl()) {
+                pos = tabs.y[i];
+                tabs.y[i] = Math.min(pos, maxStackedPosition);
+            } else if (rtl) {
                 // On RTL landscape, pos is a distance between tab's right and mLayout's right.
-                float posOffset = mLayout.getWidth()
-                        - layoutTab.getOriginalContentWidth() * StackAnimation.SCALE_AMOUNT
-                                * stackScale;
-                pos = -layoutTab.getX() + posOffset;
-                layoutTab.setX(-Math.min(pos, maxStackedPosition) + posOffset);
+                float posOffset = layoutWidth
+                        - tabs.originalContentWidth[i] * StackAnimation.SCALE_AMOUNT * stackScale;
+                pos = -tabs.x[i] + posOffset;
+                tabs.x[i] = -Math.min(pos, maxStackedPosition) + posOffset;
             } else {
-                pos = layoutTab.getX();
-                layoutTab.setX(Math.min(pos, maxStackedPosition));
+                pos = tabs.x[i];
+                tabs.x[i] = Math.min(pos, maxStackedPosition);
             }
             if (pos >= maxStackedPosition && stackedCount < MAX_NUMBER_OF_STACKED_TABS_BOTTOM) {
                 maxStackedPosition -= StackTab.sStackedTabVisibleSize;
@@ -1581,27 +1594,21 @@ public class Stack {
 
         // final position blend
         final float discardRange = getDiscardRange();
-        for (int i = 0; i < mStackTabs.length; ++i) {
-            assert mStackTabs[i] != null;
-            StackTab stackTab = mStackTabs[i];
-            LayoutTab layoutTab = stackTab.getLayoutTab();
-
-            final float xIn = layoutTab.getX() + stackTab.getXInStackOffset();
-            final float yIn = layoutTab.getY() + stackTab.getYInStackOffset();
-            final float xOut = stackTab.getXOutOfStack();
-            final float yOut = stackTab.getYOutOfStack();
-            float x = MathUtils.interpolate(xOut, xIn, stackTab.getXInStackInfluence());
-            float y = MathUtils.interpolate(yOut, yIn, stackTab.getYInStackInfluence());
+        for (int i = 0; i < tabs.count; ++i) {
+            final float xIn = tabs.x[i] + tabs.xInStackOffset[i];
+            final float yIn = tabs.y[i] + tabs.yInStackOffset[i];
+            final float xOut = tabs.xOutOfStack[i];
+            final float yOut = tabs.yOutOfStack[i];
+            float x = MathUtils.interpolate(xOut, xIn, tabs.xInStackInfluence[i]);
+            float y = MathUtils.interpolate(yOut, yIn, tabs.yInStackInfluence[i]);
 
             // Discard offsets
-            if (stackTab.getDiscardAmount() != 0) {
-                float discard = stackTab.getDiscardAmount();
-                boolean fromClick = stackTab.getDiscardFromClick();
+            if (tabs.discardAmount[i] != 0) {
+                float discard = tabs.discardAmount[i];
+                boolean fromClick = tabs.discardFromClick[i];
                 float scale = computeDiscardScale(discard, discardRange, fromClick);
-                float deltaX = stackTab.getDiscardOriginX()
-                        - stackTab.getLayoutTab().getOriginalContentWidth() / 2.f;
-                float deltaY = stackTab.getDiscardOriginY()
-                        - stackTab.getLayoutTab().getOriginalContentHeight() / 2.f;
+                float deltaX = tabs.discardOriginX[i] - tabs.originalContentWidth[i] / 2.f;
+                float deltaY = tabs.discardOriginY[i] - tabs.originalContentHeight[i] / 2.f;
                 float discardOffset = fromClick ? 0.f : discard;
                 if (portrait) {
                     x += discardOffset + deltaX * (1.f - scale);
@@ -1613,8 +1620,8 @@ public class Stack {
             }
 
             // Finally apply the stack translation
-            layoutTab.setX(stackRect.left + x);
-            layoutTab.setY(stackRect.top + y);
+            tabs.x[i] = stackRect.left + x;
+            tabs.y[i] = stackRect.top + y;
         }
     }
 
@@ -1625,6 +1632,8 @@ public class Stack {
     private void computeTabClippingVisibilityHelper() {
         // alpha override, clipping and culling.
         final boolean portrait = mCurrentMode == Orientation.PORTRAIT;
+        final boolean rtl = LocalizationUtils.isLayoutRtl();
+        final StackTabArrays tabs = mTabArrays;
 
         // Iterate through each tab starting at the top of the stack and working
         // backwards. Set the clip on each tab such that it does not extend past
@@ -1634,7 +1643,7 @@ public class Stack {
         if (portrait) {
             // portrait LTR & RTL
             clipOffset = mLayout.getHeight() + StackTab.sStackedTabVisibleSize;
-        } else if (!LocalizationUtils.isLayoutRtl()) {
+        } else if (!rtl) {
             // landscape LTR
             clipOffset = mLayout.getWidth() + StackTab.sStackedTabVisibleSize;
         } else {
@@ -1642,16 +1651,16 @@ public class Stack {
             clipOffset = -StackTab.sStackedTabVisibleSize;
         }
 
-        for (int i = mStackTabs.length - 1; i >= 0; i--) {
-            LayoutTab layoutTab = mStackTabs[i].getLayoutTab();
-            layoutTab.setVisible(true);
+        for (int i = tabs.count - 1; i >= 0; i--) {
+            tabs.visible[i] = true;
 
             // Don't bother with clipping tabs that are dying, rotating, with an X offset, or
             // non-opaque.
-            if (mStackTabs[i].isDying() || mStackTabs[i].getXInStackOffset() != 0.0f
-                    || layoutTab.getAlpha() < 1.0f) {
-                layoutTab.setClipOffset(0.0f, 0.0f);
-                layoutTab.setClipSize(Float.MAX_VALUE, Float.MAX_VALUE);
+            if (tabs.dying[i] || tabs.xInStackOffset[i] != 0.0f || tabs.alpha[i] < 1.0f) {
+                tabs.clipX[i] = 0.0f;
+                tabs.clipY[i] = 0.0f;
+                tabs.clipWidth[i] = Float.MAX_VALUE;
+                tabs.clipHeight[i] = Float.MAX_VALUE;
                 continue;
             }
 
@@ -1659,22 +1668,22 @@ public class Stack {
             float tabOffset, tabSize, tabClippedSize, borderAdjustmentSize, insetBorderPadding;
             if (portrait) {
                 // portrait LTR & RTL
-                tabOffset = layoutTab.getY();
-                tabSize = layoutTab.getScaledContentHeight();
+                tabOffset = tabs.y[i];
+                tabSize = tabs.originalContentHeight[i] * tabs.scale[i];
                 tabClippedSize = Math.min(tabSize, clipOffset - tabOffset);
                 borderAdjustmentSize = mBorderTransparentTop;
                 insetBorderPadding = mBorderTopPadding;
-            } else if (!LocalizationUtils.isLayoutRtl()) {
+            } else if (!rtl) {
                 // landscape LTR
-                tabOffset = layoutTab.getX();
-                tabSize = layoutTab.getScaledContentWidth();
+                tabOffset = tabs.x[i];
+                tabSize = tabs.originalContentWidth[i] * tabs.scale[i];
                 tabClippedSize = Math.min(tabSize, clipOffset - tabOffset);
                 borderAdjustmentSize = mBorderTransparentSide;
                 insetBorderPadding = 0;
             } else {
                 // landscape RTL
-                tabOffset = layoutTab.getX() + layoutTab.getScaledContentWidth();
-                tabSize = layoutTab.getScaledContentWidth();
+                tabSize = tabs.originalContentWidth[i] * tabs.scale[i];
+                tabOffset = tabs.x[i] + tabSize;
                 tabClippedSize = Math.min(tabSize, tabOffset - clipOffset);
                 borderAdjustmentSize = -mBorderTransparentSide;
                 insetBorderPadding = 0;
@@ -1684,46 +1693,41 @@ public class Stack {
 
             if (tabClippedSize <= absBorderAdjustmentSize) {
                 // If the tab is completed covered, don't bother drawing it at all.
-                layoutTab.setVisible(false);
-                layoutTab.setDrawDecoration(true);
+                tabs.visible[i] = false;
+                tabs.decorationAlpha[i] = 1.0f;
             } else {
                 // Fade the tab as it gets too close to the next one. This helps
                 // prevent overlapping shadows from becoming too dark.
                 float fade = MathUtils.clamp(((tabClippedSize - absBorderAdjustmentSize)
                                                      / StackTab.sStackedTabVisibleSize),
                         0, 1);
-                layoutTab.setDecorationAlpha(fade);
+                tabs.decorationAlpha[i] = fade;
 
                 // When tabs tilt forward, it will expose more of the tab
                 // underneath. To compensate, make the clipping size larger.
                 // Note, this calculation is only an estimate that seems to
                 // work.
                 float clipScale = 1.0f;
-                if (layoutTab.getTiltX() > 0 || ((!portrait && LocalizationUtils.isLayoutRtl())
-                                                                ? layoutTab.getTiltY() < 0
-                                                                : layoutTab.getTiltY() > 0)) {
-                    final float tilt =
-                            Math.max(layoutTab.getTiltX(), Math.abs(layoutTab.getTiltY()));
+                if (tabs.tiltX[i] > 0
+                        || ((!portrait && rtl) ? tabs.tiltY[i] < 0 : tabs.tiltY[i] > 0)) {
+                    final float tilt = Math.max(tabs.tiltX[i], Math.abs(tabs.tiltY[i]));
                     clipScale += (tilt / mMaxOverScrollAngle) * 0.60f;
                 }
 
                 float scaledTabClippedSize = Math.min(tabClippedSize * clipScale, tabSize);
                 // Set the clip
-                layoutTab.setClipOffset((!portrait && LocalizationUtils.isLayoutRtl())
-                                ? (tabSize - scaledTabClippedSize)
-                                : 0,
-                        0);
-                layoutTab.setClipSize(portrait ? Float.MAX_VALUE : scaledTabClippedSize,
-                        portrait ? scaledTabClippedSize : Float.MAX_VALUE);
+                tabs.clipX[i] = (!portrait && rtl) ? (tabSize - scaledTabClippedSize) : 0;
+                tabs.clipY[i] = 0;
+                tabs.clipWidth[i] = portrait ? Float.MAX_VALUE : scaledTabClippedSize;
+                tabs.clipHeight[i] = portrait ? scaledTabClippedSize : Float.MAX_VALUE;
             }
 
             // Clip the next tab where this tab begins.
             if (i > 0) {
-                LayoutTab nextLayoutTab = mStackTabs[i - 1].getLayoutTab();
-                if (nextLayoutTab.getScale() <= layoutTab.getScale()) {
+                if (tabs.scale[i - 1] <= tabs.scale[i]) {
                     clipOffset = tabOffset;
                 } else {
-                    clipOffset = tabOffset + tabClippedSize * layoutTab.getScale();
+                    clipOffset = tabOffset + tabClippedSize * tabs.scale[i];
                 }
 
                 // Extend the border just a little bit. Otherwise, the
@@ -1731,7 +1735,7 @@ public class Stack {
                 // content is actually smaller.
                 clipOffset += borderAdjustmentSize;
 
-                if (layoutTab.getBorderAlpha() < 1.f && layoutTab.getToolbarAlpha() < 1.f) {
+                if (tabs.borderAlpha[i] < 1.f && tabs.toolbarAlpha[i] < 1.f) {
                     clipOffset += insetBorderPadding;
                 }
             }
@@ -1766,8 +1770,9 @@ public class Stack {
         final float stackVisibilityMultiplier = stackArea / layoutArea;
 
         for (int i = 0; i < mStackTabs.length; i++) {
-            mStackTabs[i].updateStackVisiblityValue(stackVisibilityMultiplier);
-            mStackTabs[i].updateVisiblityValue(referenceIndex);
+            if (mStackTabs[i].updateVisiblityValues(referenceIndex, stackVisibilityMultiplier)) {
+                mTabPriorityChanged = true;
+            }
         }
     }
 
@@ -1794,9 +1799,11 @@ public class Stack {
      */
     private void computeTabTiltHelper(long time, RectF stackRect) {
         final boolean portrait = mCurrentMode == Orientation.PORTRAIT;
+        final boolean rtl = LocalizationUtils.isLayoutRtl();
         final float parentWidth = stackRect.width();
         final float parentHeight = stackRect.height();
         final float overscrollPercent = computeOverscrollPercent();
+        final StackTabArrays tabs = mTabArrays;
 
         // All the animations that sets the tilt value must be listed here.
         if (mOverviewAnimationType == OverviewAnimationType.START_PINCH
@@ -1809,14 +1816,16 @@ public class Stack {
         } else if (mPinch0TabIndex >= 0 || overscrollPercent == 0.0f
                 || mOverviewAnimationType == OverviewAnimationType.REACH_TOP) {
             // Keep tabs flat during pinch
-            for (int i = 0; i < mStackTabs.length; ++i) {
-                StackTab stackTab = mStackTabs[i];
-                LayoutTab layoutTab = stackTab.getLayoutTab();
-                layoutTab.setTiltX(0, 0);
-                layoutTab.setTiltY(0, 0);
+            for (int i = 0; i < tabs.count; ++i) {
+                tabs.tiltX[i] = 0;
+                tabs.tiltXPivotOffset[i] = 0;
+                tabs.tiltY[i] = 0;
+                tabs.tiltYPivotOffset[i] = 0;
             }
         } else if (overscrollPercent < 0) {
             if (mOverScrollCounter >= OVERSCROLL_FULL_ROLL_TRIGGER) {
+                // The animation starts from the values computed so far, and sets some of them.
+                tabs.store(mStackTabs);
                 startAnimation(time, OverviewAnimationType.FULL_ROLL);
                 mOverScrollCounter = 0;
                 // Remove overscroll so when the animation finishes the overscroll won't
@@ -1824,6 +1833,7 @@ public class Stack {
                 setScrollTarget(
                         MathUtils.clamp(mScrollOffset, getMinScroll(false), getMaxScroll(false)),
                         false);
+                tabs.load(mStackTabs);
             } else {
                 // Handle tilting tabs backwards (top or left of the tab goes away
                 // from the camera). Each tab pivots the same amount around the
@@ -1840,18 +1850,18 @@ public class Stack {
                 }
 
                 float pivotOffset = 0;
-                LayoutTab topTab = mStackTabs[mStackTabs.length - 1].getLayoutTab();
-                pivotOffset = portrait ? topTab.getScaledContentHeight() / 2 + topTab.getY()
-                                       : topTab.getScaledContentWidth() / 2 + topTab.getX();
+                int top = tabs.count - 1;
+                pivotOffset = portrait
+                        ? tabs.originalContentHeight[top] * tabs.scale[top] / 2 + tabs.y[top]
+                        : tabs.originalContentWidth[top] * tabs.scale[top] / 2 + tabs.x[top];
 
-                for (int i = 0; i < mStackTabs.length; ++i) {
-                    StackTab stackTab = mStackTabs[i];
-                    LayoutTab layoutTab = stackTab.getLayoutTab();
+                for (int i = 0; i < tabs.count; ++i) {
                     if (portrait) {
-                        layoutTab.setTiltX(tilt, pivotOffset - layoutTab.getY());
+                        tabs.tiltX[i] = tilt;
+                        tabs.tiltXPivotOffset[i] = pivotOffset - tabs.y[i];
                     } else {
-                        layoutTab.setTiltY(LocalizationUtils.isLayoutRtl() ? -tilt : tilt,
-                                pivotOffset - layoutTab.getX());
+                        tabs.tiltY[i] = rtl ? -tilt : tilt;
+                        tabs.tiltYPivotOffset[i] = pivotOffset - tabs.x[i];
                     }
                 }
             }
@@ -1866,24 +1876,26 @@ public class Stack {
             float offset = mOverscrollSlideInterpolator.getInterpolation(overscrollPercent)
                     * mMaxOverScrollSlide;
 
-            for (int i = 0; i < mStackTabs.length; ++i) {
-                StackTab stackTab = mStackTabs[i];
-                LayoutTab layoutTab = stackTab.getLayoutTab();
+            for (int i = 0; i < tabs.count; ++i) {
                 if (portrait) {
                     // portrait LTR & RTL
-                    float adjust = MathUtils.clamp((layoutTab.getY() / parentHeight) + 0.50f, 0, 1);
-                    layoutTab.setTiltX(tilt * adjust, layoutTab.getScaledContentHeight() / 3);
-                    layoutTab.setY(layoutTab.getY() + offset);
-                } else if (LocalizationUtils.isLayoutRtl()) {
+                    float adjust = MathUtils.clamp((tabs.y[i] / parentHeight) + 0.50f, 0, 1);
+                    tabs.tiltX[i] = tilt * adjust;
+                    tabs.tiltXPivotOffset[i] = tabs.originalContentHeight[i] * tabs.scale[i] / 3;
+                    tabs.y[i] += offset;
+                } else if (rtl) {
                     // landscape RTL
-                    float adjust = MathUtils.clamp(-(layoutTab.getX() / parentWidth) + 0.50f, 0, 1);
-                    layoutTab.setTiltY(-tilt * adjust, layoutTab.getScaledContentWidth() * 2 / 3);
-                    layoutTab.setX(layoutTab.getX() - offset);
+                    float adjust = MathUtils.clamp(-(tabs.x[i] / parentWidth) + 0.50f, 0, 1);
+                    tabs.tiltY[i] = -tilt * adjust;
+                    tabs.tiltYPivotOffset[i] =
+                            tabs.originalContentWidth[i] * tabs.scale[i] * 2 / 3;
+                    tabs.x[i] -= offset;
                 } else {
                     // landscape LTR
-                    float adjust = MathUtils.clamp((layoutTab.getX() / parentWidth) + 0.50f, 0, 1);
-                    layoutTab.setTiltY(tilt * adjust, layoutTab.getScaledContentWidth() / 3);
-                    layoutTab.setX(layoutTab.getX() + offset);
+                    float adjust = MathUtils.clamp((tabs.x[i] / parentWidth) + 0.50f, 0, 1);
+                    tabs.tiltY[i] = tilt * adjust;
+                    tabs.tiltYPivotOffset[i] = tabs.originalContentWidth[i] * tabs.scale[i] / 3;
+                    tabs.x[i] += offset;
                 }
             }
         }
@@ -1901,6 +1913,9 @@ public class Stack {
         if (!mRecomputePosition) return;
         mRecomputePosition = false;
 
+        // Steps 1 to 5 work on the values of the tabs loaded into arrays.
+        mTabArrays.load(mStackTabs);
+
         // Step 1: Updates the {@link LayoutTab} scale, alpha and depth values.
         computeTabScaleAlphaDepthHelper(stackRect);
 
@@ -1916,6 +1931,8 @@ public class Stack {
         // Step 5: Clipping, visibility and adjust overall alpha.
         computeTabClippingVisibilityHelper();
 
+        mTabArrays.store(mStackTabs);
+
         // Step 6: Update visibility sorting for prioritizing thumbnail texture request.
         computeTabVisibilitySortingHelper(stackRect);
     }
@@ -1973,6 +1990,7 @@ public class Stack {
         } else {
             StackTab[] oldTabs = mStackTabs;
             mStackTabs = new StackTab[count];
+            mTabPriorityChanged = true;
 
             final boolean isIncognito = mTabModel.isIncognito();
             final boolean needTitle = !mLayout.isHiding();
@@ -2316,6 +2334,7 @@ public class Stack {
      */
     public void cleanupTabs() {
         mStackTabs = null;
+        mTabPriorityChanged = true;
         resetInputActionIndices();
     }
 
@@ -418,26 +418,25 @@ public class StackTab implements ChromeAnimation.Animatable<StackTab.Property> {
     }
 
     /**
-     * Updates the cached visible area value to be used to sort tabs by visibility.
-     * @param referenceIndex The index that has the highest priority.
+     * Updates the cached values to be used to sort tabs by visibility.
+     * @param referenceIndex  The index that has the highest priority.
+     * @param stackVisibility Multiplier that represents how much the stack fills the screen.
+     * @return Whether any of the sorting values changed.
      */
-    public void updateVisiblityValue(int referenceIndex) {
-        mCachedVisibleArea = mLayoutTab.computeVisibleArea();
-        mCachedIndexDistance = Math.abs(mIndex - referenceIndex);
-        mOrderSortingValue = computeOrderSortingValue(mCachedIndexDistance, mCacheStackVisibility);
-        mVisiblitySortingValue = computeVisibilitySortingValue(
-                mCachedVisibleArea, mOrderSortingValue, mCacheStackVisibility);
-    }
+    public boolean updateVisiblityValues(int referenceIndex, float stackVisibility) {
+        final long oldVisiblitySortingValue = mVisiblitySortingValue;
+        final int oldOrderSortingValue = mOrderSortingValue;
 
-    /**
-     * Updates the cached visible area value to be used to sort tabs by visibility.
-     * @param stackVisibility   Multiplier that represents how much the stack fills the screen.
-     */
-    public void updateStackVisiblityValue(float stackVisibility) {
+        // Hidden tabs have no visible area, so don't bother computing it for them.
+        mCachedVisibleArea = mLayoutTab.isVisible() ? mLayoutTab.computeVisibleArea() : 0.0f;
+        mCachedIndexDistance = Math.abs(mIndex - referenceIndex);
         mCacheStackVisibility = stackVisibility;
         mOrderSortingValue = computeOrderSortingValue(mCachedIndexDistance, mCacheStackVisibility);
         mVisiblitySortingValue = computeVisibilitySortingValue(
                 mCachedVisibleArea, mOrderSortingValue, mCacheStackVisibility);
+
+        return mVisiblitySortingValue != oldVisiblitySortingValue
+                || mOrderSortingValue != oldOrderSortingValue;
     }
 
     /**
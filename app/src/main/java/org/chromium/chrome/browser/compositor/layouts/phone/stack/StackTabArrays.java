@@ -0,0 +1,178 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.compositor.layouts.phone.stack;
+
+import org.chromium.chrome.browser.compositor.layouts.components.LayoutTab;
+
+/**
+ * The values used by {@link Stack#computeTabPosition} for each tab, stored in parallel primitive
+ * arrays indexed like the tabs of the stack.
+ *
+ * The passes of computeTabPosition() read and write these values several times per tab, so
+ * keeping them in arrays makes each pass a tight loop over primitives rather than a walk through
+ * the {@link StackTab} and {@link LayoutTab} of every tab.  The values are loaded from the tabs
+ * before the passes, and the results are stored back once the passes are done, as the
+ * {@link LayoutTab}s remain what animations and the renderer work with.  The arrays are reused
+ * from frame to frame and only grow.
+ */
+class StackTabArrays {
+    /** Number of tabs whose values are loaded. */
+    int count;
+
+    // Values loaded from the StackTabs.
+    boolean[] dying;
+    float[] stackTabScale;
+    float[] stackTabAlpha;
+    float[] discardAmount;
+    boolean[] discardFromClick;
+    float[] discardOriginX;
+    float[] discardOriginY;
+    float[] xInStackOffset;
+    float[] yInStackOffset;
+    float[] xOutOfStack;
+    float[] yOutOfStack;
+    float[] xInStackInfluence;
+    float[] yInStackInfluence;
+    float[] scrollOffset;
+
+    // Values loaded from the LayoutTabs.
+    float[] originalContentWidth;
+    float[] originalContentHeight;
+    float[] borderAlpha;
+    float[] toolbarAlpha;
+
+    // Values computed by the passes, which are also loaded from the LayoutTabs as the passes
+    // don't set all of them on every frame.
+    float[] x;
+    float[] y;
+    float[] scale;
+    float[] borderScale;
+    float[] alpha;
+    float[] tiltX;
+    float[] tiltXPivotOffset;
+    float[] tiltY;
+    float[] tiltYPivotOffset;
+    float[] clipX;
+    float[] clipY;
+    float[] clipWidth;
+    float[] clipHeight;
+    float[] decorationAlpha;
+    boolean[] visible;
+
+    /**
+     * Loads the values of the tabs.
+     * @param tabs The tabs of the stack.
+     */
+    void load(StackTab[] tabs) {
+        count = tabs.length;
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            StackTab stackTab = tabs[i];
+            dying[i] = stackTab.isDying();
+            stackTabScale[i] = stackTab.getScale();
+            stackTabAlpha[i] = stackTab.getAlpha();
+            discardAmount[i] = stackTab.getDiscardAmount();
+            discardFromClick[i] = stackTab.getDiscardFromClick();
+            discardOriginX[i] = stackTab.getDiscardOriginX();
+            discardOriginY[i] = stackTab.getDiscardOriginY();
+            xInStackOffset[i] = stackTab.getXInStackOffset();
+            yInStackOffset[i] = stackTab.getYInStackOffset();
+            xOutOfStack[i] = stackTab.getXOutOfStack();
+            yOutOfStack[i] = stackTab.getYOutOfStack();
+            xInStackInfluence[i] = stackTab.getXInStackInfluence();
+            yInStackInfluence[i] = stackTab.getYInStackInfluence();
+            scrollOffset[i] = stackTab.getScrollOffset();
+
+            LayoutTab layoutTab = stackTab.getLayoutTab();
+            originalContentWidth[i] = layoutTab.getOriginalContentWidth();
+            originalContentHeight[i] = layoutTab.getOriginalContentHeight();
+            borderAlpha[i] = layoutTab.getBorderAlpha();
+            toolbarAlpha[i] = layoutTab.getToolbarAlpha();
+            x[i] = layoutTab.getX();
+            y[i] = layoutTab.getY();
+            scale[i] = layoutTab.getScale();
+            borderScale[i] = layoutTab.getBorderScale();
+            alpha[i] = layoutTab.getAlpha();
+            tiltX[i] = layoutTab.getTiltX();
+            tiltXPivotOffset[i] = layoutTab.getTiltXPivotOffset();
+            tiltY[i] = layoutTab.getTiltY();
+            tiltYPivotOffset[i] = layoutTab.getTiltYPivotOffset();
+            clipX[i] = layoutTab.getClippedX();
+            clipY[i] = layoutTab.getClippedY();
+            clipWidth[i] = layoutTab.getClippedWidth();
+            clipHeight[i] = layoutTab.getClippedHeight();
+            decorationAlpha[i] = layoutTab.getDecorationAlpha();
+            visible[i] = layoutTab.isVisible();
+        }
+    }
+
+    /**
+     * Stores the computed values into the tabs.
+     * @param tabs The tabs of the stack, which must be the ones the values were loaded from.
+     */
+    void store(StackTab[] tabs) {
+        assert tabs.length == count;
+        for (int i = 0; i < count; i++) {
+            StackTab stackTab = tabs[i];
+            stackTab.setScrollOffset(scrollOffset[i]);
+
+            LayoutTab layoutTab = stackTab.getLayoutTab();
+            layoutTab.setX(x[i]);
+            layoutTab.setY(y[i]);
+            layoutTab.setScale(scale[i]);
+            layoutTab.setBorderScale(borderScale[i]);
+            layoutTab.setAlpha(alpha[i]);
+            layoutTab.setTiltX(tiltX[i], tiltXPivotOffset[i]);
+            layoutTab.setTiltY(tiltY[i], tiltYPivotOffset[i]);
+            layoutTab.setClipOffset(clipX[i], clipY[i]);
+            layoutTab.setClipSize(clipWidth[i], clipHeight[i]);
+            // Hiding a tab finishes its animations.  As in the passes, this is done after its
+            // position is set and before its decoration alpha is.
+            layoutTab.setVisible(visible[i]);
+            layoutTab.setDecorationAlpha(decorationAlpha[i]);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (dying != null && dying.length >= capacity) return;
+        capacity = Math.max(capacity, dying == null ? 0 : dying.length * 2);
+
+        dying = new boolean[capacity];
+        stackTabScale = new float[capacity];
+        stackTabAlpha = new float[capacity];
+        discardAmount = new float[capacity];
+        discardFromClick = new boolean[capacity];
+        discardOriginX = new float[capacity];
+        discardOriginY = new float[capacity];
+        xInStackOffset = new float[capacity];
+        yInStackOffset = new float[capacity];
+        xOutOfStack = new float[capacity];
+        yOutOfStack = new float[capacity];
+        xInStackInfluence = new float[capacity];
+        yInStackInfluence = new float[capacity];
+        scrollOffset = new float[capacity];
+
+        originalContentWidth = new float[capacity];
+        originalContentHeight = new float[capacity];
+        borderAlpha = new float[capacity];
+        toolbarAlpha = new float[capacity];
+
+        x = new float[capacity];
+        y = new float[capacity];
+        scale = new float[capacity];
+        borderScale = new float[capacity];
+        alpha = new float[capacity];
+        tiltX = new float[capacity];
+        tiltXPivotOffset = new float[capacity];
+        tiltY = new float[capacity];
+        tiltYPivotOffset = new float[capacity];
+        clipX = new float[capacity];
+        clipY = new float[capacity];
+        clipWidth = new float[capacity];
+        clipHeight = new float[capacity];
+        decorationAlpha = new float[capacity];
+        visible = new boolean[capacity];
+    }
+}
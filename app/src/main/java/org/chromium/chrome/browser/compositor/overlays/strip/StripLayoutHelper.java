@@ -14,6 +14,7 @@ import android.os.Message;
 import android.os.SystemClock;
 import android.support.annotation.StringRes;
 import android.text.TextUtils;
+import android.util.SparseArray;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup.MarginLayoutParams;
@@ -108,8 +109,12 @@ public class StripLayoutHelper {
 
     // Internal State
     private StripLayoutTab[] mStripTabs = new StripLayoutTab[0];
+    private final SparseArray<StripLayoutTab> mStripTabsById = new SparseArray<StripLayoutTab>();
     private StripLayoutTab[] mStripTabsVisuallyOrdered = new StripLayoutTab[0];
+    // Only the first mStripTabsToRenderCount tabs are rendered.  The array is reused from frame
+    // to frame, as the number of visible tabs changes as the strip scrolls.
     private StripLayoutTab[] mStripTabsToRender = new StripLayoutTab[0];
+    private int mStripTabsToRenderCount;
     private final StripTabEventHandler mStripTabEventHandler = new StripTabEventHandler();
     private final TabLoadTrackerCallback mTabLoadTrackerHost = new TabLoadTrackerCallbackImpl();
     private ChromeAnimation<Animatable<?>> mLayoutAnimations;
@@ -238,13 +243,21 @@ public class StripLayoutHelper {
     }
 
     /**
-     * @return The visually ordered list of visible {@link StripLayoutTab}s.
+     * @return The visually ordered list of visible {@link StripLayoutTab}s.  Only the first
+     *         {@link #getStripLayoutTabsToRenderCount()} tabs of the array are to be rendered.
      */
     @SuppressFBWarnings("EI_EXPOSE_REP")
     public StripLayoutTab[] getStripLayoutTabsToRender() {
         return mStripTabsToRender;
     }
 
+    /**
+     * @return The number of {@link StripLayoutTab}s to render.
+     */
+    public int getStripLayoutTabsToRenderCount() {
+        return mStripTabsToRenderCount;
+    }
+
     @VisibleForTesting
     public int getTabCount() {
         return mStripTabs.length;
@@ -928,18 +941,21 @@ public class StripLayoutHelper {
         mLayoutAnimations = null;
 
         // 2. Figure out which tabs need to be closed.
-        ArrayList<StripLayoutTab> tabsToRemove = new ArrayList<StripLayoutTab>();
+        ArrayList<StripLayoutTab> tabsToRemove = null;
         for (int i = 0; i < mStripTabs.length; i++) {
             StripLayoutTab tab = mStripTabs[i];
-            if (tab.isDying()) tabsToRemove.add(tab);
+            if (!tab.isDying()) continue;
+            if (tabsToRemove == null) tabsToRemove = new ArrayList<StripLayoutTab>();
+            tabsToRemove.add(tab);
         }
+        if (tabsToRemove == null) return;
 
         // 3. Pass the close notifications to the model.
         for (StripLayoutTab tab : tabsToRemove) {
             TabModelUtils.closeTabById(mModel, tab.getId(), true);
         }
 
-        if (!tabsToRemove.isEmpty()) mUpdateHost.requestUpdate();
+        mUpdateHost.requestUpdate();
     }
 
     private void startAnimation(Animation<Animatable<?>> animation, boolean finishPrevious) {
@@ -1027,19 +1043,37 @@ public class StripLayoutHelper {
 
     private void computeAndUpdateTabOrders(boolean delayResize) {
         final int count = mModel.getCount();
-        StripLayoutTab[] tabs = new StripLayoutTab[count];
-
+        final int oldStripLength = mStripTabs.length;
+
+        // The tabs are updated in place unless tabs were added or removed, and existing tabs are
+        // found by id rather than by scanning the strip, so that adding or closing a tab doesn't
+        // rebuild the whole strip.  The accessibility descriptions are still refreshed for every
+        // tab, as title changes only reach the strip of the active model.
+        StripLayoutTab[] tabs = count == oldStripLength ? mStripTabs : new StripLayoutTab[count];
+        boolean tabsChanged = tabs != mStripTabs;
         for (int i = 0; i < count; i++) {
             final Tab tab = mModel.getTabAt(i);
             final int id = tab.getId();
-            final StripLayoutTab oldTab = findTabById(id);
-            tabs[i] = oldTab != null ? oldTab : createStripTab(id);
-            setAccessibilityDescription(tabs[i], tab);
+            StripLayoutTab stripTab = tabs[i];
+            if (tabsChanged || stripTab.getId() != id) {
+                stripTab = mStripTabsById.get(id);
+                if (stripTab == null) {
+                    stripTab = createStripTab(id);
+                    tabsChanged = true;
+                }
+                tabs[i] = stripTab;
+            }
+            setAccessibilityDescription(stripTab, tab);
         }
-
-        int oldStripLength = mStripTabs.length;
         mStripTabs = tabs;
 
+        if (tabsChanged) {
+            mStripTabsById.clear();
+            for (int i = 0; i < count; i++) {
+                mStripTabsById.put(mStripTabs[i].getId(), mStripTabs[i]);
+            }
+        }
+
         if (mStripTabs.length != oldStripLength) resizeTabStrip(delayResize);
 
         updateVisualTabOrdering();
@@ -1081,11 +1115,7 @@ public class StripLayoutHelper {
      */
     @VisibleForTesting
     public StripLayoutTab findTabById(int id) {
-        if (mStripTabs == null) return null;
-        for (int i = 0; i < mStripTabs.length; i++) {
-            if (mStripTabs[i].getId() == id) return mStripTabs[i];
-        }
-        return null;
+        return mStripTabsById.get(id);
     }
 
     private int findIndexForTab(int id) {
@@ -1122,6 +1152,10 @@ public class StripLayoutHelper {
             // 5.a. Cancel any outstanding tab width animations.
             cancelAnimation(mStripTabs[i], StripLayoutTab.Property.WIDTH);
 
+            // 5.b. Skip the tabs that already have the width, e.g. when tabs are at their minimum
+            // width and only one was added or closed.
+            if (tab.getWidth() == mCachedTabWidth) continue;
+
             if (animate && !mAnimationsDisabledForTesting) {
                 startAnimation(buildTabResizeAnimation(tab, mCachedTabWidth), false);
             } else {
@@ -1191,24 +1225,24 @@ public class StripLayoutHelper {
     }
 
     private void createRenderList() {
-        // 1. Figure out how many tabs will need to be rendered.
-        int renderCount = 0;
-        for (int i = 0; i < mStripTabsVisuallyOrdered.length; ++i) {
-            if (mStripTabsVisuallyOrdered[i].isVisible()) renderCount++;
-        }
-
-        // 2. Reallocate the render list if necessary.
-        if (mStripTabsToRender.length != renderCount) {
-            mStripTabsToRender = new StripLayoutTab[renderCount];
+        // 1. Grow the render list if necessary, so that it can hold every tab.
+        if (mStripTabsToRender.length < mStripTabsVisuallyOrdered.length) {
+            mStripTabsToRender = new StripLayoutTab[mStripTabsVisuallyOrdered.length];
         }
 
-        // 3. Populate it with the visible tabs.
+        // 2. Populate it with the visible tabs.
         int renderIndex = 0;
         for (int i = 0; i < mStripTabsVisuallyOrdered.length; ++i) {
             if (mStripTabsVisuallyOrdered[i].isVisible()) {
                 mStripTabsToRender[renderIndex++] = mStripTabsVisuallyOrdered[i];
             }
         }
+
+        // 3. Release the tabs left over from previous frames, which may have been closed.
+        for (int i = renderIndex; i < mStripTabsToRenderCount; ++i) {
+            mStripTabsToRender[i] = null;
+        }
+        mStripTabsToRenderCount = renderIndex;
     }
 
     private void updateNewTabButtonState() {
@@ -121,9 +121,10 @@ public class StripLayoutHelperManager implements SceneOverlay {
         Tab selectedTab = mTabModelSelector.getCurrentModel().getTabAt(
                 mTabModelSelector.getCurrentModel().index());
         int selectedTabId = selectedTab == null ? TabModel.INVALID_TAB_INDEX : selectedTab.getId();
+        StripLayoutHelper activeHelper = getActiveStripLayoutHelper();
         mTabStripTreeProvider.pushAndUpdateStrip(this, layerTitleCache, resourceManager,
-                getActiveStripLayoutHelper().getStripLayoutTabsToRender(), yOffset,
-                selectedTabId);
+                activeHelper.getStripLayoutTabsToRender(),
+                activeHelper.getStripLayoutTabsToRenderCount(), yOffset, selectedTabId);
         return mTabStripTreeProvider;
     }
 
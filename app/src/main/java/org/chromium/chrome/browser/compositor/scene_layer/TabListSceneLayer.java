@@ -6,7 +6,9 @@ package org.chromium.chrome.browser.compositor.scene_layer;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Color;
 import android.graphics.Rect;
+import android.util.SparseIntArray;
 
 import org.chromium.base.ApiCompatibilityUtils;
 import org.chromium.base.annotations.JNINamespace;
@@ -26,8 +28,22 @@ import org.chromium.ui.resources.ResourceManager;
  */
 @JNINamespace("android")
 public class TabListSceneLayer extends SceneLayer {
+    // Maximum number of toolbar colors whose close button color is cached.
+    private static final int MAX_CACHED_CLOSE_BUTTON_COLORS = 32;
+
     private long mNativePtr;
 
+    // Colors resolved from |mColorResources|, which are cached rather than resolved for every tab
+    // on every frame.
+    private Resources mColorResources;
+    private int mDefaultThemeColor;
+    private int mIncognitoThemeColor;
+    private int mBorderColor;
+    private int mIncognitoBorderColor;
+
+    // Close button colors of non-incognito tabs, keyed by toolbar background color.
+    private final SparseIntArray mCloseButtonColors = new SparseIntArray();
+
     /**
      * Pushes all relevant {@link LayoutTab}s from a {@link Layout} to the CC Layer tree.  This will
      * let them be rendered on the screen.  This should only be called when the Compositor has
@@ -53,6 +69,12 @@ public class TabListSceneLayer extends SceneLayer {
         LayoutTab[] tabs = layout.getLayoutTabsToRender();
         int tabsCount = tabs != null ? tabs.length : 0;
 
+        updateCachedColors(res);
+        final boolean browserControlsAtBottom = fullscreenManager.areBrowserControlsAtBottom();
+        final boolean isPortrait = layout.getOrientation() == Orientation.PORTRAIT;
+        final float closeButtonWidth = LayoutTab.CLOSE_BUTTON_WIDTH_DP * dpToPx;
+        final int visibleContentHeight = contentViewport.height();
+
         nativeBeginBuildingFrame(mNativePtr);
 
         nativeUpdateLayer(mNativePtr, getTabListBackgroundColor(context), viewport.left,
@@ -63,16 +85,9 @@ public class TabListSceneLayer extends SceneLayer {
             LayoutTab t = tabs[i];
             assert t.isVisible() : "LayoutTab in that list should be visible";
             final float decoration = t.getDecorationAlpha();
+            final boolean incognito = t.isIncognito();
+            final int toolbarBackgroundColor = t.getToolbarBackgroundColor();
 
-            int defaultThemeColor = t.isIncognito()
-                    ? ApiCompatibilityUtils.getColor(res, R.color.incognito_primary_color)
-                    : ApiCompatibilityUtils.getColor(res, R.color.default_primary_color);
-
-            int closeButtonColor = ColorUtils.getThemedAssetColor(t.getToolbarBackgroundColor(),
-                        t.isIncognito());
-
-            int borderColorResource =
-                    t.isIncognito() ? R.color.tab_back_incognito : R.color.tab_back;
             // TODO(dtrainor, clholgat): remove "* dpToPx" once the native part fully supports dp.
             nativePutTabLayer(mNativePtr, t.getId(), R.id.control_container,
                     R.drawable.btn_tab_close,
@@ -80,13 +95,12 @@ public class TabListSceneLayer extends SceneLayer {
                     R.drawable.tabswitcher_border_frame_decoration, R.drawable.logo_card_back,
                     R.drawable.tabswitcher_border_frame,
                     R.drawable.tabswitcher_border_frame_inner_shadow,
-                    t.canUseLiveTexture(), fullscreenManager.areBrowserControlsAtBottom(),
-                    t.getBackgroundColor(),
-                    ApiCompatibilityUtils.getColor(res, borderColorResource), t.isIncognito(),
-                    layout.getOrientation() == Orientation.PORTRAIT, t.getRenderX() * dpToPx,
-                    t.getRenderY() * dpToPx, t.getScaledContentWidth() * dpToPx,
-                    t.getScaledContentHeight() * dpToPx, t.getOriginalContentWidth() * dpToPx,
-                    t.getOriginalContentHeight() * dpToPx, contentViewport.height(),
+                    t.canUseLiveTexture(), browserControlsAtBottom, t.getBackgroundColor(),
+                    incognito ? mIncognitoBorderColor : mBorderColor, incognito, isPortrait,
+                    t.getRenderX() * dpToPx, t.getRenderY() * dpToPx,
+                    t.getScaledContentWidth() * dpToPx, t.getScaledContentHeight() * dpToPx,
+                    t.getOriginalContentWidth() * dpToPx, t.getOriginalContentHeight() * dpToPx,
+                    visibleContentHeight,
                     t.getClippedX() * dpToPx, t.getClippedY() * dpToPx,
                     Math.min(t.getClippedWidth(), t.getScaledContentWidth()) * dpToPx,
                     Math.min(t.getClippedHeight(), t.getScaledContentHeight()) * dpToPx,
@@ -94,9 +108,10 @@ public class TabListSceneLayer extends SceneLayer {
                     t.getTiltX(), t.getTiltY(), t.getAlpha(), t.getBorderAlpha() * decoration,
                     t.getBorderInnerShadowAlpha() * decoration, decoration,
                     t.getShadowOpacity() * decoration, t.getBorderCloseButtonAlpha() * decoration,
-                    LayoutTab.CLOSE_BUTTON_WIDTH_DP * dpToPx, t.getStaticToViewBlend(),
+                    closeButtonWidth, t.getStaticToViewBlend(),
                     t.getBorderScale(), t.getSaturation(), t.getBrightness(), t.showToolbar(),
-                    defaultThemeColor, t.getToolbarBackgroundColor(), closeButtonColor,
+                    incognito ? mIncognitoThemeColor : mDefaultThemeColor,
+                    toolbarBackgroundColor, getCloseButtonColor(toolbarBackgroundColor, incognito),
                     t.anonymizeToolbar(), R.drawable.textbox, t.getTextBoxBackgroundColor(),
                     t.getTextBoxAlpha(), t.getToolbarAlpha(), t.getToolbarYOffset() * dpToPx,
                     t.getSideBorderScale(), t.insetBorderVertical());
@@ -104,6 +119,39 @@ public class TabListSceneLayer extends SceneLayer {
         nativeFinishBuildingFrame(mNativePtr);
     }
 
+    /**
+     * Resolves the colors used for every tab, unless they were already resolved from the same
+     * resources.
+     * @param res The resources to resolve the colors from.
+     */
+    private void updateCachedColors(Resources res) {
+        if (res == mColorResources) return;
+        mColorResources = res;
+        mDefaultThemeColor = ApiCompatibilityUtils.getColor(res, R.color.default_primary_color);
+        mIncognitoThemeColor = ApiCompatibilityUtils.getColor(res, R.color.incognito_primary_color);
+        mBorderColor = ApiCompatibilityUtils.getColor(res, R.color.tab_back);
+        mIncognitoBorderColor = ApiCompatibilityUtils.getColor(res, R.color.tab_back_incognito);
+    }
+
+    /**
+     * @param toolbarBackgroundColor The background color of the toolbar of a tab.
+     * @param incognito Whether the tab is incognito.
+     * @return The color of the close button of the tab.
+     */
+    private int getCloseButtonColor(int toolbarBackgroundColor, boolean incognito) {
+        // Incognito tabs always use the dark theme.
+        if (incognito) return Color.WHITE;
+
+        int index = mCloseButtonColors.indexOfKey(toolbarBackgroundColor);
+        if (index >= 0) return mCloseButtonColors.valueAt(index);
+        int color = ColorUtils.getThemedAssetColor(toolbarBackgroundColor, false);
+        if (mCloseButtonColors.size() >= MAX_CACHED_CLOSE_BUTTON_COLORS) {
+            mCloseButtonColors.clear();
+        }
+        mCloseButtonColors.put(toolbarBackgroundColor, color);
+        return color;
+    }
+
     /**
      * @return The background color
      */
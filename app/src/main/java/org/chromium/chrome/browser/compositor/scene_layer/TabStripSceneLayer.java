@@ -56,11 +56,13 @@ public class TabStripSceneLayer extends SceneOverlayLayer {
      * @param layerTitleCache A layer title cache.
      * @param resourceManager A resource manager.
      * @param stripLayoutTabsToRender Array of strip layout tabs.
+     * @param stripLayoutTabsToRenderCount Number of tabs to render, from the start of the array.
      * @param yOffset Current browser controls offset in dp.
      */
     public void pushAndUpdateStrip(StripLayoutHelperManager layoutHelper,
             LayerTitleCache layerTitleCache, ResourceManager resourceManager,
-            StripLayoutTab[] stripLayoutTabsToRender, float yOffset, int selectedTabId) {
+            StripLayoutTab[] stripLayoutTabsToRender, int stripLayoutTabsToRenderCount,
+            float yOffset, int selectedTabId) {
         if (mNativePtr == 0) return;
 
         final boolean visible = yOffset > -layoutHelper.getHeight();
@@ -70,7 +72,7 @@ public class TabStripSceneLayer extends SceneOverlayLayer {
         if (visible) {
             pushButtonsAndBackground(layoutHelper, resourceManager, yOffset);
             pushStripTabs(layoutHelper, layerTitleCache, resourceManager, stripLayoutTabsToRender,
-                    selectedTabId);
+                    stripLayoutTabsToRenderCount, selectedTabId);
         }
         nativeFinishBuildingFrame(mNativePtr);
     }
@@ -126,8 +128,8 @@ public class TabStripSceneLayer extends SceneOverlayLayer {
 
     private void pushStripTabs(StripLayoutHelperManager layoutHelper,
             LayerTitleCache layerTitleCache, ResourceManager resourceManager,
-            StripLayoutTab[] stripTabs, int selectedTabId) {
-        final int tabsCount = stripTabs != null ? stripTabs.length : 0;
+            StripLayoutTab[] stripTabs, int stripTabsCount, int selectedTabId) {
+        final int tabsCount = stripTabs != null ? stripTabsCount : 0;
 
         for (int i = 0; i < tabsCount; i++) {
             final StripLayoutTab st = stripTabs[i];
@@ -4,16 +4,30 @@
 
 package org.chromium.chrome.browser.contextualsearch;
 
+import android.content.Context;
+
+import org.chromium.base.Log;
+import org.chromium.base.StreamUtil;
+
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 /**
  * Blacklist used to suppress selections.
  */
 public class ContextualSearchBlacklist {
+    private static final String TAG = "ContextualSearch";
+
+    // The lexicon of a language is bundled as the asset named by the prefix, the language code and
+    // the suffix, e.g. "contextual_search/blacklist_de.bin".
+    private static final String LEXICON_ASSET_PREFIX = "contextual_search/blacklist_";
+    private static final String LEXICON_ASSET_SUFFIX = ".bin";
 
     /**
      * Reasons that may cause a selection to be blacklisted.
@@ -27,12 +41,8 @@ public class ContextualSearchBlacklist {
         MISC
     }
 
-    // Number pattern.
-    private static final String DIGITS_PATTERN = "^\\d+$";
-    private static final Pattern mDigitsPattern = Pattern.compile(DIGITS_PATTERN);
-
-    // Blacklist.
-    private static final Map<String, BlacklistReason> BLACKLIST;
+    // Blacklist, which is extended by the lexicons passed to loadLexicon().
+    private static volatile ContextualSearchLexicon sLexicon;
     static {
         Map<String, BlacklistReason> codes = new HashMap<>();
 
@@ -108,7 +118,7 @@ public class ContextualSearchBlacklist {
         codes.put("y", BlacklistReason.MISC);
         codes.put("you", BlacklistReason.MISC);
 
-        BLACKLIST = Collections.unmodifiableMap(codes);
+        sLexicon = ContextualSearchLexicon.create(codes);
     }
 
     // Metrics codes.
@@ -190,13 +200,11 @@ public class ContextualSearchBlacklist {
      * @return The reason to suppress or not the selection.
      */
     public static BlacklistReason findReasonToSuppressSelection(String selection) {
-        selection = selection.toLowerCase(Locale.getDefault());
-
         if (isNumber(selection)) {
             return BlacklistReason.NUMBER;
         }
 
-        BlacklistReason blacklistReason = BLACKLIST.get(selection);
+        BlacklistReason blacklistReason = sLexicon.find(selection);
         if (blacklistReason != null) {
             return blacklistReason;
         }
@@ -204,6 +212,41 @@ public class ContextualSearchBlacklist {
         return BlacklistReason.NONE;
     }
 
+    /**
+     * Adds the words of a lexicon, e.g. the stop words of the current locale, to the blacklist.
+     * Words already in the blacklist keep their reason.  Does I/O, so this should not be called on
+     * the UI thread.
+     * @param stream The lexicon, in the binary format described in {@link ContextualSearchLexicon}.
+     *               The stream is not closed.
+     * @throws IOException If the lexicon couldn't be read.
+     */
+    public static void loadLexicon(InputStream stream) throws IOException {
+        synchronized (ContextualSearchBlacklist.class) {
+            sLexicon = ContextualSearchLexicon.read(stream, sLexicon);
+        }
+    }
+
+    /**
+     * Adds the lexicon bundled for the language of the default locale, if there is one, to the
+     * blacklist.  Does I/O, so this should not be called on the UI thread.
+     * @param context The context used to open the assets.
+     */
+    public static void loadLexiconForDefaultLocale(Context context) {
+        String assetName = LEXICON_ASSET_PREFIX + Locale.getDefault().getLanguage()
+                + LEXICON_ASSET_SUFFIX;
+        InputStream stream = null;
+        try {
+            stream = context.getAssets().open(assetName);
+            loadLexicon(new BufferedInputStream(stream));
+        } catch (FileNotFoundException e) {
+            // No lexicon for this language, so only the built-in blacklist is used.
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load the lexicon " + assetName, e);
+        } finally {
+            StreamUtil.closeQuietly(stream);
+        }
+    }
+
     /**
      * @param reason The reason for blacklisting.
      * @param wasSeen Whether the results were seen.
@@ -218,6 +261,12 @@ public class ContextualSearchBlacklist {
      * @return Whether the given |selection| represents a number.
      */
     private static boolean isNumber(String selection) {
-        return mDigitsPattern.matcher(selection).find();
+        int length = selection.length();
+        if (length == 0) return false;
+        for (int i = 0; i < length; i++) {
+            char c = selection.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
     }
 }
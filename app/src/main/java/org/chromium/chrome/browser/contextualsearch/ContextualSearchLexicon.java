@@ -0,0 +1,128 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.contextualsearch;
+
+import org.chromium.chrome.browser.contextualsearch.ContextualSearchBlacklist.BlacklistReason;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * A set of words, each with the reason to suppress a selection of it, that is looked up
+ * case-insensitively without copying the selection.
+ *
+ * Words are lowercased one char at a time and kept in an open addressing hash table, so a lookup
+ * hashes and compares the chars of the selection in place rather than lowercasing it into a new
+ * String first.  Lexicons can also be read from a compact binary format, so that larger lists of
+ * words, e.g. per-locale stop words, can be shipped as files rather than as code.  The format is
+ * an int holding the number of words, followed by the ordinal of the {@link BlacklistReason} of
+ * each word as a byte and the word itself, as written by {@link java.io.DataOutput#writeUTF}.
+ * A lexicon is not modified once built, so it can be used from any thread.
+ */
+final class ContextualSearchLexicon {
+    private static final int MAX_WORD_COUNT = 1 << 20;
+
+    // The words, lowercased, and their reasons, at the slots of the hash table.
+    private final char[][] mWords;
+    private final BlacklistReason[] mReasons;
+    private final int mMask;
+    private int mSize;
+
+    private ContextualSearchLexicon(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 1)) * 4;
+        mWords = new char[size][];
+        mReasons = new BlacklistReason[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * Builds a lexicon from words and their reasons.
+     * @param words The words, mapped to the reasons to suppress a selection of them.
+     * @return The lexicon.
+     */
+    static ContextualSearchLexicon create(Map<String, BlacklistReason> words) {
+        ContextualSearchLexicon lexicon = new ContextualSearchLexicon(words.size());
+        for (Map.Entry<String, BlacklistReason> entry : words.entrySet()) {
+            lexicon.put(entry.getKey(), entry.getValue());
+        }
+        return lexicon;
+    }
+
+    /**
+     * Reads a lexicon in the binary format, and merges it into another one.  Words that are in
+     * both keep the reason they have in the other lexicon.
+     * @param stream The stream to read from, which is not closed.
+     * @param other  The lexicon to merge the words read into, which is not modified.
+     * @return The merged lexicon.
+     * @throws IOException If the stream couldn't be read or is not in the binary format.
+     */
+    static ContextualSearchLexicon read(InputStream stream, ContextualSearchLexicon other)
+            throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        int count = input.readInt();
+        if (count < 0 || count > MAX_WORD_COUNT) throw new IOException("Bad word count: " + count);
+
+        BlacklistReason[] values = BlacklistReason.values();
+        ContextualSearchLexicon lexicon = new ContextualSearchLexicon(count + other.mSize);
+        for (int i = 0; i < other.mWords.length; i++) {
+            if (other.mWords[i] == null) continue;
+            lexicon.put(new String(other.mWords[i]), other.mReasons[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            int reason = input.readUnsignedByte();
+            String word = input.readUTF();
+            if (reason >= values.length) throw new IOException("Bad reason: " + reason);
+            if (!word.isEmpty()) lexicon.put(word, values[reason]);
+        }
+        return lexicon;
+    }
+
+    /**
+     * @param text The text to look up, in any case.
+     * @return The reason of the word matching the text, or null if the text is not a word of the
+     *         lexicon.
+     */
+    BlacklistReason find(CharSequence text) {
+        int length = text.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+        }
+
+        for (int slot = mix(hash) & mMask; mWords[slot] != null; slot = (slot + 1) & mMask) {
+            char[] word = mWords[slot];
+            if (word.length != length) continue;
+            int i = 0;
+            while (i < length && word[i] == Character.toLowerCase(text.charAt(i))) i++;
+            if (i == length) return mReasons[slot];
+        }
+        return null;
+    }
+
+    /** Adds a word, unless it is in the lexicon already. */
+    private void put(String word, BlacklistReason reason) {
+        if (find(word) != null) return;
+
+        char[] lowercaseWord = new char[word.length()];
+        int hash = 0;
+        for (int i = 0; i < lowercaseWord.length; i++) {
+            lowercaseWord[i] = Character.toLowerCase(word.charAt(i));
+            hash = 31 * hash + lowercaseWord[i];
+        }
+
+        int slot = mix(hash) & mMask;
+        while (mWords[slot] != null) slot = (slot + 1) & mMask;
+        mWords[slot] = lowercaseWord;
+        mReasons[slot] = reason;
+        mSize++;
+    }
+
+    /** Spreads the bits of a String hash code, as short words differ mostly in their low bits. */
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16) ^ (hash >>> 7);
+    }
+}
@@ -42,7 +42,6 @@ public class ContextualSearchSelectionController {
     // The default navigation-detection-delay in milliseconds.
     private static final int TAP_NAVIGATION_DETECTION_DELAY = 16;
 
-    private static final String CONTAINS_WORD_PATTERN = "(\\w|\\p{L}|\\p{N})+";
     // A URL is:
     //   1:    scheme://
     //   1+:   any word char, _ or -
@@ -60,7 +59,6 @@ public class ContextualSearchSelectionController {
     private final Runnable mHandleInvalidTapRunnable;
     private final Handler mRunnableHandler;
     private final float mPxToDp;
-    private final Pattern mContainsWordPattern;
 
     private String mSelectedText;
     private SelectionType mSelectionType;
@@ -137,8 +135,6 @@ public class ContextualSearchSelectionController {
                 onInvalidTapDetectionTimeout();
             }
         };
-
-        mContainsWordPattern = Pattern.compile(CONTAINS_WORD_PATTERN);
     }
 
     /**
@@ -580,7 +576,28 @@ public class ContextualSearchSelectionController {
      */
     @VisibleForTesting
     public boolean doesContainAWord(String selection) {
-        return mContainsWordPattern.matcher(selection).find();
+        int length = selection.length();
+        for (int i = 0; i < length;) {
+            int codePoint = selection.codePointAt(i);
+            if (isWordCodePoint(codePoint)) return true;
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the code point is a word char, i.e. a letter, a number or an underscore.
+     */
+    private static boolean isWordCodePoint(int codePoint) {
+        if (codePoint == '_' || Character.isLetter(codePoint)) return true;
+        switch (Character.getType(codePoint)) {
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return true;
+            default:
+                return false;
+        }
     }
 
     /**
@@ -595,7 +612,24 @@ public class ContextualSearchSelectionController {
      */
     public static boolean isSelectionPartOfUrl(String selectionContext, int startOffset,
             int endOffset) {
+        // URLs only contain URL chars, so the URL would have to be within the run of URL chars
+        // around the selection, and contain the separator of its scheme.  Checking this first
+        // avoids running the pattern over the whole context on every selection.
+        if (startOffset < 0 || endOffset > selectionContext.length()) return false;
+        for (int i = startOffset; i < endOffset; i++) {
+            if (!isUrlChar(selectionContext.charAt(i))) return false;
+        }
+        int runStart = startOffset;
+        while (runStart > 0 && isUrlChar(selectionContext.charAt(runStart - 1))) runStart--;
+        int runEnd = endOffset;
+        while (runEnd < selectionContext.length() && isUrlChar(selectionContext.charAt(runEnd))) {
+            runEnd++;
+        }
+        int schemeSeparator = selectionContext.indexOf("://", runStart);
+        if (schemeSeparator == -1 || schemeSeparator + 3 > runEnd) return false;
+
         Matcher matcher = URL_PATTERN.matcher(selectionContext);
+        matcher.region(runStart, runEnd);
 
         // Starts are inclusive and ends are non-inclusive for both GSAContext & matcher.
         while (matcher.find()) {
@@ -606,4 +640,12 @@ public class ContextualSearchSelectionController {
 
         return false;
     }
+
+    /**
+     * @return Whether the char can be part of a URL matched by {@link #URL_PATTERN}.
+     */
+    private static boolean isUrlChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || "_-.,@?^=%&:/~+#".indexOf(c) != -1;
+    }
 }
@@ -6,11 +6,11 @@ package org.chromium.chrome.browser.contextualsearch;
 
 import android.util.Pair;
 
-import org.chromium.base.metrics.RecordHistogram;
 import org.chromium.base.metrics.RecordUserAction;
 import org.chromium.chrome.browser.compositor.bottombar.OverlayPanel.PanelState;
 import org.chromium.chrome.browser.compositor.bottombar.OverlayPanel.StateChangeReason;
 import org.chromium.chrome.browser.contextualsearch.ContextualSearchBlacklist.BlacklistReason;
+import org.chromium.chrome.browser.metrics.BufferedRecordHistogram;
 import org.chromium.chrome.browser.preferences.PrefServiceBridge;
 
 import java.util.Collections;
@@ -555,7 +555,7 @@ public class ContextualSearchUma {
      * (disabled, enabled or uninitialized). Calling more than once is fine.
      */
     public static void logPreferenceState() {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchPreferenceState",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchPreferenceState",
                 getPreferenceValue(), PREFERENCE_HISTOGRAM_BOUNDARY);
     }
 
@@ -566,8 +566,8 @@ public class ContextualSearchUma {
      */
     public static void logPromoTapsRemaining(int promoTapsRemaining) {
         if (promoTapsRemaining >= 0) {
-            RecordHistogram.recordCountHistogram("Search.ContextualSearchPromoTapsRemaining",
-                    promoTapsRemaining);
+            BufferedRecordHistogram.recordCountHistogram(
+                    "Search.ContextualSearchPromoTapsRemaining", promoTapsRemaining);
         }
     }
 
@@ -579,8 +579,8 @@ public class ContextualSearchUma {
      *        for users that have never opened the panel.
      */
     public static void logPromoTapsForNeverOpened(int promoTaps) {
-        RecordHistogram.recordCountHistogram("Search.ContextualSearchPromoTapsForNeverOpened",
-                promoTaps);
+        BufferedRecordHistogram.recordCountHistogram(
+                "Search.ContextualSearchPromoTapsForNeverOpened", promoTaps);
     }
 
     /**
@@ -590,8 +590,8 @@ public class ContextualSearchUma {
      *        before the first open of the panel, for all users that have ever opened the panel.
      */
     public static void logPromoTapsBeforeFirstOpen(int promoTaps) {
-        RecordHistogram.recordCountHistogram("Search.ContextualSearchPromoTapsBeforeFirstOpen",
-                promoTaps);
+        BufferedRecordHistogram.recordCountHistogram(
+                "Search.ContextualSearchPromoTapsBeforeFirstOpen", promoTaps);
     }
 
     /**
@@ -601,7 +601,8 @@ public class ContextualSearchUma {
      *        current user.
      */
     public static void logPromoOpenCount(int count) {
-        RecordHistogram.recordCountHistogram("Search.ContextualSearchPromoOpenCount", count);
+        BufferedRecordHistogram.recordCountHistogram(
+                "Search.ContextualSearchPromoOpenCount", count);
     }
 
     /**
@@ -610,8 +611,8 @@ public class ContextualSearchUma {
      * @param tapsSinceOpen The number of taps to log.
      */
     public static void logTapsSinceOpenForUndecided(int tapsSinceOpen) {
-        RecordHistogram.recordCountHistogram("Search.ContextualSearchTapsSinceOpenUndecided",
-                tapsSinceOpen);
+        BufferedRecordHistogram.recordCountHistogram(
+                "Search.ContextualSearchTapsSinceOpenUndecided", tapsSinceOpen);
     }
 
     /**
@@ -620,7 +621,7 @@ public class ContextualSearchUma {
      * @param tapsSinceOpen The number of taps to log.
      */
     public static void logTapsSinceOpenForDecided(int tapsSinceOpen) {
-        RecordHistogram.recordCountHistogram("Search.ContextualSearchTapsSinceOpenDecided",
+        BufferedRecordHistogram.recordCountHistogram("Search.ContextualSearchTapsSinceOpenDecided",
                 tapsSinceOpen);
     }
 
@@ -629,7 +630,8 @@ public class ContextualSearchUma {
      * @param isSingleWord Whether the resolved search term is a single word or not.
      */
     public static void logSearchTermResolvedWords(boolean isSingleWord) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchResolvedTermWords",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchResolvedTermWords",
                 isSingleWord ? RESOLVED_SINGLE_WORD : RESOLVED_MULTI_WORD, RESOLVED_BOUNDARY);
     }
 
@@ -639,7 +641,7 @@ public class ContextualSearchUma {
      *        be false for HTTPS or other URIs).
      */
     public static void logBasePageProtocol(boolean isHttpBasePage) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBasePageProtocol",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBasePageProtocol",
                 isHttpBasePage ? PROTOCOL_IS_HTTP : PROTOCOL_NOT_HTTP, PROTOCOL_BOUNDARY);
     }
 
@@ -649,7 +651,8 @@ public class ContextualSearchUma {
      * @param enabled Whether the preference is being enabled or disabled.
      */
     public static void logPreferenceChange(boolean enabled) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchPreferenceStateChange",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchPreferenceStateChange",
                 enabled ? PREFERENCE_ENABLED : PREFERENCE_DISABLED, PREFERENCE_HISTOGRAM_BOUNDARY);
     }
 
@@ -659,9 +662,10 @@ public class ContextualSearchUma {
      * @param hasOpenedPanel Whether the Panel was opened.
      */
     public static void logPeekPromoShowCount(int count, boolean hasOpenedPanel) {
-        RecordHistogram.recordCountHistogram("Search.ContextualSearchPeekPromoCount", count);
+        BufferedRecordHistogram.recordCountHistogram(
+                "Search.ContextualSearchPeekPromoCount", count);
         if (hasOpenedPanel) {
-            RecordHistogram.recordCountHistogram(
+            BufferedRecordHistogram.recordCountHistogram(
                     "Search.ContextualSearchPeekPromoCountUntilOpened", count);
         }
     }
@@ -684,7 +688,8 @@ public class ContextualSearchUma {
         }
 
         if (outcome != -1) {
-            RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchPeekPromoOutcome",
+            BufferedRecordHistogram.recordEnumeratedHistogram(
+                    "Search.ContextualSearchPeekPromoOutcome",
                     outcome, PEEK_PROMO_OUTCOME_BOUNDARY);
         }
     }
@@ -697,16 +702,17 @@ public class ContextualSearchUma {
      */
     public static void logPromoOutcome(boolean wasTap, boolean wasMandatory) {
         int preferenceCode = getPreferenceValue();
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchFirstRunFlowOutcome",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchFirstRunFlowOutcome",
                 preferenceCode, PREFERENCE_HISTOGRAM_BOUNDARY);
 
         int preferenceByGestureCode = getPromoByGestureStateCode(preferenceCode, wasTap);
         if (wasMandatory) {
-            RecordHistogram.recordEnumeratedHistogram(
+            BufferedRecordHistogram.recordEnumeratedHistogram(
                     "Search.ContextualSearchMandatoryPromoOutcomeByGesture",
                     preferenceByGestureCode, PROMO_BY_GESTURE_BOUNDARY);
         } else {
-            RecordHistogram.recordEnumeratedHistogram(
+            BufferedRecordHistogram.recordEnumeratedHistogram(
                     "Search.ContextualSearchPromoOutcomeByGesture",
                     preferenceByGestureCode, PROMO_BY_GESTURE_BOUNDARY);
         }
@@ -720,13 +726,14 @@ public class ContextualSearchUma {
      */
     public static void logDuration(boolean wereResultsSeen, boolean isChained, long durationMs) {
         if (wereResultsSeen) {
-            RecordHistogram.recordTimesHistogram("Search.ContextualSearchDurationSeen",
+            BufferedRecordHistogram.recordTimesHistogram("Search.ContextualSearchDurationSeen",
                     durationMs, TimeUnit.MILLISECONDS);
         } else if (isChained) {
-            RecordHistogram.recordTimesHistogram("Search.ContextualSearchDurationUnseenChained",
+            BufferedRecordHistogram.recordTimesHistogram(
+                    "Search.ContextualSearchDurationUnseenChained",
                     durationMs, TimeUnit.MILLISECONDS);
         } else {
-            RecordHistogram.recordTimesHistogram("Search.ContextualSearchDurationUnseen",
+            BufferedRecordHistogram.recordTimesHistogram("Search.ContextualSearchDurationUnseen",
                     durationMs, TimeUnit.MILLISECONDS);
         }
     }
@@ -740,10 +747,10 @@ public class ContextualSearchUma {
      */
     public static void logSearchPanelLoadDuration(boolean wasPrefetch, long durationMs) {
         if (wasPrefetch) {
-            RecordHistogram.recordMediumTimesHistogram("Search.ContextualSearchDurationPrefetched",
-                    durationMs, TimeUnit.MILLISECONDS);
+            BufferedRecordHistogram.recordMediumTimesHistogram(
+                    "Search.ContextualSearchDurationPrefetched", durationMs, TimeUnit.MILLISECONDS);
         } else {
-            RecordHistogram.recordMediumTimesHistogram(
+            BufferedRecordHistogram.recordMediumTimesHistogram(
                     "Search.ContextualSearchDurationNonPrefetched", durationMs,
                     TimeUnit.MILLISECONDS);
         }
@@ -751,7 +758,7 @@ public class ContextualSearchUma {
        // Also record a summary histogram with counts for each possibility.
         int code = !wasPrefetch ? NOT_PREFETCHED
                 : (durationMs == 0 ? PREFETCHED_FULLY_LOADED : PREFETCHED_PARIALLY_LOADED);
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchPrefetchSummary",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchPrefetchSummary",
                 code, PREFETCH_BOUNDARY);
     }
 
@@ -760,7 +767,7 @@ public class ContextualSearchUma {
      * @param durationMs The duration to record.
      */
     public static void logSearchTermResolutionDuration(long durationMs) {
-        RecordHistogram.recordMediumTimesHistogram(
+        BufferedRecordHistogram.recordMediumTimesHistogram(
                 "Search.ContextualSearchResolutionDuration", durationMs, TimeUnit.MILLISECONDS);
     }
 
@@ -773,7 +780,7 @@ public class ContextualSearchUma {
     public static void logPrefetchedSearchNavigatedDuration(long durationMs, boolean didResolve) {
         String histogramName = didResolve ? "Search.ContextualSearchResolvedSearchDuration"
                                           : "Search.ContextualSearchLiteralSearchDuration";
-        RecordHistogram.recordMediumTimesHistogram(
+        BufferedRecordHistogram.recordMediumTimesHistogram(
                 histogramName, durationMs, TimeUnit.MILLISECONDS);
     }
 
@@ -782,7 +789,7 @@ public class ContextualSearchUma {
      * @param durationMs The duration to record.
      */
     public static void logPanelOpenDuration(long durationMs) {
-        RecordHistogram.recordMediumTimesHistogram(
+        BufferedRecordHistogram.recordMediumTimesHistogram(
                 "Search.ContextualSearchPanelOpenDuration", durationMs, TimeUnit.MILLISECONDS);
     }
 
@@ -810,7 +817,8 @@ public class ContextualSearchUma {
      * @param wasTap Whether the gesture that originally caused the panel to show was a Tap.
      */
     public static void logPromoSeen(boolean wasPanelSeen, boolean wasTap) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchFirstRunPanelSeen",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchFirstRunPanelSeen",
                 wasPanelSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN, RESULTS_SEEN_BOUNDARY);
         logHistogramByGesture(wasPanelSeen, wasTap, "Search.ContextualSearchPromoSeenByGesture");
     }
@@ -822,7 +830,7 @@ public class ContextualSearchUma {
      * @param wasTap Whether the gesture that originally caused the panel to show was a Tap.
      */
     public static void logResultsSeen(boolean wasPanelSeen, boolean wasTap) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchResultsSeen",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchResultsSeen",
                 wasPanelSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN, RESULTS_SEEN_BOUNDARY);
         logHistogramByGesture(wasPanelSeen, wasTap, "Search.ContextualSearchResultsSeenByGesture");
     }
@@ -837,7 +845,7 @@ public class ContextualSearchUma {
     public static void logResultsSeenSelectionIsUrl(boolean wasPanelSeen, boolean wasTap) {
         int result = wasPanelSeen ? (wasTap ? RESULTS_SEEN_FROM_TAP : RESULTS_SEEN_FROM_LONG_PRESS)
                 : (wasTap ? RESULTS_NOT_SEEN_FROM_TAP : RESULTS_NOT_SEEN_FROM_LONG_PRESS);
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchResultsSeenSelectionWasUrl", result,
                 RESULTS_BY_GESTURE_BOUNDARY);
     }
@@ -850,7 +858,7 @@ public class ContextualSearchUma {
      */
     public static void logBarOverlapResultsSeen(
             boolean wasPanelSeen, boolean wasTap, boolean wasBarOverlap) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBarOverlapSeen",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBarOverlapSeen",
                 getBarOverlapEnum(wasBarOverlap, wasPanelSeen, wasTap),
                 BAR_OVERLAP_RESULTS_BOUNDARY);
     }
@@ -860,7 +868,7 @@ public class ContextualSearchUma {
      * @param wasSuppressed Whether showing the UX was suppressed.
      */
     public static void logBarOverlapSuppression(boolean wasSuppressed) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBarOverlap",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBarOverlap",
                 wasSuppressed ? TAP_SUPPRESSED : NOT_TAP_SUPPRESSED, TAP_SUPPRESSED_BOUNDARY);
     }
 
@@ -880,7 +888,7 @@ public class ContextualSearchUma {
         int min = 1;
         int max = 250;
         int numBuckets = 50;
-        RecordHistogram.recordCustomCountHistogram(
+        BufferedRecordHistogram.recordCustomCountHistogram(
                 histogram, triggerLocationDps, min, max, numBuckets);
     }
 
@@ -889,7 +897,8 @@ public class ContextualSearchUma {
      * @param wasSuppressed Whether showing the UX was suppressed.
      */
     public static void logScreenTopTapSuppression(boolean wasSuppressed) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchScreenTopSuppressed",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchScreenTopSuppressed",
                 wasSuppressed ? TAP_SUPPRESSED : NOT_TAP_SUPPRESSED, TAP_SUPPRESSED_BOUNDARY);
     }
 
@@ -901,11 +910,13 @@ public class ContextualSearchUma {
     public static void logTapSuppressionResultsSeen(
             boolean wasSearchContentViewSeen, boolean isSecondTap) {
         if (isSecondTap) {
-            RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchSecondTapSeen",
+            BufferedRecordHistogram.recordEnumeratedHistogram(
+                    "Search.ContextualSearchSecondTapSeen",
                     wasSearchContentViewSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN,
                     RESULTS_SEEN_BOUNDARY);
         } else {
-            RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchTapSuppressionSeen",
+            BufferedRecordHistogram.recordEnumeratedHistogram(
+                    "Search.ContextualSearchTapSuppressionSeen",
                     wasSearchContentViewSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN,
                     RESULTS_SEEN_BOUNDARY);
         }
@@ -916,7 +927,8 @@ public class ContextualSearchUma {
      * @param wasSearchContentViewSeen If the panel was opened.
      */
     public static void logAllCapsResultsSeen(boolean wasSearchContentViewSeen) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchAllCapsResultsSeen",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchAllCapsResultsSeen",
                 wasSearchContentViewSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN,
                 RESULTS_SEEN_BOUNDARY);
     }
@@ -927,7 +939,7 @@ public class ContextualSearchUma {
      * @param wasSearchContentViewSeen If the panel was opened.
      */
     public static void logStartedWithCapitalResultsSeen(boolean wasSearchContentViewSeen) {
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchStartedWithCapitalResultsSeen",
                 wasSearchContentViewSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN,
                 RESULTS_SEEN_BOUNDARY);
@@ -950,7 +962,7 @@ public class ContextualSearchUma {
                     : RESULTS_NOT_SEEN_SUPPRESSION_HEURSTIC_NOT_SATISFIED;
         }
 
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchTapSuppressionSeen.AnyHeuristicSatisfied",
                 code,
                 RESULTS_SEEN_SUPPRESSION_BOUNDARY);
@@ -966,7 +978,8 @@ public class ContextualSearchUma {
      */
     public static void logIconSpriteAnimated(boolean wasIconSpriteAnimated, boolean wasPanelSeen,
             boolean wasTap) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchIconSpriteAnimated",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchIconSpriteAnimated",
                 ICON_SPRITE_ANIMATION_CODES.get(new IconSpriteAnimationKey(wasIconSpriteAnimated,
                         wasPanelSeen, wasTap)),
                 ICON_SPRITE_BOUNDARY);
@@ -977,7 +990,7 @@ public class ContextualSearchUma {
      * @param isSelectionValid Whether the selection is valid.
      */
     public static void logSelectionIsValid(boolean isSelectionValid) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchSelectionValid",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchSelectionValid",
                 isSelectionValid ? SELECTION_VALID : SELECTION_INVALID, SELECTION_BOUNDARY);
     }
 
@@ -986,7 +999,7 @@ public class ContextualSearchUma {
      * @param isFailure Whether the request failed.
      */
     public static void logNormalPrioritySearchRequestOutcome(boolean isFailure) {
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchNormalPrioritySearchRequestStatus",
                 isFailure ? REQUEST_FAILED : REQUEST_NOT_FAILED, REQUEST_BOUNDARY);
     }
@@ -996,7 +1009,7 @@ public class ContextualSearchUma {
      * @param isFailure Whether the request failed.
      */
     public static void logLowPrioritySearchRequestOutcome(boolean isFailure) {
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchLowPrioritySearchRequestStatus",
                 isFailure ? REQUEST_FAILED : REQUEST_NOT_FAILED, REQUEST_BOUNDARY);
     }
@@ -1006,7 +1019,7 @@ public class ContextualSearchUma {
      * @param isFailure Whether the request failed.
      */
     public static void logFallbackSearchRequestOutcome(boolean isFailure) {
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchFallbackSearchRequestStatus",
                 isFailure ? REQUEST_FAILED : REQUEST_NOT_FAILED, REQUEST_BOUNDARY);
     }
@@ -1016,7 +1029,8 @@ public class ContextualSearchUma {
      * @param fullyLoaded Whether the SERP had finished loading before the panel was closed.
      */
     public static void logSerpLoadedOnClose(boolean fullyLoaded) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchSerpLoadedOnClose",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchSerpLoadedOnClose",
                 fullyLoaded ? FULLY_LOADED : PARTIALLY_LOADED, LOADED_BOUNDARY);
     }
 
@@ -1030,7 +1044,8 @@ public class ContextualSearchUma {
         String histogram = wasSearchContentViewSeen ? "Search.ContextualSearchRecentScrollSeen"
                                                     : "Search.ContextualSearchRecentScrollNotSeen";
         if (durationSinceRecentScrollMs < 1000) {
-            RecordHistogram.recordCount1000Histogram(histogram, durationSinceRecentScrollMs);
+            BufferedRecordHistogram.recordCount1000Histogram(
+                    histogram, durationSinceRecentScrollMs);
         }
     }
 
@@ -1039,7 +1054,8 @@ public class ContextualSearchUma {
      * @param wasSuppressed Whether showing the UX was suppressed by a recent scroll.
      */
     public static void logRecentScrollSuppression(boolean wasSuppressed) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchRecentScrollSuppression",
+        BufferedRecordHistogram.recordEnumeratedHistogram(
+                "Search.ContextualSearchRecentScrollSuppression",
                 wasSuppressed ? TAP_SUPPRESSED : NOT_TAP_SUPPRESSED, TAP_SUPPRESSED_BOUNDARY);
     }
 
@@ -1056,7 +1072,7 @@ public class ContextualSearchUma {
                 ? "Search.ContextualSearchDurationBetweenTriggerAndScrollSeen"
                 : "Search.ContextualSearchDurationBetweenTriggerAndScrollNotSeen";
         if (durationSincePanelTriggerMs < 2000) {
-            RecordHistogram.recordCustomCountHistogram(
+            BufferedRecordHistogram.recordCustomCountHistogram(
                     histogram, (int) durationSincePanelTriggerMs, 1, 2000, 200);
         }
     }
@@ -1072,7 +1088,7 @@ public class ContextualSearchUma {
      */
     static void logQuickAnswerSeen(
             boolean wasSearchContentViewSeen, boolean didActivate, boolean didAnswer) {
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchQuickAnswerSeen",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchQuickAnswerSeen",
                 getQuickAnswerSeenValue(didActivate, didAnswer, wasSearchContentViewSeen),
                 QUICK_ANSWER_SEEN_BOUNDARY);
     }
@@ -1090,28 +1106,28 @@ public class ContextualSearchUma {
             case CLOSED:
                 code = getStateChangeCode(fromState, reason,
                         ENTER_CLOSED_STATE_CHANGE_CODES, ENTER_CLOSED_FROM_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchEnterClosed",
                         code, ENTER_CLOSED_FROM_BOUNDARY);
                 break;
             case PEEKED:
                 code = getStateChangeCode(fromState, reason,
                         ENTER_PEEKED_STATE_CHANGE_CODES, ENTER_PEEKED_FROM_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchEnterPeeked",
                         code, ENTER_PEEKED_FROM_BOUNDARY);
                 break;
             case EXPANDED:
                 code = getStateChangeCode(fromState, reason,
                         ENTER_EXPANDED_STATE_CHANGE_CODES, ENTER_EXPANDED_FROM_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchEnterExpanded",
                         code, ENTER_EXPANDED_FROM_BOUNDARY);
                 break;
             case MAXIMIZED:
                 code = getStateChangeCode(fromState, reason,
                         ENTER_MAXIMIZED_STATE_CHANGE_CODES, ENTER_MAXIMIZED_FROM_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchEnterMaximized",
                         code, ENTER_MAXIMIZED_FROM_BOUNDARY);
                 break;
@@ -1190,25 +1206,25 @@ public class ContextualSearchUma {
             case CLOSED:
                 code = getStateChangeCode(toState, reason,
                         EXIT_CLOSED_TO_STATE_CHANGE_CODES, EXIT_CLOSED_TO_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchExitClosed", code, EXIT_CLOSED_TO_BOUNDARY);
                 break;
             case PEEKED:
                 code = getStateChangeCode(toState, reason,
                         EXIT_PEEKED_TO_STATE_CHANGE_CODES, EXIT_PEEKED_TO_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchExitPeeked", code, EXIT_PEEKED_TO_BOUNDARY);
                 break;
             case EXPANDED:
                 code = getStateChangeCode(toState, reason,
                         EXIT_EXPANDED_TO_STATE_CHANGE_CODES, EXIT_EXPANDED_TO_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchExitExpanded", code, EXIT_EXPANDED_TO_BOUNDARY);
                 break;
             case MAXIMIZED:
                 code = getStateChangeCode(toState, reason,
                         EXIT_MAXIMIZED_TO_STATE_CHANGE_CODES, EXIT_MAXIMIZED_TO_OTHER);
-                RecordHistogram.recordEnumeratedHistogram(
+                BufferedRecordHistogram.recordEnumeratedHistogram(
                         "Search.ContextualSearchExitMaximized", code, EXIT_MAXIMIZED_TO_BOUNDARY);
                 break;
             default:
@@ -1222,9 +1238,9 @@ public class ContextualSearchUma {
      * @param previousWeekCtr The CTR expressed as a percentage.
      */
     public static void logPreviousWeekCtr(int previousWeekImpressions, int previousWeekCtr) {
-        RecordHistogram.recordCountHistogram(
+        BufferedRecordHistogram.recordCountHistogram(
                 "Search.ContextualSearchPreviousWeekImpressions", previousWeekImpressions);
-        RecordHistogram.recordPercentageHistogram(
+        BufferedRecordHistogram.recordPercentageHistogram(
                 "Search.ContextualSearchPreviousWeekCtr", previousWeekCtr);
     }
 
@@ -1234,9 +1250,9 @@ public class ContextualSearchUma {
      * @param previous28DayCtr The CTR expressed as a percentage.
      */
     public static void logPrevious28DayCtr(int previous28DayImpressions, int previous28DayCtr) {
-        RecordHistogram.recordCountHistogram(
+        BufferedRecordHistogram.recordCountHistogram(
                 "Search.ContextualSearchPrevious28DayImpressions", previous28DayImpressions);
-        RecordHistogram.recordPercentageHistogram(
+        BufferedRecordHistogram.recordPercentageHistogram(
                 "Search.ContextualSearchPrevious28DayCtr", previous28DayCtr);
     }
 
@@ -1288,7 +1304,7 @@ public class ContextualSearchUma {
      */
     public static void logTranslateOnebox(boolean didForceTranslate) {
         int code = didForceTranslate ? DID_FORCE_TRANSLATE : WOULD_FORCE_TRANSLATE;
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchShouldTranslate", code, FORCE_TRANSLATE_BOUNDARY);
     }
 
@@ -1301,7 +1317,7 @@ public class ContextualSearchUma {
     public static void logBlacklistSeen(BlacklistReason reason, boolean wasSeen) {
         if (reason == null) reason = BlacklistReason.NONE;
         int code = ContextualSearchBlacklist.getBlacklistMetricsCode(reason, wasSeen);
-        RecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBlacklistSeen",
+        BufferedRecordHistogram.recordEnumeratedHistogram("Search.ContextualSearchBlacklistSeen",
                 code, ContextualSearchBlacklist.BLACKLIST_BOUNDARY);
     }
 
@@ -1311,7 +1327,7 @@ public class ContextualSearchUma {
      * @param shown Whether Contextual Cards data was shown in the Bar.
      */
     public static void logContextualCardsDataShown(boolean shown) {
-        RecordHistogram.recordBooleanHistogram(
+        BufferedRecordHistogram.recordBooleanHistogram(
                 "Search.ContextualSearchContextualCardsIntegration.DataShown", shown);
     }
 
@@ -1320,7 +1336,7 @@ public class ContextualSearchUma {
      * @param wasSeen Whether the search results were seen.
      */
     public static void logContextualCardsResultsSeen(boolean wasSeen) {
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchContextualCardsIntegration.ResultsSeen",
                 wasSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN, RESULTS_SEEN_BOUNDARY);
     }
@@ -1335,7 +1351,7 @@ public class ContextualSearchUma {
         int code = numMatchingAppsApps == 0 ? QUICK_ACTION_RESOLVE_FAILED
                 : numMatchingAppsApps == 1 ? QUICK_ACTION_RESOLVE_SINGLE
                         : QUICK_ACTION_RESOLVE_MULTIPLE;
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchQuickActions.IntentResolution."
                         + getLabelForQuickActionCategory(quickActionCategory),
                 code, QUICK_ACTION_RESOLVE_BOUNDARY);
@@ -1348,10 +1364,10 @@ public class ContextualSearchUma {
      * @param quickActionCategory The {@link QuickActionCategory} for the quick action.
      */
     public static void logQuickActionShown(boolean quickActionShown, int quickActionCategory) {
-        RecordHistogram.recordBooleanHistogram(
+        BufferedRecordHistogram.recordBooleanHistogram(
                 "Search.ContextualSearchQuickActions.Shown", quickActionShown);
         if (quickActionShown) {
-            RecordHistogram.recordEnumeratedHistogram(
+            BufferedRecordHistogram.recordEnumeratedHistogram(
                     "Search.ContextualSearchQuickActions.Category",
                     quickActionCategory, QuickActionCategory.BOUNDARY);
         }
@@ -1363,7 +1379,7 @@ public class ContextualSearchUma {
      * @param quickActionCategory The {@link QuickActionCategory} for the quick action.
      */
     public static void logQuickActionResultsSeen(boolean wasSeen, int quickActionCategory) {
-        RecordHistogram.recordEnumeratedHistogram(
+        BufferedRecordHistogram.recordEnumeratedHistogram(
                 "Search.ContextualSearchQuickActions.ResultsSeen."
                         + getLabelForQuickActionCategory(quickActionCategory),
                 wasSeen ? RESULTS_SEEN : RESULTS_NOT_SEEN, RESULTS_SEEN_BOUNDARY);
@@ -1375,7 +1391,7 @@ public class ContextualSearchUma {
      * @param quickActionCategory The {@link QuickActionCategory} for the quick action.
      */
     public static void logQuickActionClicked(boolean wasClicked, int quickActionCategory) {
-        RecordHistogram.recordBooleanHistogram(
+        BufferedRecordHistogram.recordBooleanHistogram(
                 "Search.ContextualSearchQuickActions.Clicked."
                         + getLabelForQuickActionCategory(quickActionCategory),
                  wasClicked);
@@ -1473,7 +1489,7 @@ public class ContextualSearchUma {
      */
     private static void logHistogramByGesture(boolean wasPanelSeen, boolean wasTap,
             String histogramName) {
-        RecordHistogram.recordEnumeratedHistogram(histogramName,
+        BufferedRecordHistogram.recordEnumeratedHistogram(histogramName,
                 getPanelSeenByGestureStateCode(wasPanelSeen, wasTap),
                 RESULTS_BY_GESTURE_BOUNDARY);
     }
@@ -326,17 +326,109 @@ public class LogcatExtractionCallable implements Callable<Boolean> {
     @VisibleForTesting
     protected static List<String> processLogcat(List<String> rawLogcat) {
         List<String> out = new ArrayList<String>(rawLogcat.size());
+        LineScan scan = new LineScan();
         for (String ln : rawLogcat) {
-            ln = elideEmail(ln);
-            ln = elideUrl(ln);
-            ln = elideIp(ln);
-            ln = elideMac(ln);
-            ln = elideConsole(ln);
-            out.add(ln);
+            out.add(elideLine(ln, scan));
         }
         return out;
     }
 
+    /**
+     * What a single pass over a line of logcat found out about which elision patterns can match
+     * it.  Each field is a condition that is necessary, though not sufficient, for a pattern to
+     * match, so skipping the patterns whose condition isn't met doesn't change the output.
+     */
+    private static final class LineScan {
+        /** Emails contain an '@'. */
+        boolean mHasAtSign;
+        /** Host names end with a '.' followed by the first letter of a top level domain. */
+        boolean mHasDotBeforeLetter;
+        /** IP addresses contain three '.' between digits. */
+        int mDotsBetweenDigits;
+        /** MAC addresses contain five '-' or ':' that follow a hex digit. */
+        int mSeparatorsAfterHexDigit;
+
+        void scan(String ln) {
+            mHasAtSign = false;
+            mHasDotBeforeLetter = false;
+            mDotsBetweenDigits = 0;
+            mSeparatorsAfterHexDigit = 0;
+
+            char previous = 0;
+            int length = ln.length();
+            for (int i = 0; i < length; i++) {
+                char c = ln.charAt(i);
+                if (c == '@') {
+                    mHasAtSign = true;
+                } else if (c == '.' && i + 1 < length) {
+                    char next = ln.charAt(i + 1);
+                    if (isDigit(previous) && isDigit(next)) {
+                        mDotsBetweenDigits++;
+                    } else if ((next >= 'a' && next <= 'z') || (next >= 'A' && next <= 'Z')
+                            || next >= '\u00A0') {
+                        mHasDotBeforeLetter = true;
+                    }
+                } else if ((c == '-' || c == ':') && isHexDigit(previous)) {
+                    mSeparatorsAfterHexDigit++;
+                }
+                previous = c;
+            }
+        }
+
+        boolean mayContainEmail() {
+            return mHasAtSign;
+        }
+
+        boolean mayContainUrl() {
+            return mHasDotBeforeLetter || mayContainIp();
+        }
+
+        boolean mayContainIp() {
+            return mDotsBetweenDigits >= 3;
+        }
+
+        boolean mayContainMac() {
+            return mSeparatorsAfterHexDigit >= 5;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isHexDigit(char c) {
+            return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+    }
+
+    /**
+     * Elides all PII from a line of logcat.  The output is the same as running each of the
+     * elide*() methods over the line in turn, but the line is first scanned once to find out which
+     * of the patterns could match, and the others are skipped.  Most lines can't match any of the
+     * patterns, so most of the regular expressions never run.  The line is scanned again after
+     * each elision, as elisions may make later patterns match.
+     */
+    private static String elideLine(String ln, LineScan scan) {
+        scan.scan(ln);
+        if (scan.mayContainEmail()) {
+            String elided = elideEmail(ln);
+            if (!elided.equals(ln)) scan.scan(elided);
+            ln = elided;
+        }
+        if (scan.mayContainUrl()) {
+            String elided = elideUrl(ln);
+            if (!elided.equals(ln)) scan.scan(elided);
+            ln = elided;
+        }
+        if (scan.mayContainIp()) {
+            String elided = elideIp(ln);
+            if (!elided.equals(ln)) scan.scan(elided);
+            ln = elided;
+        }
+        if (scan.mayContainMac()) ln = elideMac(ln);
+        if (ln.contains(":CONSOLE")) ln = elideConsole(ln);
+        return ln;
+    }
+
     /**
      * Elides any emails in the specified {@link String} with
      * {@link #EMAIL_ELISION}.
@@ -368,7 +460,7 @@ public class LogcatExtractionCallable implements Callable<Boolean> {
             if (!likelyToBeChromeNamespace(url) && !likelyToBeSystemNamespace(url)) {
                 buffer.replace(start, end, URL_ELISION);
                 end = start + URL_ELISION.length();
-                matcher = WEB_URL.matcher(buffer);
+                matcher.reset(buffer);
             }
             start = end;
         }
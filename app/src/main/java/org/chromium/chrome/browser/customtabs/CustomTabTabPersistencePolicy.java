@@ -14,19 +14,19 @@ import org.chromium.base.ApiCompatibilityUtils;
 import org.chromium.base.ApplicationStatus;
 import org.chromium.base.Callback;
 import org.chromium.base.Log;
-import org.chromium.base.StreamUtil;
 import org.chromium.base.ThreadUtils;
 import org.chromium.chrome.browser.TabState;
+import org.chromium.chrome.browser.TabStateSegmentStore;
 import org.chromium.chrome.browser.compositor.layouts.content.TabContentManager;
+import org.chromium.chrome.browser.tabmodel.TabMetadataJournal;
 import org.chromium.chrome.browser.tabmodel.TabModel;
 import org.chromium.chrome.browser.tabmodel.TabModelSelector;
 import org.chromium.chrome.browser.tabmodel.TabPersistencePolicy;
 import org.chromium.chrome.browser.tabmodel.TabPersistentStore;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -318,6 +318,9 @@ public class CustomTabTabPersistencePolicy implements TabPersistencePolicy {
                 if (tabInfo == null) continue;
                 allTabIds.add(tabInfo.first);
             }
+            for (int tabId : TabStateSegmentStore.getTabIds(getOrCreateStateDirectory())) {
+                allTabIds.add(tabId);
+            }
 
             mUnreferencedTabIds.addAll(allTabIds);
             mUnreferencedTabIds.removeAll(allReferencedTabIds);
@@ -381,15 +384,12 @@ public class CustomTabTabPersistencePolicy implements TabPersistencePolicy {
         }
 
         private void getTabsFromStateFile(SparseBooleanArray tabIds, File metadataFile) {
-            DataInputStream stream = null;
             try {
-                stream = new DataInputStream(
-                        new BufferedInputStream(new FileInputStream(metadataFile)));
+                DataInputStream stream = new DataInputStream(new ByteArrayInputStream(
+                        TabMetadataJournal.readMetadataFile(metadataFile)));
                 TabPersistentStore.readSavedStateFile(stream, null, tabIds, false);
             } catch (Exception e) {
                 Log.e(TAG, "Unable to read state for " + metadataFile.getName() + ": " + e);
-            } finally {
-                StreamUtil.closeQuietly(stream);
             }
         }
     }
@@ -138,40 +138,26 @@ public class SQLiteCursor extends AbstractCursor {
         window.acquireReference();
         try {
             int oldpos = getPosition();
-            moveToPosition(position - 1);
+            int count = getCount();
             window.clear();
             window.setStartPosition(position);
-            int columnNum = getColumnCount();
-            window.setNumColumns(columnNum);
-            while (moveToNext() && window.allocRow()) {
-                int pos = getPosition();
-                for (int i = 0; i < columnNum; i++) {
-                    boolean hasRoom = true;
-                    switch (getColumnType(i)) {
-                        case Types.DOUBLE:
-                            hasRoom = fillRow(window, Double.valueOf(getDouble(i)), pos, i);
-                            break;
-                        case Types.NUMERIC:
-                            hasRoom = fillRow(window, Long.valueOf(getLong(i)), pos, i);
-                            break;
-                        case Types.BLOB:
-                            hasRoom = fillRow(window, getBlob(i), pos, i);
-                            break;
-                        case Types.LONGVARCHAR:
-                            hasRoom = fillRow(window, getString(i), pos, i);
-                            break;
-                        case Types.NULL:
-                            hasRoom = fillRow(window, null, pos, i);
-                            break;
-                        default:
-                            // Ignore an unknown type.
-                    }
-                    if (!hasRoom) {
+            int[] columnTypes = getColumnTypes();
+            window.setNumColumns(columnTypes.length);
+            // Walk the rows on the native side directly rather than through moveToNext(), so that
+            // the move lock is taken once per window instead of once per row.
+            synchronized (mMoveLock) {
+                for (int pos = position; pos < count && window.allocRow(); pos++) {
+                    nativeMoveTo(mNativeSQLiteCursor, pos);
+                    if (!putRow(window, columnTypes, pos)) {
+                        // Stop at the first row that doesn't fit, as the rows of a window must be
+                        // contiguous.
+                        window.freeLastRow();
                         break;
                     }
                 }
+                // The position of the cursor didn't change, so move the native side back to it.
+                if (oldpos >= 0 && oldpos < count) nativeMoveTo(mNativeSQLiteCursor, oldpos);
             }
-            moveToPosition(oldpos);
         } catch (IllegalStateException e) {
             // simply ignore it
         } finally {
@@ -180,57 +166,60 @@ public class SQLiteCursor extends AbstractCursor {
     }
 
     /**
-     * Fill row with the given value. If the value type is other than Long,
-     * String, byte[] or Double, the NULL will be filled.
+     * Put the values of the current native row in the given window. Values are put with the
+     * typed methods of the window, so they are not boxed. Empty blobs and null strings are put as
+     * NULL, and values of an unknown type are left out.
      *
      * @return true if succeeded, false if window is full.
      */
-    private boolean fillRow(CursorWindow window, Object value, int pos, int column) {
-        if (putValue(window, value, pos, column)) {
-            return true;
-        } else {
-            window.freeLastRow();
-            return false;
-        }
-    }
-
-    /**
-     * Put the value in given window. If the value type is other than Long,
-     * String, byte[] or Double, the NULL will be filled.
-     *
-     * @return true if succeeded.
-     */
-    private boolean putValue(CursorWindow window, Object value, int pos, int column) {
-        if (value == null) {
-            return window.putNull(pos, column);
-        } else if (value instanceof Long) {
-            return window.putLong((Long) value, pos, column);
-        } else if (value instanceof String) {
-            return window.putString((String) value, pos, column);
-        } else if (value instanceof byte[] && ((byte[]) value).length > 0) {
-            return window.putBlob((byte[]) value, pos, column);
-        } else if (value instanceof Double) {
-            return window.putDouble((Double) value, pos, column);
-        } else {
-            return window.putNull(pos, column);
+    private boolean putRow(CursorWindow window, int[] columnTypes, int pos) {
+        for (int i = 0; i < columnTypes.length; i++) {
+            boolean hasRoom = true;
+            switch (columnTypes[i]) {
+                case Types.DOUBLE:
+                    hasRoom = window.putDouble(nativeGetDouble(mNativeSQLiteCursor, i), pos, i);
+                    break;
+                case Types.NUMERIC:
+                    hasRoom = window.putLong(nativeGetLong(mNativeSQLiteCursor, i), pos, i);
+                    break;
+                case Types.BLOB:
+                    byte[] blob = getBlob(i);
+                    hasRoom = blob != null && blob.length > 0
+                            ? window.putBlob(blob, pos, i) : window.putNull(pos, i);
+                    break;
+                case Types.LONGVARCHAR:
+                    String string = nativeGetString(mNativeSQLiteCursor, i);
+                    hasRoom = string != null
+                            ? window.putString(string, pos, i) : window.putNull(pos, i);
+                    break;
+                case Types.NULL:
+                    hasRoom = window.putNull(pos, i);
+                    break;
+                default:
+                    // Ignore an unknown type.
+            }
+            if (!hasRoom) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
-     * @param index the column index.
-     * @return the column type from cache or native side.
+     * @return the column types from cache or native side.
      */
-    private int getColumnType(int index) {
+    private int[] getColumnTypes() {
         synchronized (mColumnTypeLock) {
             if (mColumnTypes == null) {
                 int columnCount = getColumnCount();
-                mColumnTypes = new int[columnCount];
+                int[] columnTypes = new int[columnCount];
                 for (int i = 0; i < columnCount; i++) {
-                    mColumnTypes[i] = nativeGetColumnType(mNativeSQLiteCursor, i);
+                    columnTypes[i] = nativeGetColumnType(mNativeSQLiteCursor, i);
                 }
+                mColumnTypes = columnTypes;
             }
+            return mColumnTypes;
         }
-        return mColumnTypes[index];
     }
 
     private native void nativeDestroy(long nativeSQLiteCursor);
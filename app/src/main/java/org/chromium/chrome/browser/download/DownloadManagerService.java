@@ -77,6 +77,12 @@ public class DownloadManagerService extends BroadcastReceiver implements
     private static final String UNKNOWN_MIME_TYPE = "application/unknown";
     private static final String DOWNLOAD_UMA_ENTRY = "DownloadUmaEntry";
     private static final long UPDATE_DELAY_MILLIS = 1000;
+    // Maximum factor by which the delay between UI updates grows while the visible progress of
+    // the downloads doesn't change.
+    private static final int MAX_UPDATE_DELAY_MULTIPLIER = 8;
+    // Number of downloads in progress above which a single summary notification is updated
+    // instead of the progress notification of each download.
+    private static final int SUMMARY_NOTIFICATION_THRESHOLD = 4;
     // Wait 10 seconds to resume all downloads, so that we won't impact tab loading.
     private static final long RESUME_DELAY_MILLIS = 10000;
     private static final int UNKNOWN_DOWNLOAD_STATUS = -1;
@@ -105,13 +111,14 @@ public class DownloadManagerService extends BroadcastReceiver implements
     private static boolean sIsNetworkListenerDisabled;
     private static boolean sIsNetworkMetered;
 
-    private final SharedPreferences mSharedPrefs;
     private final HashMap<String, DownloadProgress> mDownloadProgressMap =
             new HashMap<String, DownloadProgress>(4, 0.75f);
 
     private final DownloadNotifier mDownloadNotifier;
     // Delay between UI updates.
     private final long mUpdateDelayInMillis;
+    // Delay before the next UI update, which backs off while no download makes visible progress.
+    private long mCurrentUpdateDelayInMillis;
 
     private final Handler mHandler;
     private final Context mContext;
@@ -130,6 +137,18 @@ public class DownloadManagerService extends BroadcastReceiver implements
     private NetworkChangeNotifierAutoDetect mNetworkChangeNotifier;
     // Flag to track if we need to post a task to update download notifications.
     private boolean mIsUIUpdateScheduled;
+    // Number of downloads and percentage shown in the summary notification, or 0 downloads if the
+    // summary notification isn't shown.
+    private int mSummaryDownloadCount;
+    private int mSummaryPercentage;
+
+    private final Runnable mScheduleNextUpdateTask = new Runnable() {
+        @Override
+        public void run() {
+            mIsUIUpdateScheduled = false;
+            scheduleUpdateIfNeeded();
+        }
+    };
 
     /**
      * Class representing progress of a download.
@@ -142,6 +161,9 @@ public class DownloadManagerService extends BroadcastReceiver implements
         boolean mIsAutoResumable;
         boolean mIsUpdated;
         boolean mIsSupportedMimeType;
+        // Visible state of the last progress notification shown for the download, or null if
+        // the progress notification should be updated regardless of its state.
+        String mNotifiedProgress;
 
         DownloadProgress(long startTimeInMillis, boolean canDownloadWhileMetered,
                 DownloadItem downloadItem, int downloadStatus) {
@@ -180,7 +202,6 @@ public class DownloadManagerService extends BroadcastReceiver implements
 
         /**
          * Parse OMA entry from the SharedPrefs String
-         * TODO(qinmin): use a file instead of SharedPrefs to store the OMA entry.
          *
          * @param entry String contains the OMA information.
          * @return an OMAEntry object.
@@ -194,7 +215,6 @@ public class DownloadManagerService extends BroadcastReceiver implements
 
         /**
          * Generates a string for an OMA entry to be inserted into the SharedPrefs.
-         * TODO(qinmin): use a file instead of SharedPrefs to store the OMA entry.
          *
          * @return a String representing the download entry.
          */
@@ -241,9 +261,9 @@ public class DownloadManagerService extends BroadcastReceiver implements
             Handler handler,
             long updateDelayInMillis) {
         mContext = context;
-        mSharedPrefs = ContextUtils.getAppSharedPreferences();
         mDownloadNotifier = downloadNotifier;
         mUpdateDelayInMillis = updateDelayInMillis;
+        mCurrentUpdateDelayInMillis = updateDelayInMillis;
         mHandler = handler;
         mOMADownloadHandler = new OMADownloadHandler(context);
         mDownloadSnackbarController = new DownloadSnackbarController(context);
@@ -266,7 +286,6 @@ public class DownloadManagerService extends BroadcastReceiver implements
         }, RESUME_DELAY_MILLIS);
         parseUMAStatsEntriesFromSharedPrefs();
         Iterator<DownloadUmaStatsEntry> iterator = mUmaEntries.iterator();
-        boolean hasChanges = false;
         while (iterator.hasNext()) {
             DownloadUmaStatsEntry entry = iterator.next();
             if (entry.useDownloadManager) {
@@ -275,12 +294,9 @@ public class DownloadManagerService extends BroadcastReceiver implements
             } else if (!entry.isPaused) {
                 entry.isPaused = true;
                 entry.numInterruptions++;
-                hasChanges = true;
+                storeUmaEntry(entry);
             }
         }
-        if (hasChanges) {
-            storeUmaEntries();
-        }
     }
 
     public DownloadNotifier getDownloadNotifier() {
@@ -351,12 +367,9 @@ public class DownloadManagerService extends BroadcastReceiver implements
      * TODO(qinmin): move this to a separate class.
      */
     public void clearPendingOMADownloads() {
-        if (mSharedPrefs.contains(PENDING_OMA_DOWNLOADS)) {
-            Set<String> omaDownloads = getStoredDownloadInfo(mSharedPrefs, PENDING_OMA_DOWNLOADS);
-            for (String omaDownload : omaDownloads) {
-                OMAEntry entry = OMAEntry.parseOMAEntry(omaDownload);
-                clearPendingOMADownload(entry.mDownloadId, entry.mInstallNotifyURI);
-            }
+        for (String omaDownload : getOMADownloadStore().getRecords()) {
+            OMAEntry entry = OMAEntry.parseOMAEntry(omaDownload);
+            clearPendingOMADownload(entry.mDownloadId, entry.mInstallNotifyURI);
         }
     }
 
@@ -473,65 +486,43 @@ public class DownloadManagerService extends BroadcastReceiver implements
     }
 
     /**
-     * Add OMA download info to SharedPrefs.
+     * @return The store of the pending OMA downloads, keyed by download ID.
+     */
+    private static DownloadRecordStore getOMADownloadStore() {
+        return DownloadRecordStore.getInstance(
+                PENDING_OMA_DOWNLOADS, new DownloadRecordStore.KeyExtractor() {
+                    @Override
+                    public String getKey(String record) {
+                        return String.valueOf(OMAEntry.parseOMAEntry(record).mDownloadId);
+                    }
+                });
+    }
+
+    /**
+     * Add OMA download info to the pending OMA downloads.
      * @param omaInfo OMA download information to save.
      */
     @VisibleForTesting
     protected void addOMADownloadToSharedPrefs(String omaInfo) {
-        Set<String> omaDownloads = getStoredDownloadInfo(mSharedPrefs, PENDING_OMA_DOWNLOADS);
-        omaDownloads.add(omaInfo);
-        storeDownloadInfo(mSharedPrefs, PENDING_OMA_DOWNLOADS, omaDownloads);
+        OMAEntry entry = OMAEntry.parseOMAEntry(omaInfo);
+        getOMADownloadStore().putRecord(String.valueOf(entry.mDownloadId), omaInfo);
     }
 
     /**
-     * Remove OMA download info from SharedPrefs.
+     * Remove OMA download info from the pending OMA downloads.
      * @param downloadId ID to be removed.
      */
     private void removeOMADownloadFromSharedPrefs(long downloadId) {
-        Set<String> omaDownloads = getStoredDownloadInfo(mSharedPrefs, PENDING_OMA_DOWNLOADS);
-        for (String omaDownload : omaDownloads) {
-            OMAEntry entry = OMAEntry.parseOMAEntry(omaDownload);
-            if (entry.mDownloadId == downloadId) {
-                omaDownloads.remove(omaDownload);
-                storeDownloadInfo(mSharedPrefs, PENDING_OMA_DOWNLOADS, omaDownloads);
-                return;
-            }
-        }
+        getOMADownloadStore().removeRecord(String.valueOf(downloadId));
     }
 
     /**
-     * Check if a download ID is in OMA SharedPrefs.
+     * Check if a download ID is in the pending OMA downloads.
      * @param downloadId Download identifier to check.
-     * @param true if it is in the SharedPrefs, or false otherwise.
+     * @param true if it is in the pending OMA downloads, or false otherwise.
      */
     private boolean isDownloadIdInOMASharedPrefs(long downloadId) {
-        Set<String> omaDownloads = getStoredDownloadInfo(mSharedPrefs, PENDING_OMA_DOWNLOADS);
-        for (String omaDownload : omaDownloads) {
-            OMAEntry entry = OMAEntry.parseOMAEntry(omaDownload);
-            if (entry.mDownloadId == downloadId) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Stores download information to shared preferences. The information can be
-     * either pending download IDs, or pending OMA downloads.
-     *
-     * @param sharedPrefs SharedPreferences to update.
-     * @param type Type of the information.
-     * @param downloadInfo Information to be saved.
-     */
-    static void storeDownloadInfo(
-            SharedPreferences sharedPrefs, String type, Set<String> downloadInfo) {
-        SharedPreferences.Editor editor = sharedPrefs.edit();
-        if (downloadInfo.isEmpty()) {
-            editor.remove(type);
-        } else {
-            editor.putStringSet(type, downloadInfo);
-        }
-        editor.apply();
+        return getOMADownloadStore().getRecord(String.valueOf(downloadId)) != null;
     }
 
     /**
@@ -638,51 +629,108 @@ public class DownloadManagerService extends BroadcastReceiver implements
     }
 
     /**
-     * Schedule an update if there is no update scheduled.
+     * Schedule an update if there is no update scheduled.  Only the notifications whose visible
+     * state changed are updated, and a single summary notification is updated instead of the
+     * progress notifications when many downloads are in progress.
      */
     private void scheduleUpdateIfNeeded() {
         if (mIsUIUpdateScheduled) return;
 
         mIsUIUpdateScheduled = true;
+        int activeDownloadCount = 0;
+        long totalBytes = 0;
+        long completedBytes = 0;
+        for (DownloadProgress progress : mDownloadProgressMap.values()) {
+            if (!isProgressActive(progress)) continue;
+            activeDownloadCount++;
+            DownloadInfo info = progress.mDownloadItem.getDownloadInfo();
+            int percentage = info.getPercentCompleted();
+            if (percentage != DownloadNotificationService.INVALID_DOWNLOAD_PERCENTAGE
+                    && info.getContentLength() > 0) {
+                totalBytes += info.getContentLength();
+                completedBytes += info.getContentLength() * percentage / 100;
+            }
+        }
+        final int summaryDownloadCount =
+                activeDownloadCount > SUMMARY_NOTIFICATION_THRESHOLD ? activeDownloadCount : 0;
+        final int summaryPercentage = totalBytes > 0 ? (int) (completedBytes * 100 / totalBytes)
+                : DownloadNotificationService.INVALID_DOWNLOAD_PERCENTAGE;
+        final boolean updateSummary = summaryDownloadCount != mSummaryDownloadCount
+                || (summaryDownloadCount > 0 && summaryPercentage != mSummaryPercentage);
+        if (summaryDownloadCount == 0 && mSummaryDownloadCount > 0) {
+            // The progress notifications weren't updated while the summary was shown.
+            for (DownloadProgress progress : mDownloadProgressMap.values()) {
+                if (!isProgressActive(progress)) continue;
+                progress.mNotifiedProgress = null;
+                progress.mIsUpdated = true;
+            }
+        }
+
         final List<DownloadProgress> progressPendingUpdate = new ArrayList<DownloadProgress>();
+        final List<String> visibleProgress = new ArrayList<String>();
         Iterator<DownloadProgress> iter = mDownloadProgressMap.values().iterator();
         while (iter.hasNext()) {
             DownloadProgress progress = iter.next();
             if (progress.mIsUpdated) {
                 progressPendingUpdate.add(progress);
+                visibleProgress.add(
+                        isProgressActive(progress) ? getVisibleProgress(progress) : null);
             }
         }
-        if (progressPendingUpdate.isEmpty()) {
+        // Keep going while the summary changes, as downloads that were cancelled or removed leave
+        // no progress to update behind them.
+        if (progressPendingUpdate.isEmpty() && !updateSummary) {
             mIsUIUpdateScheduled = false;
+            mCurrentUpdateDelayInMillis = mUpdateDelayInMillis;
             return;
         }
         // Make a copy of the |progressUpdated|, so that we can update the notification on another
-        // thread without worrying about concurrent modifications.
+        // thread without worrying about concurrent modifications.  Skip the progress
+        // notifications that would look the same, or that are covered by the summary; the first
+        // notification of a download is always shown.
         final List<DownloadProgress> progressToUpdate = new ArrayList<DownloadProgress>();
         for (int i = 0; i < progressPendingUpdate.size(); ++i) {
-            progressToUpdate.add(new DownloadProgress(progressPendingUpdate.get(i)));
-        }
-        AsyncTask<Void, Void, List<DownloadItem>> task =
-                new AsyncTask<Void, Void, List<DownloadItem>>() {
-            @Override
-            public List<DownloadItem> doInBackground(Void... params) {
-                return updateAllNotifications(progressToUpdate);
+            DownloadProgress progress = progressPendingUpdate.get(i);
+            if (visibleProgress.get(i) != null && progress.mNotifiedProgress != null
+                    && (summaryDownloadCount > 0
+                            || visibleProgress.get(i).equals(progress.mNotifiedProgress))) {
+                continue;
             }
+            progressToUpdate.add(new DownloadProgress(progress));
+        }
+        try {
+            if (!progressToUpdate.isEmpty() || updateSummary) {
+                AsyncTask<Void, Void, List<DownloadItem>> task =
+                        new AsyncTask<Void, Void, List<DownloadItem>>() {
+                    @Override
+                    public List<DownloadItem> doInBackground(Void... params) {
+                        if (updateSummary) {
+                            mDownloadNotifier.notifyDownloadProgressSummary(
+                                    summaryDownloadCount, summaryPercentage);
+                        }
+                        return updateAllNotifications(progressToUpdate);
+                    }
 
-            @Override
-            protected void onPostExecute(List<DownloadItem> result) {
-                for (int i = 0; i < result.size(); ++i) {
-                    // TODO(qinmin): get the failure message from native.
-                    onDownloadFailed(result.get(i).getDownloadInfo().getFileName(),
-                            DownloadManager.ERROR_UNKNOWN);
-                }
+                    @Override
+                    protected void onPostExecute(List<DownloadItem> result) {
+                        for (int i = 0; i < result.size(); ++i) {
+                            // TODO(qinmin): get the failure message from native.
+                            onDownloadFailed(result.get(i).getDownloadInfo().getFileName(),
+                                    DownloadManager.ERROR_UNKNOWN);
+                        }
+                    }
+                };
+                task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
             }
-        };
-        try {
-            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            mSummaryDownloadCount = summaryDownloadCount;
+            mSummaryPercentage = summaryPercentage;
             for (int i = 0; i < progressPendingUpdate.size(); ++i) {
                 DownloadProgress progress = progressPendingUpdate.get(i);
                 progress.mIsUpdated = false;
+                if (visibleProgress.get(i) != null
+                        && (progress.mNotifiedProgress == null || summaryDownloadCount == 0)) {
+                    progress.mNotifiedProgress = visibleProgress.get(i);
+                }
                 // Remove progress entry from  mDownloadProgressMap if they are no longer needed.
                 if ((progress.mDownloadStatus != DOWNLOAD_STATUS_IN_PROGRESS
                         || progress.mDownloadItem.getDownloadInfo().isPaused())
@@ -691,19 +739,55 @@ public class DownloadManagerService extends BroadcastReceiver implements
                     mDownloadProgressMap.remove(progress.mDownloadItem.getId());
                 }
             }
+            // Back off while the downloads make no visible progress, e.g. when they are stalled.
+            if (progressToUpdate.isEmpty() && !updateSummary) {
+                mCurrentUpdateDelayInMillis = Math.min(mCurrentUpdateDelayInMillis * 2,
+                        mUpdateDelayInMillis * MAX_UPDATE_DELAY_MULTIPLIER);
+            } else {
+                mCurrentUpdateDelayInMillis = mUpdateDelayInMillis;
+            }
         } catch (RejectedExecutionException e) {
             // Reaching thread limit, update will be reschduled for the next run.
             Log.e(TAG, "reaching thread limit, reschedule notification update later.");
         }
 
-        Runnable scheduleNextUpdateTask = new Runnable(){
-            @Override
-            public void run() {
-                mIsUIUpdateScheduled = false;
-                scheduleUpdateIfNeeded();
-            }
-        };
-        mHandler.postDelayed(scheduleNextUpdateTask, mUpdateDelayInMillis);
+        mHandler.postDelayed(mScheduleNextUpdateTask, mCurrentUpdateDelayInMillis);
+    }
+
+    /**
+     * @param progress Progress of a download.
+     * @return Whether the download is in progress and not paused.
+     */
+    private static boolean isProgressActive(DownloadProgress progress) {
+        return progress.mDownloadStatus == DOWNLOAD_STATUS_IN_PROGRESS
+                && !progress.mDownloadItem.getDownloadInfo().isPaused();
+    }
+
+    /**
+     * @param progress Progress of a download that is in progress.
+     * @return The state of the download that is visible in its progress notification.
+     */
+    private String getVisibleProgress(DownloadProgress progress) {
+        DownloadInfo info = progress.mDownloadItem.getDownloadInfo();
+        int percentage = info.getPercentCompleted();
+        if (percentage == DownloadNotificationService.INVALID_DOWNLOAD_PERCENTAGE
+                || info.isOfflinePage()) {
+            return Integer.toString(percentage);
+        }
+        return percentage + " " + DownloadNotificationService.formatRemainingTime(
+                mContext, info.getTimeRemainingInMillis());
+    }
+
+    /**
+     * Stops backing off UI updates, so that a change of the state of a download is shown
+     * promptly.
+     */
+    private void resetUpdateDelay() {
+        if (mCurrentUpdateDelayInMillis == mUpdateDelayInMillis) return;
+        mCurrentUpdateDelayInMillis = mUpdateDelayInMillis;
+        if (!mIsUIUpdateScheduled) return;
+        mHandler.removeCallbacks(mScheduleNextUpdateTask);
+        mHandler.postDelayed(mScheduleNextUpdateTask, mUpdateDelayInMillis);
     }
 
     /**
@@ -725,6 +809,7 @@ public class DownloadManagerService extends BroadcastReceiver implements
                 progress.mIsUpdated = true;
                 progress.mIsSupportedMimeType = isSupportedMimeType;
                 mDownloadProgressMap.put(id, progress);
+                resetUpdateDelay();
                 if (getUmaStatsEntry(downloadItem.getId()) == null) {
                     addUmaStatsEntry(new DownloadUmaStatsEntry(
                             downloadItem.getId(), startTime, 0, false, false));
@@ -738,6 +823,7 @@ public class DownloadManagerService extends BroadcastReceiver implements
         progress.mIsUpdated = true;
         progress.mIsAutoResumable = mAutoResumableDownloadIds.contains(id);
         progress.mIsSupportedMimeType = isSupportedMimeType;
+        if (!isProgressActive(progress)) resetUpdateDelay();
         DownloadUmaStatsEntry entry;
         switch (downloadStatus) {
             case DOWNLOAD_STATUS_COMPLETE:
@@ -749,13 +835,13 @@ public class DownloadManagerService extends BroadcastReceiver implements
             case DOWNLOAD_STATUS_INTERRUPTED:
                 entry = getUmaStatsEntry(downloadItem.getId());
                 entry.numInterruptions++;
-                storeUmaEntries();
+                storeUmaEntry(entry);
                 break;
             case DOWNLOAD_STATUS_IN_PROGRESS:
                 entry = getUmaStatsEntry(downloadItem.getId());
                 if (entry.isPaused != downloadItem.getDownloadInfo().isPaused()) {
                     entry.isPaused = downloadItem.getDownloadInfo().isPaused();
-                    storeUmaEntries();
+                    storeUmaEntry(entry);
                 }
                 break;
             default:
@@ -1399,6 +1485,8 @@ public class DownloadManagerService extends BroadcastReceiver implements
     private void removeDownloadProgress(String guid) {
         mDownloadProgressMap.remove(guid);
         removeAutoResumableDownload(guid);
+        // The summary notification may count the removed download.
+        if (mSummaryDownloadCount > 0) scheduleUpdateIfNeeded();
     }
 
     @Override
@@ -1447,12 +1535,12 @@ public class DownloadManagerService extends BroadcastReceiver implements
     }
 
     /**
-     * Adds a DownloadUmaStatsEntry to |mUmaEntries| and SharedPrefs.
+     * Adds a DownloadUmaStatsEntry to |mUmaEntries| and the UMA entry store.
      * @param umaEntry A DownloadUmaStatsEntry to be added.
      */
     private void addUmaStatsEntry(DownloadUmaStatsEntry umaEntry) {
         mUmaEntries.add(umaEntry);
-        storeUmaEntries();
+        storeUmaEntry(umaEntry);
     }
 
     /**
@@ -1471,7 +1559,7 @@ public class DownloadManagerService extends BroadcastReceiver implements
     }
 
     /**
-     * Removes a DownloadUmaStatsEntry from SharedPrefs given by the id.
+     * Removes a DownloadUmaStatsEntry from |mUmaEntries| and the UMA entry store given by the id.
      * @param id ID to be removed.
      */
     private void removeUmaStatsEntry(String id) {
@@ -1486,19 +1574,30 @@ public class DownloadManagerService extends BroadcastReceiver implements
             }
         }
         if (found) {
-            storeUmaEntries();
+            getUmaEntryStore().removeRecord(id);
         }
     }
 
     /**
-     * Helper method to store all the DownloadUmaStatsEntry into SharedPreferences.
+     * @return The store of the DownloadUmaStatsEntry strings, keyed by their ID.
      */
-    private void storeUmaEntries() {
-        Set<String> entries = new HashSet<String>();
-        for (int i = 0; i < mUmaEntries.size(); ++i) {
-            entries.add(mUmaEntries.get(i).getSharedPreferenceString());
-        }
-        storeDownloadInfo(mSharedPrefs, DOWNLOAD_UMA_ENTRY, entries);
+    private static DownloadRecordStore getUmaEntryStore() {
+        return DownloadRecordStore.getInstance(
+                DOWNLOAD_UMA_ENTRY, new DownloadRecordStore.KeyExtractor() {
+                    @Override
+                    public String getKey(String record) {
+                        DownloadUmaStatsEntry entry = DownloadUmaStatsEntry.parseFromString(record);
+                        return entry == null ? null : entry.id;
+                    }
+                });
+    }
+
+    /**
+     * Helper method to add or update a DownloadUmaStatsEntry in the UMA entry store.
+     * @param entry The entry to store.
+     */
+    private void storeUmaEntry(DownloadUmaStatsEntry entry) {
+        getUmaEntryStore().putRecord(entry.id, entry.getSharedPreferenceString());
     }
 
     /**
@@ -1516,15 +1615,12 @@ public class DownloadManagerService extends BroadcastReceiver implements
     }
 
     /**
-     * Parse the DownloadUmaStatsEntry from the shared preference.
+     * Parse the DownloadUmaStatsEntry from the UMA entry store.
      */
     private void parseUMAStatsEntriesFromSharedPrefs() {
-        if (mSharedPrefs.contains(DOWNLOAD_UMA_ENTRY)) {
-            Set<String> entries =
-                    DownloadManagerService.getStoredDownloadInfo(mSharedPrefs, DOWNLOAD_UMA_ENTRY);
-            for (String entryString : entries) {
-                mUmaEntries.add(DownloadUmaStatsEntry.parseFromString(entryString));
-            }
+        for (String entryString : getUmaEntryStore().getRecords()) {
+            DownloadUmaStatsEntry entry = DownloadUmaStatsEntry.parseFromString(entryString);
+            if (entry != null) mUmaEntries.add(entry);
         }
     }
 
@@ -41,10 +41,8 @@ import org.chromium.chrome.browser.offlinepages.downloads.OfflinePageDownloadBri
 import org.chromium.chrome.browser.util.IntentUtils;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Service responsible for creating and updating download notifications even after
@@ -77,6 +75,9 @@ public class DownloadNotificationService extends Service {
     private static final String NEXT_DOWNLOAD_NOTIFICATION_ID = "NextDownloadNotificationId";
     // Notification Id starting value, to avoid conflicts from IDs used in prior versions.
     private static final int STARTING_NOTIFICATION_ID = 1000000;
+    // Notification Id of the notification summarizing downloads in progress.
+    @VisibleForTesting
+    static final int SUMMARY_NOTIFICATION_ID = STARTING_NOTIFICATION_ID - 1;
     private static final String AUTO_RESUMPTION_ATTEMPT_LEFT = "ResumptionAttemptLeft";
     private static final int MAX_RESUMPTION_ATTEMPT_LEFT = 5;
     @VisibleForTesting static final int SECONDS_PER_MINUTE = 60;
@@ -149,6 +150,7 @@ public class DownloadNotificationService extends Service {
      */
     private void onBrowserKilled() {
         cancelOffTheRecordNotifications();
+        mNotificationManager.cancel(NOTIFICATION_NAMESPACE, SUMMARY_NOTIFICATION_ID);
         pauseAllDownloads();
         if (!mDownloadSharedPreferenceEntries.isEmpty()) {
             boolean allowMeteredConnection = false;
@@ -232,6 +234,31 @@ public class DownloadNotificationService extends Service {
                 startTime, isOffTheRecord, canDownloadWhileMetered, isOfflinePage, false);
     }
 
+    /**
+     * Adds, updates or removes the notification summarizing the downloads in progress.  It is
+     * shown instead of updating the notification of each download when many are in progress.
+     * @param downloadCount Number of downloads in progress, or 0 to remove the notification.
+     * @param percentage Percentage completed across all the downloads. Value should be between
+     *        0 to 100 if the percentage can be determined, or -1 if it is unknown.
+     */
+    public void notifyDownloadProgressSummary(int downloadCount, int percentage) {
+        if (downloadCount == 0) {
+            mNotificationManager.cancel(NOTIFICATION_NAMESPACE, SUMMARY_NOTIFICATION_ID);
+            return;
+        }
+        if (mStopPostingProgressNotifications) return;
+        Resources resources = mContext.getResources();
+        NotificationCompat.Builder builder = buildNotification(
+                android.R.drawable.stat_sys_download,
+                resources.getQuantityString(R.plurals.download_notification_summary_title,
+                        downloadCount, downloadCount),
+                resources.getString(R.string.download_started));
+        builder.setOngoing(true);
+        builder.setProgress(100, percentage, percentage == INVALID_DOWNLOAD_PERCENTAGE);
+        builder.setPriority(Notification.PRIORITY_HIGH);
+        updateNotification(SUMMARY_NOTIFICATION_ID, builder.build());
+    }
+
     /**
      * Adds or updates a pending download notification.
      * @param downloadGuid GUID of the download.
@@ -735,7 +762,8 @@ public class DownloadNotificationService extends Service {
             }
         }
         mDownloadSharedPreferenceEntries.add(pendingEntry);
-        storeDownloadSharedPreferenceEntries();
+        getPendingNotificationStore().putRecord(
+                pendingEntry.downloadGuid, pendingEntry.getSharedPreferenceString());
     }
 
     /**
@@ -755,7 +783,7 @@ public class DownloadNotificationService extends Service {
             }
         }
         if (found) {
-            storeDownloadSharedPreferenceEntries();
+            getPendingNotificationStore().removeRecord(guid);
         }
     }
 
@@ -779,16 +807,13 @@ public class DownloadNotificationService extends Service {
     }
 
     /**
-     * Parse a list of the DownloadSharedPreferenceEntry and the number of auto resumption attempt
-     * left from the shared preference.
+     * Parse a list of the DownloadSharedPreferenceEntry from the pending notification store, and
+     * the number of auto resumption attempt left from the shared preference.
      */
     void parseDownloadSharedPrefs() {
         mNumAutoResumptionAttemptLeft = mSharedPrefs.getInt(AUTO_RESUMPTION_ATTEMPT_LEFT,
                 MAX_RESUMPTION_ATTEMPT_LEFT);
-        if (!mSharedPrefs.contains(PENDING_DOWNLOAD_NOTIFICATIONS)) return;
-        Set<String> entries = DownloadManagerService.getStoredDownloadInfo(
-                mSharedPrefs, PENDING_DOWNLOAD_NOTIFICATIONS);
-        for (String entryString : entries) {
+        for (String entryString : getPendingNotificationStore().getRecords()) {
             DownloadSharedPreferenceEntry entry =
                     DownloadSharedPreferenceEntry.parseFromString(entryString);
             if (entry.notificationId > 0) {
@@ -813,15 +838,18 @@ public class DownloadNotificationService extends Service {
     }
 
     /**
-     * Helper method to store all the SharedPreferences entries.
+     * @return The store of the DownloadSharedPreferenceEntry strings, keyed by download GUID.
      */
-    private void storeDownloadSharedPreferenceEntries() {
-        Set<String> entries = new HashSet<String>();
-        for (int i = 0; i < mDownloadSharedPreferenceEntries.size(); ++i) {
-            entries.add(mDownloadSharedPreferenceEntries.get(i).getSharedPreferenceString());
-        }
-        DownloadManagerService.storeDownloadInfo(
-                mSharedPrefs, PENDING_DOWNLOAD_NOTIFICATIONS, entries);
+    private static DownloadRecordStore getPendingNotificationStore() {
+        return DownloadRecordStore.getInstance(
+                PENDING_DOWNLOAD_NOTIFICATIONS, new DownloadRecordStore.KeyExtractor() {
+                    @Override
+                    public String getKey(String record) {
+                        DownloadSharedPreferenceEntry entry =
+                                DownloadSharedPreferenceEntry.parseFromString(record);
+                        return entry.notificationId > 0 ? entry.downloadGuid : null;
+                    }
+                });
     }
 
     /**
@@ -35,6 +35,13 @@ public interface DownloadNotifier {
     void notifyDownloadProgress(
             DownloadInfo downloadInfo, long startTimeInMillis, boolean mCanDownloadWhileMetered);
 
+    /**
+     * Update the notification summarizing the downloads in progress.
+     * @param downloadCount Number of downloads in progress, or 0 to remove the notification.
+     * @param percentage Percentage completed across all the downloads, or -1 if it is unknown.
+     */
+    void notifyDownloadProgressSummary(int downloadCount, int percentage);
+
     /**
      * Update the download notification to paused.
      * @param downloadInfo info about in progress download.
@@ -0,0 +1,266 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.download;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.AsyncTask;
+import android.os.StrictMode;
+
+import org.chromium.base.ContextUtils;
+import org.chromium.base.Log;
+import org.chromium.base.StreamUtil;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyed store for the records about downloads that must survive restarts, e.g. pending OMA
+ * downloads.  These records used to be kept as string sets in SharedPreferences, so changing one
+ * of them rewrote the whole set, along with the rest of the app's SharedPreferences file.
+ *
+ * Each kind of record is kept in its own file, as a log of the records that were put and
+ * removed, so a change only appends the changed record to the file.  The log is read into memory
+ * when the store is first used, and is compacted once it holds many more operations than records.
+ * Like SharedPreferences.Editor#apply(), changes are visible immediately and written to disk in
+ * order on a background thread.  Records are migrated from SharedPreferences the first time a
+ * store is used.  All methods are thread-safe.
+ */
+public class DownloadRecordStore {
+    private static final String TAG = "DownloadRecords";
+
+    static final String DIRECTORY_NAME = "download_records";
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    /** Number of stale operations the log can hold, on top of one per record, before compaction. */
+    private static final int MAX_STALE_OPERATIONS = 32;
+
+    /**
+     * Extracts the key of a record that is migrated from SharedPreferences.
+     */
+    public interface KeyExtractor {
+        /**
+         * @param record A record from the string set in SharedPreferences.
+         * @return The key of the record, or null if the record is invalid and should be dropped.
+         */
+        String getKey(String record);
+    }
+
+    private static final Map<String, DownloadRecordStore> sStores =
+            new HashMap<String, DownloadRecordStore>();
+
+    private final String mName;
+    private final File mFile;
+    private final LinkedHashMap<String, String> mRecords = new LinkedHashMap<String, String>();
+    // Number of operations in the log file, once all pending writes are done.
+    private int mOperationCount;
+
+    /**
+     * Returns the store for a kind of records, reading it from disk if it wasn't used yet.
+     * @param name Name of the store, which is also the key of the string set in SharedPreferences
+     *             that the records are migrated from.
+     * @param keyExtractor Extracts the keys of the records migrated from SharedPreferences.
+     * @return The store.
+     */
+    public static DownloadRecordStore getInstance(String name, KeyExtractor keyExtractor) {
+        synchronized (sStores) {
+            DownloadRecordStore store = sStores.get(name);
+            if (store == null) {
+                store = new DownloadRecordStore(name);
+                store.load(keyExtractor);
+                sStores.put(name, store);
+            }
+            return store;
+        }
+    }
+
+    private DownloadRecordStore(String name) {
+        mName = name;
+        mFile = new File(ContextUtils.getApplicationContext().getDir(
+                DIRECTORY_NAME, Context.MODE_PRIVATE), name);
+    }
+
+    /**
+     * @return All the records, in the order they were first put.
+     */
+    public synchronized List<String> getRecords() {
+        return new ArrayList<String>(mRecords.values());
+    }
+
+    /**
+     * @param key Key of the record.
+     * @return The record, or null if there is no record with the key.
+     */
+    public synchronized String getRecord(String key) {
+        return mRecords.get(key);
+    }
+
+    /**
+     * Adds a record, or replaces the record with the same key.
+     * @param key Key of the record.
+     * @param record The record.
+     */
+    public synchronized void putRecord(String key, String record) {
+        if (record.equals(mRecords.get(key))) return;
+        mRecords.put(key, record);
+        appendOperation(OP_PUT, key, record);
+    }
+
+    /**
+     * Removes a record.
+     * @param key Key of the record.
+     */
+    public synchronized void removeRecord(String key) {
+        if (!mRecords.containsKey(key)) return;
+        mRecords.remove(key);
+        appendOperation(OP_REMOVE, key, null);
+    }
+
+    private void appendOperation(byte op, String key, String record) {
+        assert Thread.holdsLock(this);
+        mOperationCount++;
+        if (mOperationCount > mRecords.size() + MAX_STALE_OPERATIONS) {
+            compact();
+            return;
+        }
+
+        final byte[] operation;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeOperation(new DataOutputStream(bytes), op, key, record);
+            operation = bytes.toByteArray();
+        } catch (IOException e) {
+            assert false : "Writing to memory should not fail.";
+            return;
+        }
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                FileOutputStream stream = null;
+                try {
+                    stream = new FileOutputStream(mFile, true);
+                    stream.write(operation);
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to write file: " + mFile.getName());
+                } finally {
+                    StreamUtil.closeQuietly(stream);
+                }
+            }
+        });
+    }
+
+    /**
+     * Rewrites the log so that it only holds the current records.  Once it is written, the
+     * records no longer need to be migrated from SharedPreferences.
+     */
+    private void compact() {
+        assert Thread.holdsLock(this);
+        mOperationCount = mRecords.size();
+        final Map<String, String> records = new LinkedHashMap<String, String>(mRecords);
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                File tempFile = new File(mFile.getParentFile(), mFile.getName() + ".tmp");
+                DataOutputStream stream = null;
+                boolean written = false;
+                try {
+                    stream = new DataOutputStream(new FileOutputStream(tempFile));
+                    for (Map.Entry<String, String> entry : records.entrySet()) {
+                        writeOperation(stream, OP_PUT, entry.getKey(), entry.getValue());
+                    }
+                    written = true;
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to write file: " + tempFile.getName());
+                } finally {
+                    StreamUtil.closeQuietly(stream);
+                }
+                if (!written || !tempFile.renameTo(mFile)) {
+                    if (written) Log.e(TAG, "Failed to rename file: " + tempFile.getName());
+                    tempFile.delete();
+                    return;
+                }
+                SharedPreferences prefs = ContextUtils.getAppSharedPreferences();
+                if (prefs.contains(mName)) prefs.edit().remove(mName).apply();
+            }
+        });
+    }
+
+    private static void writeOperation(DataOutputStream stream, byte op, String key,
+            String record) throws IOException {
+        stream.writeByte(op);
+        stream.writeUTF(key);
+        if (op == OP_PUT) stream.writeUTF(record);
+    }
+
+    /**
+     * Reads the records, migrating them from SharedPreferences if they weren't migrated yet.
+     */
+    private synchronized void load(KeyExtractor keyExtractor) {
+        StrictMode.ThreadPolicy oldPolicy = StrictMode.allowThreadDiskReads();
+        try {
+            // The SharedPreferences entry is only removed once the migrated records are written,
+            // and any operation logged since then applies on top of them.
+            SharedPreferences prefs = ContextUtils.getAppSharedPreferences();
+            boolean isMigrating = prefs.contains(mName);
+            if (isMigrating) {
+                for (String record : DownloadManagerService.getStoredDownloadInfo(prefs, mName)) {
+                    String key = keyExtractor.getKey(record);
+                    if (key != null) mRecords.put(key, record);
+                }
+            }
+
+            // Compacting also drops an operation that was only partially written, before more
+            // operations are appended after it.
+            boolean isLogComplete = readLog();
+            if (isMigrating || !isLogComplete) compact();
+        } finally {
+            StrictMode.setThreadPolicy(oldPolicy);
+        }
+    }
+
+    /**
+     * Replays the operations in the log onto the records.
+     * @return Whether the whole log could be read.
+     */
+    private boolean readLog() {
+        assert Thread.holdsLock(this);
+        if (!mFile.exists()) return true;
+        DataInputStream stream = null;
+        try {
+            stream = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            int op;
+            while ((op = stream.read()) != -1) {
+                String key = stream.readUTF();
+                if (op == OP_PUT) {
+                    mRecords.put(key, stream.readUTF());
+                } else if (op == OP_REMOVE) {
+                    mRecords.remove(key);
+                } else {
+                    throw new IOException("Unknown operation: " + op);
+                }
+                mOperationCount++;
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read file: " + mFile.getName());
+            return false;
+        } finally {
+            StreamUtil.closeQuietly(stream);
+        }
+    }
+}
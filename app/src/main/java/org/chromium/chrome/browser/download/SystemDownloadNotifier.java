@@ -35,6 +35,7 @@ public class SystemDownloadNotifier implements DownloadNotifier {
     private static final int DOWNLOAD_NOTIFICATION_TYPE_RESUME_ALL = 4;
     private static final int DOWNLOAD_NOTIFICATION_TYPE_PAUSE = 5;
     private static final int DOWNLOAD_NOTIFICATION_TYPE_INTERRUPT = 6;
+    private static final int DOWNLOAD_NOTIFICATION_TYPE_SUMMARY = 7;
     private final Context mApplicationContext;
     private final Object mLock = new Object();
     @Nullable private DownloadNotificationService mBoundService;
@@ -56,6 +57,8 @@ public class SystemDownloadNotifier implements DownloadNotifier {
         public boolean canResolve;
         public long systemDownloadId;
         public boolean isSupportedMimeType;
+        public int downloadCount;
+        public int percentage;
 
         public PendingNotificationInfo(int type, DownloadInfo downloadInfo) {
             this.type = type;
@@ -204,6 +207,15 @@ public class SystemDownloadNotifier implements DownloadNotifier {
         updateDownloadNotification(info);
     }
 
+    @Override
+    public void notifyDownloadProgressSummary(int downloadCount, int percentage) {
+        PendingNotificationInfo info =
+                new PendingNotificationInfo(DOWNLOAD_NOTIFICATION_TYPE_SUMMARY, null);
+        info.downloadCount = downloadCount;
+        info.percentage = percentage;
+        updateDownloadNotification(info);
+    }
+
     @Override
     public void notifyDownloadPaused(DownloadInfo downloadInfo) {
         PendingNotificationInfo info =
@@ -255,7 +267,8 @@ public class SystemDownloadNotifier implements DownloadNotifier {
             final DownloadInfo info = notificationInfo.downloadInfo;
             if (notificationInfo.type == DOWNLOAD_NOTIFICATION_TYPE_PROGRESS) {
                 mActiveDownloads.add(info.getDownloadGuid());
-            } else if (notificationInfo.type != DOWNLOAD_NOTIFICATION_TYPE_RESUME_ALL) {
+            } else if (notificationInfo.type != DOWNLOAD_NOTIFICATION_TYPE_RESUME_ALL
+                    && notificationInfo.type != DOWNLOAD_NOTIFICATION_TYPE_SUMMARY) {
                 mActiveDownloads.remove(info.getDownloadGuid());
             }
             if (mBoundService == null) {
@@ -272,6 +285,11 @@ public class SystemDownloadNotifier implements DownloadNotifier {
                                 info.isOffTheRecord(), notificationInfo.canDownloadWhileMetered,
                                 info.isOfflinePage());
                         break;
+                    case DOWNLOAD_NOTIFICATION_TYPE_SUMMARY:
+                        mBoundService.notifyDownloadProgressSummary(
+                                notificationInfo.downloadCount, notificationInfo.percentage);
+                        if (notificationInfo.downloadCount == 0) stopServiceIfNeeded();
+                        break;
                     case DOWNLOAD_NOTIFICATION_TYPE_PAUSE:
                         mBoundService.notifyDownloadPaused(info.getDownloadGuid(), true, false);
                         break;
@@ -21,9 +21,8 @@ import org.chromium.components.sync.AndroidSyncSettings;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 /**
  * A class for controlling whether an invalidation should be notified immediately, or should be
@@ -32,7 +31,11 @@ import java.util.Set;
 public class DelayedInvalidationsController {
     private static final String TAG = "invalidation";
     private static final String DELAYED_ACCOUNT_NAME = "delayed_account";
+    // Used by earlier versions to store all the delayed invalidations in a single string set.
     private static final String DELAYED_INVALIDATIONS = "delayed_invalidations";
+    // The delayed invalidations are kept in their own preferences file, keyed by object, so that
+    // the invalidations of an object coalesce into the one with the highest version.
+    private static final String DELAYED_INVALIDATIONS_PREFS_NAME = "delayed_invalidations";
 
     private static class LazyHolder {
         private static final DelayedInvalidationsController INSTANCE =
@@ -90,36 +93,47 @@ public class DelayedInvalidationsController {
     @VisibleForTesting
     void addPendingInvalidation(Context context, String account, PendingInvalidation invalidation) {
         SharedPreferences prefs = ContextUtils.getAppSharedPreferences();
+        SharedPreferences invalidationPrefs = getInvalidationPreferences();
         String oldAccount = prefs.getString(DELAYED_ACCOUNT_NAME, null);
-        // Make sure to construct a new set so it can be modified safely. See crbug.com/568369.
-        Set<String> invals = new HashSet<String>(
-                prefs.getStringSet(DELAYED_INVALIDATIONS, new HashSet<String>(1)));
-        assert invals.isEmpty() || oldAccount != null;
+        boolean hasInvalidations = !invalidationPrefs.getAll().isEmpty();
+        assert !hasInvalidations || oldAccount != null;
         if (oldAccount != null && !oldAccount.equals(account)) {
-            invals.clear();
+            hasInvalidations = false;
         }
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString(DELAYED_ACCOUNT_NAME, account);
-        if (invalidation.mObjectSource == 0 || (oldAccount != null && invals.isEmpty())) {
-            editor.putStringSet(DELAYED_INVALIDATIONS, null);
+        // Invalidations stored by earlier versions are dropped, which leaves all types to be
+        // invalidated.
+        prefs.edit()
+                .putString(DELAYED_ACCOUNT_NAME, account)
+                .remove(DELAYED_INVALIDATIONS)
+                .apply();
+
+        SharedPreferences.Editor editor = invalidationPrefs.edit();
+        if (invalidation.mObjectSource == 0 || (oldAccount != null && !hasInvalidations)) {
+            editor.clear();
         } else {
-            invals.add(invalidation.encodeToString());
-            editor.putStringSet(DELAYED_INVALIDATIONS, invals);
+            // Only the invalidation of an object with the highest version needs to be notified.
+            String key = invalidation.mObjectSource + ":" + invalidation.mObjectId;
+            PendingInvalidation storedInvalidation =
+                    decodeInvalidation(invalidationPrefs.getString(key, null));
+            if (storedInvalidation != null && storedInvalidation.mVersion > invalidation.mVersion) {
+                return;
+            }
+            editor.putString(key, invalidation.encodeToString());
         }
         editor.apply();
     }
 
     private List<Bundle> popPendingInvalidations(final Context context) {
-        SharedPreferences prefs = ContextUtils.getAppSharedPreferences();
-        assert prefs.contains(DELAYED_ACCOUNT_NAME);
-        Set<String> savedInvalidations = prefs.getStringSet(DELAYED_INVALIDATIONS, null);
+        assert ContextUtils.getAppSharedPreferences().contains(DELAYED_ACCOUNT_NAME);
+        Map<String, ?> savedInvalidations = getInvalidationPreferences().getAll();
         clearPendingInvalidations(context);
         // Absence of specific invalidations indicates invalidate all types.
-        if (savedInvalidations == null) return Arrays.asList(new Bundle());
+        if (savedInvalidations.isEmpty()) return Arrays.asList(new Bundle());
 
         List<Bundle> bundles = new ArrayList<Bundle>(savedInvalidations.size());
-        for (String invalidation : savedInvalidations) {
-            Bundle bundle = PendingInvalidation.decodeToBundle(invalidation);
+        for (Object invalidation : savedInvalidations.values()) {
+            Bundle bundle = invalidation instanceof String
+                    ? PendingInvalidation.decodeToBundle((String) invalidation) : null;
             if (bundle == null) {
                 Log.e(TAG, "Error parsing saved invalidation. Invalidating all.");
                 return Arrays.asList(new Bundle());
@@ -129,6 +143,17 @@ public class DelayedInvalidationsController {
         return bundles;
     }
 
+    private static PendingInvalidation decodeInvalidation(String encodedInvalidation) {
+        if (encodedInvalidation == null) return null;
+        Bundle bundle = PendingInvalidation.decodeToBundle(encodedInvalidation);
+        return bundle == null ? null : new PendingInvalidation(bundle);
+    }
+
+    private static SharedPreferences getInvalidationPreferences() {
+        return ContextUtils.getApplicationContext().getSharedPreferences(
+                DELAYED_INVALIDATIONS_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
     /**
      * If there are any pending invalidations, they will be cleared.
      */
@@ -139,6 +164,7 @@ public class DelayedInvalidationsController {
         editor.putString(DELAYED_ACCOUNT_NAME, null);
         editor.putStringSet(DELAYED_INVALIDATIONS, null);
         editor.apply();
+        getInvalidationPreferences().edit().clear().apply();
     }
 
     @VisibleForTesting
@@ -0,0 +1,355 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.metrics;
+
+import android.os.AsyncTask;
+
+import org.chromium.base.ThreadUtils;
+import org.chromium.base.VisibleForTesting;
+import org.chromium.base.metrics.RecordHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records histograms like {@link RecordHistogram}, but buffers the samples in memory and records
+ * them in batches on a background thread.
+ *
+ * Each call to RecordHistogram is a JNI call on the calling thread, which is often the UI thread
+ * in the middle of a gesture.  Here, recording a sample only writes the ID of its histogram and
+ * its value to primitive arrays.  The first sample recorded after a flush schedules the next one,
+ * which swaps the arrays and records their samples in order, so that recording doesn't wait on
+ * the native calls.  Pending samples are also flushed when the UMA session ends.
+ *
+ * The methods mirror those of RecordHistogram, and must be called for a given histogram with the
+ * same parameters every time.  All methods are thread-safe.
+ */
+public class BufferedRecordHistogram {
+    /** Delay between the first sample recorded after a flush and the next flush. */
+    private static final long FLUSH_DELAY_MS = 1000;
+
+    private static final int INITIAL_BUFFER_SIZE = 64;
+
+    // Kinds of histograms, each matching one of the methods of RecordHistogram.
+    private static final int KIND_BOOLEAN = 0;
+    private static final int KIND_ENUMERATED = 1;
+    private static final int KIND_CUSTOM_COUNT = 2;
+    private static final int KIND_LINEAR_COUNT = 3;
+    private static final int KIND_SPARSE = 4;
+    private static final int KIND_CUSTOM_TIMES = 5;
+
+    private static final Object sLock = new Object();
+
+    // The histograms, indexed by their ID.  The arrays only grow, and the histogram at an ID never
+    // changes once added, so a flush can read the arrays it got while holding the lock.
+    private static final Map<String, Integer> sHistogramIds = new HashMap<String, Integer>();
+    private static String[] sNames = new String[INITIAL_BUFFER_SIZE];
+    private static int[] sKinds = new int[INITIAL_BUFFER_SIZE];
+    private static int[] sMins = new int[INITIAL_BUFFER_SIZE];
+    private static int[] sMaxs = new int[INITIAL_BUFFER_SIZE];
+    private static int[] sBucketCounts = new int[INITIAL_BUFFER_SIZE];
+
+    // The pending samples: the IDs of their histograms and their values.  The spare arrays are
+    // swapped in when these ones are flushed, and are null while a flush is using them.
+    private static int[] sSampleIds = new int[INITIAL_BUFFER_SIZE];
+    private static int[] sSampleValues = new int[INITIAL_BUFFER_SIZE];
+    private static int sSampleCount;
+    private static int[] sSpareSampleIds = new int[INITIAL_BUFFER_SIZE];
+    private static int[] sSpareSampleValues = new int[INITIAL_BUFFER_SIZE];
+
+    private static boolean sIsFlushScheduled;
+    private static boolean sIsImmediateForTesting;
+
+    private static final Runnable sScheduleFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            AsyncTask.SERIAL_EXECUTOR.execute(sFlushRunnable);
+        }
+    };
+
+    private static final Runnable sFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (sLock) {
+                sIsFlushScheduled = false;
+            }
+            flush();
+        }
+    };
+
+    private BufferedRecordHistogram() {}
+
+    /**
+     * Records a sample in a boolean histogram.
+     * @see RecordHistogram#recordBooleanHistogram(String, boolean)
+     */
+    public static void recordBooleanHistogram(String name, boolean sample) {
+        record(name, KIND_BOOLEAN, 0, 0, 0, sample ? 1 : 0);
+    }
+
+    /**
+     * Records a sample in an enumerated histogram.
+     * @see RecordHistogram#recordEnumeratedHistogram(String, int, int)
+     */
+    public static void recordEnumeratedHistogram(String name, int sample, int boundary) {
+        record(name, KIND_ENUMERATED, 0, boundary, 0, sample);
+    }
+
+    /**
+     * Records a sample in a count histogram, with buckets from 1 to 1000000.
+     * @see RecordHistogram#recordCountHistogram(String, int)
+     */
+    public static void recordCountHistogram(String name, int sample) {
+        recordCustomCountHistogram(name, sample, 1, 1000000, 50);
+    }
+
+    /**
+     * Records a sample in a count histogram, with buckets from 1 to 100.
+     * @see RecordHistogram#recordCount100Histogram(String, int)
+     */
+    public static void recordCount100Histogram(String name, int sample) {
+        recordCustomCountHistogram(name, sample, 1, 100, 50);
+    }
+
+    /**
+     * Records a sample in a count histogram, with buckets from 1 to 1000.
+     * @see RecordHistogram#recordCount1000Histogram(String, int)
+     */
+    public static void recordCount1000Histogram(String name, int sample) {
+        recordCustomCountHistogram(name, sample, 1, 1000, 50);
+    }
+
+    /**
+     * Records a sample in a count histogram with exponential buckets.
+     * @see RecordHistogram#recordCustomCountHistogram(String, int, int, int, int)
+     */
+    public static void recordCustomCountHistogram(
+            String name, int sample, int min, int max, int numBuckets) {
+        record(name, KIND_CUSTOM_COUNT, min, max, numBuckets, sample);
+    }
+
+    /**
+     * Records a sample in a count histogram with linear buckets.
+     * @see RecordHistogram#recordLinearCountHistogram(String, int, int, int, int)
+     */
+    public static void recordLinearCountHistogram(
+            String name, int sample, int min, int max, int numBuckets) {
+        record(name, KIND_LINEAR_COUNT, min, max, numBuckets, sample);
+    }
+
+    /**
+     * Records a sample in a percentage histogram.
+     * @see RecordHistogram#recordPercentageHistogram(String, int)
+     */
+    public static void recordPercentageHistogram(String name, int sample) {
+        recordEnumeratedHistogram(name, sample, 101);
+    }
+
+    /**
+     * Records a sample in a sparse histogram.
+     * @see RecordHistogram#recordSparseSlowlyHistogram(String, int)
+     */
+    public static void recordSparseSlowlyHistogram(String name, int sample) {
+        record(name, KIND_SPARSE, 0, 0, 0, sample);
+    }
+
+    /**
+     * Records a duration in a times histogram, with buckets from 1 millisecond to 10 seconds.
+     * @see RecordHistogram#recordTimesHistogram(String, long, TimeUnit)
+     */
+    public static void recordTimesHistogram(String name, long duration, TimeUnit timeUnit) {
+        recordCustomTimesHistogram(name, timeUnit.toMillis(duration), 1,
+                TimeUnit.SECONDS.toMillis(10), TimeUnit.MILLISECONDS, 50);
+    }
+
+    /**
+     * Records a duration in a times histogram, with buckets from 10 milliseconds to 3 minutes.
+     * @see RecordHistogram#recordMediumTimesHistogram(String, long, TimeUnit)
+     */
+    public static void recordMediumTimesHistogram(String name, long duration, TimeUnit timeUnit) {
+        recordCustomTimesHistogram(name, timeUnit.toMillis(duration), 10,
+                TimeUnit.MINUTES.toMillis(3), TimeUnit.MILLISECONDS, 50);
+    }
+
+    /**
+     * Records a duration in a times histogram, with buckets from 1 millisecond to 1 hour.
+     * @see RecordHistogram#recordLongTimesHistogram(String, long, TimeUnit)
+     */
+    public static void recordLongTimesHistogram(String name, long duration, TimeUnit timeUnit) {
+        recordCustomTimesHistogram(name, timeUnit.toMillis(duration), 1,
+                TimeUnit.HOURS.toMillis(1), TimeUnit.MILLISECONDS, 50);
+    }
+
+    /**
+     * Records a duration in a times histogram with custom buckets.
+     * @see RecordHistogram#recordCustomTimesHistogram(String, long, long, long, TimeUnit, int)
+     */
+    public static void recordCustomTimesHistogram(String name, long duration, long min, long max,
+            TimeUnit timeUnit, int numBuckets) {
+        record(name, KIND_CUSTOM_TIMES, clampToInt(timeUnit.toMillis(min)),
+                clampToInt(timeUnit.toMillis(max)), numBuckets,
+                clampToInt(timeUnit.toMillis(duration)));
+    }
+
+    /**
+     * Records the pending samples on the calling thread.  This is done automatically on a
+     * background thread shortly after samples are recorded.
+     */
+    public static void flush() {
+        String[] names;
+        int[] kinds;
+        int[] mins;
+        int[] maxs;
+        int[] bucketCounts;
+        int[] sampleIds;
+        int[] sampleValues;
+        int sampleCount;
+        synchronized (sLock) {
+            if (sSampleCount == 0) return;
+            names = sNames;
+            kinds = sKinds;
+            mins = sMins;
+            maxs = sMaxs;
+            bucketCounts = sBucketCounts;
+            sampleIds = sSampleIds;
+            sampleValues = sSampleValues;
+            sampleCount = sSampleCount;
+
+            if (sSpareSampleIds != null) {
+                sSampleIds = sSpareSampleIds;
+                sSampleValues = sSpareSampleValues;
+            } else {
+                sSampleIds = new int[INITIAL_BUFFER_SIZE];
+                sSampleValues = new int[INITIAL_BUFFER_SIZE];
+            }
+            sSampleCount = 0;
+            // The flushed arrays only become spare again once they are flushed, so that samples
+            // recorded in the meantime don't overwrite them.
+            sSpareSampleIds = null;
+            sSpareSampleValues = null;
+        }
+
+        for (int i = 0; i < sampleCount; i++) {
+            int id = sampleIds[i];
+            recordNow(names[id], kinds[id], mins[id], maxs[id], bucketCounts[id], sampleValues[i]);
+        }
+
+        synchronized (sLock) {
+            if (sSpareSampleIds == null) {
+                sSpareSampleIds = sampleIds;
+                sSpareSampleValues = sampleValues;
+            }
+        }
+    }
+
+    /**
+     * Makes samples be recorded immediately on the calling thread, in the order they are recorded,
+     * so that tests can check the histograms right away.
+     * @param immediate Whether samples should be recorded immediately.
+     */
+    @VisibleForTesting
+    public static void setImmediateForTesting(boolean immediate) {
+        flush();
+        synchronized (sLock) {
+            sIsImmediateForTesting = immediate;
+        }
+    }
+
+    private static void record(String name, int kind, int min, int max, int numBuckets,
+            int sample) {
+        synchronized (sLock) {
+            if (!sIsImmediateForTesting) {
+                int id = getHistogramId(name, kind, min, max, numBuckets);
+                if (sSampleCount == sSampleIds.length) growSamples();
+                sSampleIds[sSampleCount] = id;
+                sSampleValues[sSampleCount] = sample;
+                sSampleCount++;
+                if (!sIsFlushScheduled) {
+                    sIsFlushScheduled = true;
+                    ThreadUtils.postOnUiThreadDelayed(sScheduleFlushRunnable, FLUSH_DELAY_MS);
+                }
+                return;
+            }
+        }
+        recordNow(name, kind, min, max, numBuckets, sample);
+    }
+
+    private static int getHistogramId(String name, int kind, int min, int max, int numBuckets) {
+        assert Thread.holdsLock(sLock);
+        Integer id = sHistogramIds.get(name);
+        if (id != null) {
+            assert sKinds[id] == kind && sMins[id] == min && sMaxs[id] == max
+                    && sBucketCounts[id] == numBuckets : "Inconsistent parameters for " + name;
+            return id;
+        }
+
+        int newId = sHistogramIds.size();
+        if (newId == sNames.length) growHistograms();
+        sNames[newId] = name;
+        sKinds[newId] = kind;
+        sMins[newId] = min;
+        sMaxs[newId] = max;
+        sBucketCounts[newId] = numBuckets;
+        sHistogramIds.put(name, newId);
+        return newId;
+    }
+
+    private static void growHistograms() {
+        int size = sNames.length * 2;
+        String[] names = new String[size];
+        System.arraycopy(sNames, 0, names, 0, sNames.length);
+        sNames = names;
+        sKinds = grow(sKinds, size);
+        sMins = grow(sMins, size);
+        sMaxs = grow(sMaxs, size);
+        sBucketCounts = grow(sBucketCounts, size);
+    }
+
+    private static void growSamples() {
+        int size = sSampleIds.length * 2;
+        sSampleIds = grow(sSampleIds, size);
+        sSampleValues = grow(sSampleValues, size);
+    }
+
+    private static int[] grow(int[] array, int size) {
+        int[] newArray = new int[size];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static void recordNow(String name, int kind, int min, int max, int numBuckets,
+            int sample) {
+        switch (kind) {
+            case KIND_BOOLEAN:
+                RecordHistogram.recordBooleanHistogram(name, sample != 0);
+                break;
+            case KIND_ENUMERATED:
+                RecordHistogram.recordEnumeratedHistogram(name, sample, max);
+                break;
+            case KIND_CUSTOM_COUNT:
+                RecordHistogram.recordCustomCountHistogram(name, sample, min, max, numBuckets);
+                break;
+            case KIND_LINEAR_COUNT:
+                RecordHistogram.recordLinearCountHistogram(name, sample, min, max, numBuckets);
+                break;
+            case KIND_SPARSE:
+                RecordHistogram.recordSparseSlowlyHistogram(name, sample);
+                break;
+            case KIND_CUSTOM_TIMES:
+                RecordHistogram.recordCustomTimesHistogram(
+                        name, sample, min, max, TimeUnit.MILLISECONDS, numBuckets);
+                break;
+            default:
+                assert false : kind;
+        }
+    }
+
+    private static int clampToInt(long value) {
+        if (value > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        if (value < Integer.MIN_VALUE) return Integer.MIN_VALUE;
+        return (int) value;
+    }
+}
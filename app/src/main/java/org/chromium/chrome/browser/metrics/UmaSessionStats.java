@@ -134,6 +134,8 @@ public class UmaSessionStats {
             mTabModelSelector = null;
         }
 
+        // Record the buffered samples before the session ends, so that they are logged with it.
+        BufferedRecordHistogram.flush();
         nativeUmaEndSession(sNativeUmaSessionStats);
         ContextUtils.getAppSharedPreferences()
                 .edit()
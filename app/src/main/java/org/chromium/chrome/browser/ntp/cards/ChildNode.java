@@ -28,6 +28,10 @@ public abstract class ChildNode implements TreeNode {
         mParent.onItemRangeRemoved(this, index, count);
     }
 
+    protected void notifyItemMoved(int fromIndex, int toIndex) {
+        mParent.onItemMoved(this, fromIndex, toIndex);
+    }
+
     protected void notifyItemChanged(int index) {
         notifyItemRangeChanged(index, 1);
     }
@@ -10,23 +10,87 @@ import java.util.List;
 
 /**
  * An inner node in the tree: the root of a subtree, with a list of child nodes.
+ *
+ * The item counts of the children are indexed in a Fenwick tree, so that finding the child at a
+ * position and the position of a child take logarithmic time rather than a walk through all the
+ * children.  The index is kept up to date by the range notifications of the children, and must be
+ * reset by subclasses with {@link #onChildrenChanged()} when they add, remove or replace children.
  */
 public abstract class InnerNode extends ChildNode implements NodeParent {
+    // Item count of each child, as last indexed. Null when the index needs to be rebuilt.
+    private int[] mChildItemCounts;
+    // Fenwick tree over mChildItemCounts, 1-based: mCountTree[i] holds the sum of the item counts
+    // of the children in (i - lowestOneBit(i), i].
+    private int[] mCountTree;
+    private int mItemCount;
+
     public InnerNode(NodeParent parent) {
         super(parent);
     }
 
     protected abstract List<TreeNode> getChildren();
 
-    private int getChildIndexForPosition(int position) {
+    /**
+     * Resets the index of the item counts of the children. Must be called after children were
+     * added, removed or replaced.
+     */
+    protected void onChildrenChanged() {
+        mChildItemCounts = null;
+        mCountTree = null;
+    }
+
+    private void ensureItemCountIndex() {
+        if (mChildItemCounts != null) return;
+
         List<TreeNode> children = getChildren();
-        int numItems = 0;
         int numChildren = children.size();
+        mChildItemCounts = new int[numChildren];
+        mCountTree = new int[numChildren + 1];
+        mItemCount = 0;
         for (int i = 0; i < numChildren; i++) {
-            numItems += children.get(i).getItemCount();
-            if (position < numItems) return i;
+            int count = children.get(i).getItemCount();
+            mChildItemCounts[i] = count;
+            mItemCount += count;
+
+            // Build the tree in linear time by pushing each partial sum to its parent.
+            int node = i + 1;
+            mCountTree[node] += count;
+            int parent = node + (node & -node);
+            if (parent <= numChildren) mCountTree[parent] += mCountTree[node];
+        }
+    }
+
+    /**
+     * Updates the index with the current item count of a child.
+     */
+    private void refreshChildItemCount(int childIndex) {
+        if (mChildItemCounts == null) return; // The index will be built with the new count.
+
+        int delta = getChildren().get(childIndex).getItemCount() - mChildItemCounts[childIndex];
+        if (delta == 0) return;
+        mChildItemCounts[childIndex] += delta;
+        mItemCount += delta;
+        for (int node = childIndex + 1; node < mCountTree.length; node += node & -node) {
+            mCountTree[node] += delta;
+        }
+    }
+
+    private int getChildIndexForPosition(int position) {
+        ensureItemCountIndex();
+        if (position >= mItemCount) return -1;
+
+        // Find the number of children whose items all come before the position, skipping
+        // children without items.
+        int childIndex = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(mChildItemCounts.length); step > 0; step >>= 1) {
+            int node = childIndex + step;
+            if (node < mCountTree.length && mCountTree[node] <= remaining) {
+                childIndex = node;
+                remaining -= mCountTree[node];
+            }
         }
-        return -1;
+        return childIndex;
     }
 
     private int getStartingOffsetForChildIndex(int childIndex) {
@@ -35,9 +99,10 @@ public abstract class InnerNode extends ChildNode implements NodeParent {
             throw new IndexOutOfBoundsException(childIndex + "/" + children.size());
         }
 
+        ensureItemCountIndex();
         int offset = 0;
-        for (int i = 0; i < childIndex; i++) {
-            offset += children.get(i).getItemCount();
+        for (int node = childIndex; node > 0; node -= node & -node) {
+            offset += mCountTree[node];
         }
         return offset;
     }
@@ -55,11 +120,8 @@ public abstract class InnerNode extends ChildNode implements NodeParent {
 
     @Override
     public int getItemCount() {
-        int numItems = 0;
-        for (TreeNode child : getChildren()) {
-            numItems += child.getItemCount();
-        }
-        return numItems;
+        ensureItemCountIndex();
+        return mItemCount;
     }
 
     @Override
@@ -98,11 +160,24 @@ public abstract class InnerNode extends ChildNode implements NodeParent {
 
     @Override
     public void onItemRangeInserted(TreeNode child, int index, int count) {
-        notifyItemRangeInserted(getStartingOffsetForChild(child) + index, count);
+        int childIndex = getChildren().indexOf(child);
+        int offset = getStartingOffsetForChildIndex(childIndex);
+        // Update the count before notifying, as the parents may ask for it.
+        refreshChildItemCount(childIndex);
+        notifyItemRangeInserted(offset + index, count);
     }
 
     @Override
     public void onItemRangeRemoved(TreeNode child, int index, int count) {
-        notifyItemRangeRemoved(getStartingOffsetForChild(child) + index, count);
+        int childIndex = getChildren().indexOf(child);
+        int offset = getStartingOffsetForChildIndex(childIndex);
+        refreshChildItemCount(childIndex);
+        notifyItemRangeRemoved(offset + index, count);
+    }
+
+    @Override
+    public void onItemMoved(TreeNode child, int fromIndex, int toIndex) {
+        int offset = getStartingOffsetForChild(child);
+        notifyItemMoved(offset + fromIndex, offset + toIndex);
     }
 }
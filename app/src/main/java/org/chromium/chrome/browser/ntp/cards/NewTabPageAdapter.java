@@ -26,6 +26,7 @@ import org.chromium.chrome.browser.ntp.snippets.CategoryStatus.CategoryStatusEnu
 import org.chromium.chrome.browser.ntp.snippets.SectionHeaderViewHolder;
 import org.chromium.chrome.browser.ntp.snippets.SnippetArticle;
 import org.chromium.chrome.browser.ntp.snippets.SnippetArticleViewHolder;
+import org.chromium.chrome.browser.ntp.snippets.SnippetThumbnailLoader;
 import org.chromium.chrome.browser.ntp.snippets.SnippetsBridge;
 import org.chromium.chrome.browser.ntp.snippets.SnippetsConfig;
 import org.chromium.chrome.browser.ntp.snippets.SuggestionsSource;
@@ -47,13 +48,20 @@ public class NewTabPageAdapter
         extends Adapter<NewTabPageViewHolder> implements SuggestionsSource.Observer, NodeParent {
     private static final String TAG = "Ntp";
 
+    /** Number of suggestions past the last bound one whose thumbnails are prefetched. */
+    private static final int THUMBNAIL_PREFETCH_COUNT = 4;
+
     private final NewTabPageManager mNewTabPageManager;
     private final View mAboveTheFoldView;
     private final UiConfig mUiConfig;
     private final ItemTouchCallbacks mItemTouchCallbacks = new ItemTouchCallbacks();
     private final OfflinePageBridge mOfflinePageBridge;
+    private final SnippetThumbnailLoader mThumbnailLoader;
     private NewTabPageRecyclerView mRecyclerView;
 
+    /** The position of the last bound item, used to tell which way the user is scrolling. */
+    private int mLastBoundPosition = RecyclerView.NO_POSITION;
+
     /**
      * List of all child nodes (which can themselves contain multiple child nodes).
      */
@@ -168,12 +176,28 @@ public class NewTabPageAdapter
                 if (mChildren.isEmpty()) return; // The sections have not been initialised yet.
                 super.onItemRangeRemoved(child, index, count);
             }
+
+            @Override
+            public void onItemMoved(TreeNode child, int fromIndex, int toIndex) {
+                if (mChildren.isEmpty()) return; // The sections have not been initialised yet.
+                super.onItemMoved(child, fromIndex, toIndex);
+            }
         };
 
         mSigninPromo = new SignInPromo(mRoot, this);
         DestructionObserver signInObserver = mSigninPromo.getObserver();
         if (signInObserver != null) mNewTabPageManager.addDestructionObserver(signInObserver);
 
+        mThumbnailLoader = new SnippetThumbnailLoader(mNewTabPageManager.getSuggestionsSource(),
+                aboveTheFoldView.getResources().getDimensionPixelSize(
+                        R.dimen.snippets_thumbnail_size));
+        mNewTabPageManager.addDestructionObserver(new DestructionObserver() {
+            @Override
+            public void onDestroy() {
+                mThumbnailLoader.destroy();
+            }
+        });
+
         resetSections(/*alwaysAllowEmptySections=*/false);
         mNewTabPageManager.getSuggestionsSource().setObserver(this);
     }
@@ -186,6 +210,7 @@ public class NewTabPageAdapter
     public void resetSections(boolean alwaysAllowEmptySections) {
         mSections.clear();
         mChildren.clear();
+        mRoot.onChildrenChanged();
 
         SuggestionsSource suggestionsSource = mNewTabPageManager.getSuggestionsSource();
         int[] categories = suggestionsSource.getCategories();
@@ -361,6 +386,34 @@ public class NewTabPageAdapter
     @Override
     public void onBindViewHolder(NewTabPageViewHolder holder, final int position) {
         mRoot.onBindViewHolder(holder, position);
+        prefetchThumbnails(position);
+    }
+
+    /**
+     * Prefetches the thumbnails of the suggestions that are likely to be bound next, i.e. the ones
+     * past the bound item in the direction the user is scrolling.
+     * @param position The position of the bound item.
+     */
+    private void prefetchThumbnails(int position) {
+        int step = position < mLastBoundPosition ? -1 : 1;
+        mLastBoundPosition = position;
+
+        List<SnippetArticle> suggestions = new ArrayList<>(THUMBNAIL_PREFETCH_COUNT);
+        int itemCount = getItemCount();
+        for (int i = position + step;
+                i >= 0 && i < itemCount && suggestions.size() < THUMBNAIL_PREFETCH_COUNT;
+                i += step) {
+            SnippetArticle suggestion = mRoot.getSuggestionAt(i);
+            if (suggestion != null) suggestions.add(suggestion);
+        }
+        mThumbnailLoader.prefetch(suggestions);
+    }
+
+    /**
+     * @return The loader of the thumbnails shown on the suggestion cards.
+     */
+    public SnippetThumbnailLoader getThumbnailLoader() {
+        return mThumbnailLoader;
     }
 
     @Override
@@ -431,6 +484,7 @@ public class NewTabPageAdapter
         mChildren.add(mSigninPromo);
         mChildren.add(hasAllBeenDismissed() ? mAllDismissed : mFooter);
         mChildren.add(mBottomSpacer);
+        mRoot.onChildrenChanged();
 
         // TODO(mvanouwerkerk): Notify about the subset of changed items. At least |mAboveTheFold|
         // has not changed when refreshing from the all dismissed state.
@@ -448,6 +502,7 @@ public class NewTabPageAdapter
             assert mChildren.contains(mAllDismissed);
             mChildren.set(mChildren.indexOf(mAllDismissed), mFooter);
         }
+        mRoot.onChildrenChanged();
         notifyItemChanged(getLastContentItemPosition());
     }
 
@@ -455,6 +510,7 @@ public class NewTabPageAdapter
         mSections.remove(section.getCategory());
         int startPos = getChildPositionOffset(section);
         mChildren.remove(section);
+        mRoot.onChildrenChanged();
         notifyItemRangeRemoved(startPos, section.getItemCount());
 
         updateAllDismissedVisibility();
@@ -486,6 +542,12 @@ public class NewTabPageAdapter
         updateAllDismissedVisibility();
     }
 
+    @Override
+    public void onItemMoved(TreeNode child, int fromPosition, int toPosition) {
+        assert child == mRoot;
+        notifyItemMoved(fromPosition, toPosition);
+    }
+
     @Override
     public void onAttachedToRecyclerView(RecyclerView recyclerView) {
         super.onAttachedToRecyclerView(recyclerView);
@@ -38,4 +38,14 @@ public interface NodeParent {
      * @see android.support.v7.widget.RecyclerView.Adapter#notifyItemRangeRemoved(int, int)
      */
     void onItemRangeRemoved(TreeNode child, int index, int count);
+
+    /**
+     * Notifies that the item at position {@code fromIndex} under the {@code child} has been moved
+     * to position {@code toIndex}.
+     * @param child The child whose item has been moved.
+     * @param fromIndex The previous position of the item, relative to the child.
+     * @param toIndex The new position of the item, relative to the child.
+     * @see android.support.v7.widget.RecyclerView.Adapter#notifyItemMoved(int, int)
+     */
+    void onItemMoved(TreeNode child, int fromIndex, int toIndex);
 }
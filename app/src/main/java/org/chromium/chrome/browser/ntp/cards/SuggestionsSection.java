@@ -21,7 +21,9 @@ import org.chromium.chrome.browser.offlinepages.OfflinePageItem;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A group of suggestions, with a header, a status card, and a progress indicator. This is
@@ -109,6 +111,55 @@ public class SuggestionsSection extends InnerNode {
             notifyItemRangeRemoved(0, itemCount);
         }
 
+        /**
+         * Replaces the suggestions, only notifying about the ones that were removed, inserted,
+         * moved or changed, so that the others don't get rebound. Suggestions are matched by
+         * {@link SnippetArticle#equals}, and a suggestion whose content didn't change keeps its
+         * current instance, along with e.g. its impression state.
+         * @param suggestions The new suggestions. Duplicates are dropped.
+         */
+        public void set(List<SnippetArticle> suggestions) {
+            Set<SnippetArticle> newSuggestions = new LinkedHashSet<>(suggestions);
+
+            // Remove the suggestions that are gone, one range at a time.
+            int rangeEnd = mSuggestions.size();
+            for (int i = mSuggestions.size() - 1; i >= -1; i--) {
+                if (i >= 0 && !newSuggestions.contains(mSuggestions.get(i))) continue;
+                if (rangeEnd > i + 1) {
+                    mSuggestions.subList(i + 1, rangeEnd).clear();
+                    notifyItemRangeRemoved(i + 1, rangeEnd - i - 1);
+                }
+                rangeEnd = i;
+            }
+
+            // Put each suggestion in place, moving the kept ones and inserting the new ones. The
+            // suggestions before |index| are already in place.
+            int index = 0;
+            for (SnippetArticle suggestion : newSuggestions) {
+                int currentIndex = mSuggestions.subList(index, mSuggestions.size())
+                        .indexOf(suggestion);
+                if (currentIndex == -1) {
+                    mSuggestions.add(index, suggestion);
+                    notifyItemInserted(index);
+                } else {
+                    currentIndex += index;
+                    if (currentIndex != index) {
+                        mSuggestions.add(index, mSuggestions.remove(currentIndex));
+                        notifyItemMoved(currentIndex, index);
+                    }
+                    SnippetArticle current = mSuggestions.get(index);
+                    if (current.hasSameContent(suggestion)) {
+                        current.mGlobalPosition = suggestion.mGlobalPosition;
+                    } else {
+                        mSuggestions.set(index, suggestion);
+                        notifyItemChanged(index);
+                    }
+                }
+                index++;
+            }
+            assert index == mSuggestions.size();
+        }
+
         public void addAll(List<SnippetArticle> suggestions) {
             if (suggestions.isEmpty()) return;
 
@@ -137,6 +188,7 @@ public class SuggestionsSection extends InnerNode {
 
         mChildren.add(mMoreButton); // Needs to be refreshed when the suggestions change.
         mChildren.add(mProgressIndicator); // Needs to be refreshed when the suggestions change.
+        onChildrenChanged();
         refreshChildrenVisibility();
     }
 
@@ -215,7 +267,19 @@ public class SuggestionsSection extends InnerNode {
     }
 
     public void addSuggestions(List<SnippetArticle> suggestions, @CategoryStatusEnum int status) {
-        if (!SnippetsBridge.isCategoryStatusAvailable(status)) mSuggestionsList.clear();
+        if (!SnippetsBridge.isCategoryStatusAvailable(status)) {
+            // The suggestions replace the current ones, but the ones that are still there don't
+            // need to be removed and inserted again.
+            mSuggestionsList.set(suggestions);
+            mProgressIndicator.setVisible(SnippetsBridge.isCategoryLoading(status));
+            for (SnippetArticle article : mSuggestionsList) {
+                if (!article.requiresExactOfflinePage()) {
+                    updateSnippetOfflineAvailability(article);
+                }
+            }
+            refreshChildrenVisibility();
+            return;
+        }
         mProgressIndicator.setVisible(SnippetsBridge.isCategoryLoading(status));
 
         Log.d(TAG, "addSuggestions: current number of suggestions: %d",
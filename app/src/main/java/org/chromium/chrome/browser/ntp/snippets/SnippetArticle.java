@@ -3,8 +3,8 @@
 // found in the LICENSE file.
 package org.chromium.chrome.browser.ntp.snippets;
 
-import android.graphics.Bitmap;
 import android.support.annotation.Nullable;
+import android.text.TextUtils;
 
 import org.chromium.chrome.browser.ntp.snippets.ContentSuggestionsCardLayout.ContentSuggestionsCardLayoutEnum;
 
@@ -51,9 +51,6 @@ public class SnippetArticle {
     @ContentSuggestionsCardLayoutEnum
     public final int mCardLayout;
 
-    /** Bitmap of the thumbnail, fetched lazily, when the RecyclerView wants to show the snippet. */
-    private Bitmap mThumbnailBitmap;
-
     /** Stores whether impression of this article has been tracked already. */
     private boolean mImpressionTracked;
 
@@ -110,16 +107,31 @@ public class SnippetArticle {
     }
 
     /**
-     * Returns this article's thumbnail as a {@link Bitmap}. Can return {@code null} as it is
-     * initially unset.
+     * @param other An article equal to this one, i.e. with the same category and ID.
+     * @return Whether the other article also has the same content, i.e. would be displayed and
+     *         reported in the same way.
      */
-    public Bitmap getThumbnailBitmap() {
-        return mThumbnailBitmap;
-    }
-
-    /** Sets the thumbnail bitmap for this article. */
-    public void setThumbnailBitmap(Bitmap bitmap) {
-        mThumbnailBitmap = bitmap;
+    public boolean hasSameContent(SnippetArticle other) {
+        assert equals(other);
+        return TextUtils.equals(mTitle, other.mTitle)
+                && TextUtils.equals(mPublisher, other.mPublisher)
+                && TextUtils.equals(mPreviewText, other.mPreviewText)
+                && TextUtils.equals(mUrl, other.mUrl)
+                && TextUtils.equals(mAmpUrl, other.mAmpUrl)
+                && mPublishTimestampMilliseconds == other.mPublishTimestampMilliseconds
+                && mScore == other.mScore && mPosition == other.mPosition
+                && mCardLayout == other.mCardLayout
+                && mIsDownloadedAsset == other.mIsDownloadedAsset
+                && TextUtils.equals(mDownloadAssetPath, other.mDownloadAssetPath)
+                && TextUtils.equals(mDownloadAssetMimeType, other.mDownloadAssetMimeType)
+                && TextUtils.equals(mRecentTabId, other.mRecentTabId)
+                // The offline page of other articles is looked up by URL once they are shown.
+                && (!requiresExactOfflinePage()
+                        || isSameOfflineId(mOfflinePageOfflineId, other.mOfflinePageOfflineId));
+    }
+
+    private static boolean isSameOfflineId(@Nullable Long id, @Nullable Long otherId) {
+        return id == null ? otherId == null : id.equals(otherId);
     }
 
     /** Returns whether to track an impression for this article. */
@@ -5,12 +5,10 @@
 package org.chromium.chrome.browser.ntp.snippets;
 
 import android.annotation.SuppressLint;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
-import android.media.ThumbnailUtils;
 import android.os.StrictMode;
 import android.os.SystemClock;
 import android.support.v4.text.BidiFormatter;
@@ -226,16 +224,19 @@ public class SnippetArticleViewHolder
         // If there's still a pending thumbnail fetch, cancel it.
         cancelImageFetch();
 
-        // If the article has a thumbnail already, reuse it. Otherwise start a fetch.
-        // mThumbnailView's visibility is modified in updateLayout().
+        // If the thumbnail of the article is in memory already, reuse it. Otherwise load it, or
+        // wait for its prefetch to finish. mThumbnailView's visibility is modified in
+        // updateLayout().
         if (mThumbnailView.getVisibility() == View.VISIBLE) {
-            if (mArticle.getThumbnailBitmap() != null) {
-                mThumbnailView.setImageBitmap(mArticle.getThumbnailBitmap());
+            SnippetThumbnailLoader thumbnailLoader =
+                    mRecyclerView.getNewTabPageAdapter().getThumbnailLoader();
+            Bitmap thumbnail = thumbnailLoader.getCachedThumbnail(mArticle);
+            if (thumbnail != null) {
+                mThumbnailView.setImageBitmap(thumbnail);
             } else {
                 mThumbnailView.setImageResource(R.drawable.ic_snippet_thumbnail_placeholder);
-                mImageCallback = new FetchImageCallback(this, mArticle);
-                mNewTabPageManager.getSuggestionsSource()
-                        .fetchSuggestionImage(mArticle, mImageCallback);
+                mImageCallback = new FetchImageCallback(this, thumbnailLoader, mArticle);
+                thumbnailLoader.load(mArticle, mImageCallback);
             }
         }
 
@@ -265,22 +266,24 @@ public class SnippetArticleViewHolder
 
     private static class FetchImageCallback extends Callback<Bitmap> {
         private SnippetArticleViewHolder mViewHolder;
+        private final SnippetThumbnailLoader mThumbnailLoader;
         private final SnippetArticle mSnippet;
 
-        public FetchImageCallback(
-                SnippetArticleViewHolder viewHolder, SnippetArticle snippet) {
+        public FetchImageCallback(SnippetArticleViewHolder viewHolder,
+                SnippetThumbnailLoader thumbnailLoader, SnippetArticle snippet) {
             mViewHolder = viewHolder;
+            mThumbnailLoader = thumbnailLoader;
             mSnippet = snippet;
         }
 
         @Override
         public void onResult(Bitmap image) {
             if (mViewHolder == null) return;
-            mViewHolder.fadeThumbnailIn(mSnippet, image);
+            mViewHolder.fadeThumbnailIn(image);
         }
 
         public void cancel() {
-            // TODO(treib): Pass the "cancel" on to the actual image fetcher.
+            mThumbnailLoader.cancel(mSnippet, this);
             mViewHolder = null;
         }
     }
@@ -292,24 +295,15 @@ public class SnippetArticleViewHolder
         }
     }
 
-    private void fadeThumbnailIn(SnippetArticle snippet, Bitmap thumbnail) {
+    private void fadeThumbnailIn(Bitmap thumbnail) {
         mImageCallback = null;
         if (thumbnail == null) return; // Nothing to do, we keep the placeholder.
 
-        // We need to crop and scale the downloaded bitmap, as the ImageView we set it on won't be
-        // able to do so when using a TransitionDrawable (as opposed to the straight bitmap).
-        // That's a limitation of TransitionDrawable, which doesn't handle layers of varying sizes.
-        Resources res = mThumbnailView.getResources();
-        int targetSize = res.getDimensionPixelSize(R.dimen.snippets_thumbnail_size);
-        Bitmap scaledThumbnail = ThumbnailUtils.extractThumbnail(
-                thumbnail, targetSize, targetSize, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
-
-        // Store the bitmap to skip the download task next time we display this snippet.
-        snippet.setThumbnailBitmap(scaledThumbnail);
-
-        // Cross-fade between the placeholder and the thumbnail.
+        // Cross-fade between the placeholder and the thumbnail. The loader already cropped and
+        // scaled the thumbnail to the size of the view, as TransitionDrawable doesn't handle
+        // layers of varying sizes.
         Drawable[] layers = {mThumbnailView.getDrawable(),
-                new BitmapDrawable(mThumbnailView.getResources(), scaledThumbnail)};
+                new BitmapDrawable(mThumbnailView.getResources(), thumbnail)};
         TransitionDrawable transitionDrawable = new TransitionDrawable(layers);
         mThumbnailView.setImageDrawable(transitionDrawable);
         transitionDrawable.startTransition(FADE_IN_ANIMATION_TIME_MS);
@@ -0,0 +1,188 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.ntp.snippets;
+
+import android.graphics.Bitmap;
+import android.media.ThumbnailUtils;
+import android.os.AsyncTask;
+import android.util.LruCache;
+
+import org.chromium.base.Callback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the thumbnails of the suggestions shown on the New Tab Page, scaled to the size of the
+ * cards, and keeps them in a memory cache keyed by suggestion ID and URL, so that a suggestion
+ * whose content changes under the same ID gets its new thumbnail.
+ *
+ * Thumbnails needed by the cards being bound are fetched right away.  Thumbnails of the
+ * suggestions expected to be bound next can be prefetched: a few of them are fetched at a time,
+ * and the ones that are no longer expected when a fetch slot frees up are dropped.  Fetched images
+ * are scaled on a background thread.  This class must be used on the UI thread.
+ */
+public class SnippetThumbnailLoader {
+    /** Maximum size of the scaled thumbnails kept in memory. */
+    private static final int CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    /** Maximum number of fetches in progress for which prefetches still start. */
+    private static final int MAX_CONCURRENT_FETCHES = 2;
+
+    private final SuggestionsSource mSuggestionsSource;
+    private final int mThumbnailSizePx;
+    private final LruCache<String, Bitmap> mCache =
+            new LruCache<String, Bitmap>(CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap thumbnail) {
+                    return thumbnail.getByteCount();
+                }
+            };
+
+    // Fetches in progress, keyed like the cache.
+    private final Map<String, Fetch> mFetches = new HashMap<>();
+    // Suggestions whose thumbnails should be prefetched, most expected first.
+    private final List<SnippetArticle> mPrefetchQueue = new ArrayList<>();
+    private boolean mIsDestroyed;
+
+    /**
+     * @param suggestionsSource The source to fetch the thumbnails from.
+     * @param thumbnailSizePx   The width and height of the thumbnails shown on the cards.
+     */
+    public SnippetThumbnailLoader(SuggestionsSource suggestionsSource, int thumbnailSizePx) {
+        mSuggestionsSource = suggestionsSource;
+        mThumbnailSizePx = thumbnailSizePx;
+    }
+
+    /**
+     * @param suggestion The suggestion.
+     * @return The scaled thumbnail of the suggestion if it is in memory, null otherwise.
+     */
+    public Bitmap getCachedThumbnail(SnippetArticle suggestion) {
+        return mCache.get(getKey(suggestion));
+    }
+
+    /**
+     * Loads the thumbnail of a suggestion, if it isn't in memory already.
+     * @param suggestion The suggestion.
+     * @param callback   Called with the scaled thumbnail, or null if there is no thumbnail.
+     */
+    public void load(SnippetArticle suggestion, Callback<Bitmap> callback) {
+        Fetch fetch = mFetches.get(getKey(suggestion));
+        if (fetch == null) {
+            mPrefetchQueue.remove(suggestion);
+            fetch = startFetch(suggestion);
+        }
+        fetch.mCallbacks.add(callback);
+    }
+
+    /**
+     * Stops waiting for a thumbnail requested with {@link #load}.  The fetch itself can't be
+     * cancelled, but its result will only be cached.
+     */
+    public void cancel(SnippetArticle suggestion, Callback<Bitmap> callback) {
+        Fetch fetch = mFetches.get(getKey(suggestion));
+        if (fetch != null) fetch.mCallbacks.remove(callback);
+    }
+
+    /**
+     * Sets the suggestions whose thumbnails should be prefetched, replacing the ones previously
+     * set that didn't start being fetched yet.
+     * @param suggestions The suggestions, most likely to be shown next first.
+     */
+    public void prefetch(List<SnippetArticle> suggestions) {
+        mPrefetchQueue.clear();
+        for (SnippetArticle suggestion : suggestions) {
+            if (suggestion.mCardLayout == ContentSuggestionsCardLayout.MINIMAL_CARD) continue;
+            String key = getKey(suggestion);
+            if (mFetches.containsKey(key) || mCache.get(key) != null) continue;
+            mPrefetchQueue.add(suggestion);
+        }
+        startPrefetches();
+    }
+
+    /**
+     * Stops all fetches and drops the cached thumbnails. Must be called when the New Tab Page is
+     * destroyed, as the suggestions source can't be used afterwards.
+     */
+    public void destroy() {
+        mIsDestroyed = true;
+        mPrefetchQueue.clear();
+        mFetches.clear();
+        mCache.evictAll();
+    }
+
+    private void startPrefetches() {
+        while (!mIsDestroyed && mFetches.size() < MAX_CONCURRENT_FETCHES
+                && !mPrefetchQueue.isEmpty()) {
+            startFetch(mPrefetchQueue.remove(0));
+        }
+    }
+
+    private Fetch startFetch(SnippetArticle suggestion) {
+        Fetch fetch = new Fetch(suggestion);
+        if (mIsDestroyed) return fetch;
+
+        mFetches.put(fetch.mKey, fetch);
+        mSuggestionsSource.fetchSuggestionImage(suggestion, fetch);
+        return fetch;
+    }
+
+    private void onFetchFinished(Fetch fetch, Bitmap thumbnail) {
+        if (mFetches.get(fetch.mKey) != fetch) return;
+        mFetches.remove(fetch.mKey);
+
+        if (thumbnail != null) mCache.put(fetch.mKey, thumbnail);
+        for (Callback<Bitmap> callback : fetch.mCallbacks) {
+            callback.onResult(thumbnail);
+        }
+        startPrefetches();
+    }
+
+    /**
+     * @return The key of the thumbnail of a suggestion in the cache.  Suggestions are only equal
+     *         by category and ID, so the URL is part of the key as well.
+     */
+    private static String getKey(SnippetArticle suggestion) {
+        return suggestion.mCategory + ":" + suggestion.mIdWithinCategory + ":" + suggestion.mUrl;
+    }
+
+    /**
+     * A fetch of the thumbnail of a suggestion, with the callbacks waiting for it.
+     */
+    private class Fetch extends Callback<Bitmap> {
+        private final String mKey;
+        private final List<Callback<Bitmap>> mCallbacks = new ArrayList<>();
+
+        public Fetch(SnippetArticle suggestion) {
+            mKey = getKey(suggestion);
+        }
+
+        @Override
+        public void onResult(final Bitmap image) {
+            if (image == null) {
+                onFetchFinished(this, null);
+                return;
+            }
+
+            // Crop and scale the image to the size of the cards, as they can't do it when fading
+            // the thumbnail in.
+            new AsyncTask<Void, Void, Bitmap>() {
+                @Override
+                protected Bitmap doInBackground(Void... params) {
+                    return ThumbnailUtils.extractThumbnail(image, mThumbnailSizePx,
+                            mThumbnailSizePx, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+                }
+
+                @Override
+                protected void onPostExecute(Bitmap thumbnail) {
+                    onFetchFinished(Fetch.this, thumbnail);
+                }
+            }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    }
+}
@@ -39,16 +39,17 @@ import org.chromium.content.browser.BrowserStartupController;
 import org.chromium.content.browser.BrowserStartupController.StartupCallback;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * This class stores URLs which are discovered by scanning for Physical Web beacons, and updates a
@@ -70,17 +71,37 @@ class UrlManager {
     private static final String PREFS_PWS_RESULTS_KEY = "physicalweb_pws_results";
     private static final String PREFS_NOTIFICATION_UPDATE_TIMESTAMP =
             "physicalweb_notification_update_timestamp";
-    private static final int PREFS_VERSION = 4;
+    private static final int PREFS_VERSION = 5;
+    // The cache is kept in its own preferences file, with an entry per URL and per PWS result, so
+    // that a change only writes the entries it affects.
+    private static final String CACHE_PREFS_NAME = "physicalweb_cache";
+    private static final String CACHE_URL_INFO_KEY_PREFIX = "url_info:";
+    private static final String CACHE_PWS_RESULT_KEY_PREFIX = "pws_result:";
     private static final long STALE_NOTIFICATION_TIMEOUT_MILLIS = 30 * 60 * 1000;  // 30 Minutes
     private static final long MAX_CACHE_TIME = 24 * 60 * 60 * 1000;  // 1 Day
     private static final int MAX_CACHE_SIZE = 100;
+    // URLs found within this time of each other are resolved with a single PWS request.
+    private static final long RESOLVE_BATCH_DELAY_MILLIS = 500;
+    private static final int MAX_RESOLVE_BATCH_SIZE = 20;
     private static UrlManager sInstance = null;
     private final Context mContext;
     private final ObserverList<Listener> mObservers;
     private final Set<String> mNearbyUrls;
     private final Map<String, UrlInfo> mUrlInfoMap;
     private final Map<String, PwsResult> mPwsResultMap;
-    private final PriorityQueue<String> mUrlsSortedByTimestamp;
+    // The URLs of mUrlInfoMap, sorted by scan timestamp and then by URL.  A URL must be removed
+    // from here before its timestamp changes or its UrlInfo is removed.
+    private final TreeSet<String> mUrlsSortedByTimestamp;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // URLs waiting to be resolved, keyed by URL.  URLs can be found on any thread, so this is
+    // guarded by itself.
+    private final Map<String, UrlInfo> mUrlsToResolve = new LinkedHashMap<>();
+    private final Runnable mResolveUrlsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            resolvePendingUrls();
+        }
+    };
     private NotificationManagerProxy mNotificationManager;
     private PwsClient mPwsClient;
     private long mNativePhysicalWebDataSourceAndroid;
@@ -111,12 +132,15 @@ class UrlManager {
         mNearbyUrls = new HashSet<>();
         mUrlInfoMap = new HashMap<>();
         mPwsResultMap = new HashMap<>();
-        mUrlsSortedByTimestamp = new PriorityQueue<String>(1, new Comparator<String>() {
+        mUrlsSortedByTimestamp = new TreeSet<String>(new Comparator<String>() {
             @Override
             public int compare(String url1, String url2) {
-                Long scanTimestamp1 = Long.valueOf(mUrlInfoMap.get(url1).getScanTimestamp());
-                Long scanTimestamp2 = Long.valueOf(mUrlInfoMap.get(url2).getScanTimestamp());
-                return scanTimestamp1.compareTo(scanTimestamp2);
+                long scanTimestamp1 = mUrlInfoMap.get(url1).getScanTimestamp();
+                long scanTimestamp2 = mUrlInfoMap.get(url2).getScanTimestamp();
+                if (scanTimestamp1 != scanTimestamp2) {
+                    return scanTimestamp1 < scanTimestamp2 ? -1 : 1;
+                }
+                return url1.compareTo(url2);
             }
         });
         initSharedPreferences();
@@ -170,7 +194,6 @@ class UrlManager {
         Log.d(TAG, "URL found: %s", urlInfo);
         urlInfo = updateCacheEntry(urlInfo);
         garbageCollect();
-        putCachedUrlInfoMap();
 
         recordUpdate();
 
@@ -179,6 +202,7 @@ class UrlManager {
         if (!mUrlInfoMap.containsKey(urlInfo.getUrl())) {
             return;
         }
+        putCachedUrlInfo(urlInfo);
 
         if (mNearbyUrls.contains(urlInfo.getUrl())) {
             // The URL has been seen before. Notify listeners with the new distance estimate.
@@ -305,12 +329,15 @@ class UrlManager {
      * Forget all stored URLs and clear the notification.
      */
     public void clearAllUrls() {
+        synchronized (mUrlsToResolve) {
+            mUrlsToResolve.clear();
+            mHandler.removeCallbacks(mResolveUrlsRunnable);
+        }
         clearNearbyUrls();
         mUrlsSortedByTimestamp.clear();
         mUrlInfoMap.clear();
         mPwsResultMap.clear();
-        putCachedUrlInfoMap();
-        putCachedPwsResultMap();
+        getCachePreferences().edit().clear().apply();
     }
 
     /**
@@ -362,7 +389,7 @@ class UrlManager {
         }
 
         mPwsResultMap.put(pwsResult.requestUrl, pwsResult);
-        putCachedPwsResultMap();
+        putCachedPwsResult(pwsResult);
 
         if (!mNearbyUrls.contains(pwsResult.requestUrl)
                 || !mUrlInfoMap.containsKey(pwsResult.requestUrl)) {
@@ -373,8 +400,11 @@ class UrlManager {
 
     private void removeResolvedUrl(UrlInfo url) {
         Log.d(TAG, "PWS unresolved: %s", url);
-        mPwsResultMap.remove(url.getUrl());
-        putCachedPwsResultMap();
+        if (mPwsResultMap.remove(url.getUrl()) != null) {
+            getCachePreferences().edit()
+                    .remove(CACHE_PWS_RESULT_KEY_PREFIX + url.getUrl())
+                    .apply();
+        }
 
         // If there are no URLs nearby to display, clear the notification.
         if (getUrls(PhysicalWeb.isOnboarding()).isEmpty()) {
@@ -386,6 +416,10 @@ class UrlManager {
         // Check the version.
         final SharedPreferences prefs = ContextUtils.getAppSharedPreferences();
         if (prefs.getInt(PREFS_VERSION_KEY, 0) != PREFS_VERSION) {
+            // Clear the cache right away rather than in the task below, which could wipe entries
+            // written in the meantime.  apply() updates the preferences in memory synchronously, so
+            // the entries written from now on are kept.
+            getCachePreferences().edit().clear().apply();
             new AsyncTask<Void, Void, Void>() {
                 @Override
                 protected Void doInBackground(Void... params) {
@@ -393,6 +427,9 @@ class UrlManager {
                             .putInt(PREFS_VERSION_KEY, PREFS_VERSION)
                             // This clean up code can be deleted in m57.
                             .remove("physicalweb_resolved_urls")
+                            // The cache used to be serialized as a whole into these.
+                            .remove(PREFS_ALL_URLS_KEY)
+                            .remove(PREFS_PWS_RESULTS_KEY)
                             .apply();
                     return null;
                 }
@@ -402,63 +439,61 @@ class UrlManager {
 
         // Read the cache.
         mNearbyUrls.addAll(prefs.getStringSet(PREFS_NEARBY_URLS_KEY, new HashSet<String>()));
-        for (String serializedUrl : prefs.getStringSet(PREFS_ALL_URLS_KEY, new HashSet<String>())) {
-            try {
-                JSONObject jsonObject = new JSONObject(serializedUrl);
-                UrlInfo urlInfo = UrlInfo.jsonDeserialize(jsonObject);
-                mUrlInfoMap.put(urlInfo.getUrl(), urlInfo);
-                mUrlsSortedByTimestamp.add(urlInfo.getUrl());
-            } catch (JSONException e) {
-                Log.e(TAG, "Could not deserialize UrlInfo", e);
-            }
-        }
-        for (String serializedPwsResult : prefs.getStringSet(PREFS_PWS_RESULTS_KEY,
-                new HashSet<String>())) {
+        for (Map.Entry<String, ?> entry : getCachePreferences().getAll().entrySet()) {
+            String key = entry.getKey();
+            if (!(entry.getValue() instanceof String)) continue;
             try {
-                JSONObject jsonObject = new JSONObject(serializedPwsResult);
-                PwsResult pwsResult = PwsResult.jsonDeserialize(jsonObject);
-                mPwsResultMap.put(pwsResult.requestUrl, pwsResult);
+                JSONObject jsonObject = new JSONObject((String) entry.getValue());
+                if (key.startsWith(CACHE_URL_INFO_KEY_PREFIX)) {
+                    UrlInfo urlInfo = UrlInfo.jsonDeserialize(jsonObject);
+                    mUrlInfoMap.put(urlInfo.getUrl(), urlInfo);
+                    mUrlsSortedByTimestamp.add(urlInfo.getUrl());
+                } else if (key.startsWith(CACHE_PWS_RESULT_KEY_PREFIX)) {
+                    PwsResult pwsResult = PwsResult.jsonDeserialize(jsonObject);
+                    mPwsResultMap.put(pwsResult.requestUrl, pwsResult);
+                }
             } catch (JSONException e) {
-                Log.e(TAG, "Could not deserialize PwsResult", e);
+                Log.e(TAG, "Could not deserialize cache entry %s", key, e);
             }
         }
         garbageCollect();
     }
 
+    private static SharedPreferences getCachePreferences() {
+        return ContextUtils.getApplicationContext().getSharedPreferences(
+                CACHE_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
     private void setStringSetInSharedPreferences(String preferenceName, Set<String> urls) {
         ContextUtils.getAppSharedPreferences().edit()
                 .putStringSet(preferenceName, urls)
                 .apply();
     }
 
-    private void putCachedUrlInfoMap() {
-        Set<String> serializedUrls = new HashSet<>();
-        for (UrlInfo url : mUrlInfoMap.values()) {
-            try {
-                serializedUrls.add(url.jsonSerialize().toString());
-            } catch (JSONException e) {
-                Log.e(TAG, "Could not serialize UrlInfo", e);
-            }
+    private void putCachedUrlInfo(UrlInfo urlInfo) {
+        try {
+            getCachePreferences().edit()
+                    .putString(CACHE_URL_INFO_KEY_PREFIX + urlInfo.getUrl(),
+                            urlInfo.jsonSerialize().toString())
+                    .apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not serialize UrlInfo", e);
         }
-
-        setStringSetInSharedPreferences(PREFS_ALL_URLS_KEY, serializedUrls);
     }
 
     private void putCachedNearbyUrls() {
         setStringSetInSharedPreferences(PREFS_NEARBY_URLS_KEY, mNearbyUrls);
     }
 
-    private void putCachedPwsResultMap() {
-        Set<String> serializedPwsResults = new HashSet<>();
-        for (PwsResult pwsResult : mPwsResultMap.values()) {
-            try {
-                serializedPwsResults.add(pwsResult.jsonSerialize().toString());
-            } catch (JSONException e) {
-                Log.e(TAG, "Could not serialize PwsResult", e);
-            }
+    private void putCachedPwsResult(PwsResult pwsResult) {
+        try {
+            getCachePreferences().edit()
+                    .putString(CACHE_PWS_RESULT_KEY_PREFIX + pwsResult.requestUrl,
+                            pwsResult.jsonSerialize().toString())
+                    .apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not serialize PwsResult", e);
         }
-
-        setStringSetInSharedPreferences(PREFS_PWS_RESULTS_KEY, serializedPwsResults);
     }
 
     private PendingIntent createListUrlsIntent() {
@@ -496,25 +531,64 @@ class UrlManager {
         return currentUrlInfo;
     }
 
-    private void resolveUrl(final UrlInfo url) {
-        Set<UrlInfo> urls = new HashSet<UrlInfo>(Arrays.asList(url));
+    /**
+     * Queues a URL to be resolved by the PWS.  Beacons are often found in bursts, so the URLs
+     * found within a short time of each other are resolved together, in as few requests as
+     * possible.
+     * @param url The URL to resolve.
+     */
+    private void resolveUrl(UrlInfo url) {
+        synchronized (mUrlsToResolve) {
+            boolean isBatchStarting = mUrlsToResolve.isEmpty();
+            mUrlsToResolve.put(url.getUrl(), url);
+            if (mUrlsToResolve.size() >= MAX_RESOLVE_BATCH_SIZE) {
+                // Don't wait for the batch to fill past what a single request can hold.
+                mHandler.removeCallbacks(mResolveUrlsRunnable);
+                mHandler.post(mResolveUrlsRunnable);
+            } else if (isBatchStarting) {
+                mHandler.postDelayed(mResolveUrlsRunnable, RESOLVE_BATCH_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private void resolvePendingUrls() {
+        List<UrlInfo> urls;
+        synchronized (mUrlsToResolve) {
+            urls = new ArrayList<>(mUrlsToResolve.values());
+            mUrlsToResolve.clear();
+            mHandler.removeCallbacks(mResolveUrlsRunnable);
+        }
+        for (int start = 0; start < urls.size(); start += MAX_RESOLVE_BATCH_SIZE) {
+            resolveUrls(urls.subList(start, Math.min(start + MAX_RESOLVE_BATCH_SIZE, urls.size())));
+        }
+    }
+
+    private void resolveUrls(final List<UrlInfo> urls) {
         final long timestamp = SystemClock.elapsedRealtime();
         mPwsClient.resolve(urls, new PwsClient.ResolveScanCallback() {
             @Override
             public void onPwsResults(final Collection<PwsResult> pwsResults) {
                 long duration = SystemClock.elapsedRealtime() - timestamp;
                 PhysicalWebUma.onBackgroundPwsResolution(mContext, duration);
-                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                mHandler.post(new Runnable() {
                     @Override
                     public void run() {
+                        // The PWS may change the case of the URLs it was sent.
+                        Map<String, PwsResult> resultsByUrl = new HashMap<>();
                         for (PwsResult pwsResult : pwsResults) {
-                            String requestUrl = pwsResult.requestUrl;
-                            if (url.getUrl().equalsIgnoreCase(requestUrl)) {
+                            if (pwsResult.requestUrl == null) continue;
+                            resultsByUrl.put(
+                                    pwsResult.requestUrl.toLowerCase(Locale.US), pwsResult);
+                        }
+                        for (UrlInfo url : urls) {
+                            PwsResult pwsResult =
+                                    resultsByUrl.get(url.getUrl().toLowerCase(Locale.US));
+                            if (pwsResult != null) {
                                 addResolvedUrl(pwsResult);
-                                return;
+                            } else {
+                                removeResolvedUrl(url);
                             }
                         }
-                        removeResolvedUrl(url);
                     }
                 });
             }
@@ -660,11 +734,13 @@ class UrlManager {
         // Show a notification and mark the URL as displayed.
         showNotification();
         urlInfo.setHasBeenDisplayed();
+        if (mUrlInfoMap.get(urlInfo.getUrl()) == urlInfo) putCachedUrlInfo(urlInfo);
     }
 
     private void garbageCollect() {
-        for (String url = mUrlsSortedByTimestamp.peek(); url != null;
-                url = mUrlsSortedByTimestamp.peek()) {
+        SharedPreferences.Editor editor = null;
+        while (!mUrlsSortedByTimestamp.isEmpty()) {
+            String url = mUrlsSortedByTimestamp.first();
             UrlInfo urlInfo = mUrlInfoMap.get(url);
             if ((System.currentTimeMillis() - urlInfo.getScanTimestamp() <= MAX_CACHE_TIME
                     && mUrlsSortedByTimestamp.size() <= MAX_CACHE_SIZE)
@@ -673,12 +749,14 @@ class UrlManager {
                 break;
             }
             Log.d(TAG, "Garbage collecting: ", urlInfo);
-            // The min value cannot have changed at this point, so it's OK to just remove via
-            // poll().
-            mUrlsSortedByTimestamp.poll();
+            mUrlsSortedByTimestamp.pollFirst();
             mUrlInfoMap.remove(url);
             mPwsResultMap.remove(url);
+            if (editor == null) editor = getCachePreferences().edit();
+            editor.remove(CACHE_URL_INFO_KEY_PREFIX + url)
+                    .remove(CACHE_PWS_RESULT_KEY_PREFIX + url);
         }
+        if (editor != null) editor.apply();
     }
 
     /**
@@ -794,6 +872,7 @@ class UrlManager {
                 .remove(PREFS_NOTIFICATION_UPDATE_TIMESTAMP)
                 .remove(PREFS_PWS_RESULTS_KEY)
                 .apply();
+        getCachePreferences().edit().clear().apply();
     }
 
     @VisibleForTesting
@@ -810,8 +889,7 @@ class UrlManager {
     boolean containsInAnyCache(String url) {
         return mNearbyUrls.contains(url)
                 || mPwsResultMap.containsKey(url)
-                || mUrlInfoMap.containsKey(url)
-                || mUrlsSortedByTimestamp.contains(url);
+                || mUrlInfoMap.containsKey(url);
     }
 
     @VisibleForTesting
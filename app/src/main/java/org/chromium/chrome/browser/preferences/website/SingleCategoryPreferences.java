@@ -118,7 +118,14 @@ public class SingleCategoryPreferences extends PreferenceFragment
         }
     }
 
-    private class ResultsPopulator implements WebsitePermissionsFetcher.WebsitePermissionsCallback {
+    private class ResultsPopulator
+            implements WebsitePermissionsFetcher.WebsitePermissionsProgressCallback {
+        @Override
+        public void onPartialWebsitePermissionsAvailable(Collection<Website> sites) {
+            // Show the sites with permissions while their storage info is being fetched.
+            onWebsitePermissionsAvailable(sites);
+        }
+
         @Override
         public void onWebsitePermissionsAvailable(Collection<Website> sites) {
             // This method may be called after the activity has been destroyed.
@@ -12,7 +12,7 @@ import org.chromium.chrome.browser.ContentSettingsType;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,6 +28,14 @@ public class WebsitePermissionsFetcher {
         void onWebsitePermissionsAvailable(Collection<Website> sites);
     }
 
+    /**
+     * A callback that is also run with the websites fetched so far, when the permissions have been
+     * fetched but the storage info is still being fetched.
+     */
+    public interface WebsitePermissionsProgressCallback extends WebsitePermissionsCallback {
+        void onPartialWebsitePermissionsAvailable(Collection<Website> sites);
+    }
+
     // This map looks up Websites by their origin and embedder.
     private final Map<Pair<WebsiteAddress, WebsiteAddress>, Website> mSites = new HashMap<>();
 
@@ -47,43 +55,41 @@ public class WebsitePermissionsFetcher {
      * sites from the same origin as that of |url| - https://crbug.com/459222.
      */
     public void fetchAllPreferences() {
-        TaskQueue queue = new TaskQueue();
-        // Populate features from more specific to less specific.
+        TaskRunner runner = new TaskRunner();
+        // Start the asynchronous fetches first, so that they overlap with the synchronous ones.
+        // Local storage info is per-origin.
+        runner.add(new LocalStorageInfoFetcher());
+        // Website storage is per-host.
+        runner.add(new WebStorageInfoFetcher());
         // Geolocation lookup permission is per-origin and per-embedder.
-        queue.add(new GeolocationInfoFetcher());
+        runner.add(new GeolocationInfoFetcher());
         // Midi sysex access permission is per-origin and per-embedder.
-        queue.add(new MidiInfoFetcher());
+        runner.add(new MidiInfoFetcher());
         // Cookies are stored per-host.
-        queue.add(new CookieExceptionInfoFetcher());
+        runner.add(new CookieExceptionInfoFetcher());
         // Keygen permissions are per-origin.
-        queue.add(new KeygenInfoFetcher());
-        // Local storage info is per-origin.
-        queue.add(new LocalStorageInfoFetcher());
-        // Website storage is per-host.
-        queue.add(new WebStorageInfoFetcher());
+        runner.add(new KeygenInfoFetcher());
         // Popup exceptions are host-based patterns (unless we start
         // synchronizing popup exceptions with desktop Chrome).
-        queue.add(new PopupExceptionInfoFetcher());
+        runner.add(new PopupExceptionInfoFetcher());
         // JavaScript exceptions are host-based patterns.
-        queue.add(new JavaScriptExceptionInfoFetcher());
+        runner.add(new JavaScriptExceptionInfoFetcher());
         // Protected media identifier permission is per-origin and per-embedder.
-        queue.add(new ProtectedMediaIdentifierInfoFetcher());
+        runner.add(new ProtectedMediaIdentifierInfoFetcher());
         // Notification permission is per-origin.
-        queue.add(new NotificationInfoFetcher());
+        runner.add(new NotificationInfoFetcher());
         // Camera capture permission is per-origin and per-embedder.
-        queue.add(new CameraCaptureInfoFetcher());
+        runner.add(new CameraCaptureInfoFetcher());
         // Micropohone capture permission is per-origin and per-embedder.
-        queue.add(new MicrophoneCaptureInfoFetcher());
+        runner.add(new MicrophoneCaptureInfoFetcher());
         // Background sync permission is per-origin.
-        queue.add(new BackgroundSyncExceptionInfoFetcher());
+        runner.add(new BackgroundSyncExceptionInfoFetcher());
         // Autoplay permission is per-origin.
-        queue.add(new AutoplayExceptionInfoFetcher());
+        runner.add(new AutoplayExceptionInfoFetcher());
         // USB device permission is per-origin and per-embedder.
-        queue.add(new UsbInfoFetcher());
-
-        queue.add(new PermissionsAvailableCallbackRunner());
+        runner.add(new UsbInfoFetcher());
 
-        queue.next();
+        runner.run();
     }
 
     /**
@@ -97,50 +103,48 @@ public class WebsitePermissionsFetcher {
             return;
         }
 
-        TaskQueue queue = new TaskQueue();
-        // Populate features from more specific to less specific.
+        TaskRunner runner = new TaskRunner();
         if (category.showGeolocationSites()) {
             // Geolocation lookup permission is per-origin and per-embedder.
-            queue.add(new GeolocationInfoFetcher());
+            runner.add(new GeolocationInfoFetcher());
         } else if (category.showCookiesSites()) {
             // Cookies exceptions are patterns.
-            queue.add(new CookieExceptionInfoFetcher());
+            runner.add(new CookieExceptionInfoFetcher());
         } else if (category.showStorageSites()) {
             // Local storage info is per-origin.
-            queue.add(new LocalStorageInfoFetcher());
+            runner.add(new LocalStorageInfoFetcher());
             // Website storage is per-host.
-            queue.add(new WebStorageInfoFetcher());
+            runner.add(new WebStorageInfoFetcher());
         } else if (category.showCameraSites()) {
             // Camera capture permission is per-origin and per-embedder.
-            queue.add(new CameraCaptureInfoFetcher());
+            runner.add(new CameraCaptureInfoFetcher());
         } else if (category.showMicrophoneSites()) {
             // Micropohone capture permission is per-origin and per-embedder.
-            queue.add(new MicrophoneCaptureInfoFetcher());
+            runner.add(new MicrophoneCaptureInfoFetcher());
         } else if (category.showPopupSites()) {
             // Popup exceptions are host-based patterns (unless we start
             // synchronizing popup exceptions with desktop Chrome.)
-            queue.add(new PopupExceptionInfoFetcher());
+            runner.add(new PopupExceptionInfoFetcher());
         } else if (category.showJavaScriptSites()) {
             // JavaScript exceptions are host-based patterns.
-            queue.add(new JavaScriptExceptionInfoFetcher());
+            runner.add(new JavaScriptExceptionInfoFetcher());
         } else if (category.showNotificationsSites()) {
             // Push notification permission is per-origin.
-            queue.add(new NotificationInfoFetcher());
+            runner.add(new NotificationInfoFetcher());
         } else if (category.showBackgroundSyncSites()) {
             // Background sync info is per-origin.
-            queue.add(new BackgroundSyncExceptionInfoFetcher());
+            runner.add(new BackgroundSyncExceptionInfoFetcher());
         } else if (category.showProtectedMediaSites()) {
             // Protected media identifier permission is per-origin and per-embedder.
-            queue.add(new ProtectedMediaIdentifierInfoFetcher());
+            runner.add(new ProtectedMediaIdentifierInfoFetcher());
         } else if (category.showAutoplaySites()) {
             // Autoplay permission is per-origin.
-            queue.add(new AutoplayExceptionInfoFetcher());
+            runner.add(new AutoplayExceptionInfoFetcher());
         } else if (category.showUsbDevices()) {
             // USB device permission is per-origin.
-            queue.add(new UsbInfoFetcher());
+            runner.add(new UsbInfoFetcher());
         }
-        queue.add(new PermissionsAvailableCallbackRunner());
-        queue.next();
+        runner.run();
     }
 
     private Website findOrCreateSite(WebsiteAddress origin, WebsiteAddress embedder) {
@@ -190,30 +194,55 @@ public class WebsitePermissionsFetcher {
     }
 
     /**
-     * A single task in the WebsitePermissionsFetcher task queue. We need fetching of features to be
-     * serialized, as we need to have all the origins in place prior to populating the hosts.
+     * A single task fetching some of the website preferences.
      */
     private abstract class Task {
         /** Override this method to implement a synchronous task. */
         void run() {}
 
         /**
-         * Override this method to implement an asynchronous task. Call queue.next() once execution
-         * is complete.
+         * Override this method to implement an asynchronous task. Call runner.onTaskDone() once
+         * execution is complete.
          */
-        void runAsync(TaskQueue queue) {
+        void runAsync(TaskRunner runner) {
             run();
-            queue.next();
+            runner.onTaskDone();
         }
     }
 
     /**
-     * A queue used to store the sequence of tasks to run to fetch the website preferences. Each
-     * task is run sequentially, and some of the tasks may run asynchronously.
+     * Runs the tasks fetching the website preferences. Each task only adds to the sites keyed by
+     * origin and embedder, so the tasks don't depend on each other and are all started at once:
+     * the asynchronous tasks are in flight while the synchronous ones run, and the callback is run
+     * once the last task is done. The native preferences are only accessed on the UI thread, where
+     * all tasks run and complete, so merging into the sites needs no locking.
      */
-    private static class TaskQueue extends LinkedList<Task> {
-        void next() {
-            if (!isEmpty()) removeFirst().runAsync(this);
+    private class TaskRunner {
+        private final List<Task> mTasks = new ArrayList<>();
+        private int mPendingTaskCount;
+
+        void add(Task task) {
+            mTasks.add(task);
+        }
+
+        void run() {
+            // Count this method as a pending task, so that the callback isn't run before all
+            // tasks have been started.
+            mPendingTaskCount = mTasks.size() + 1;
+            for (Task task : mTasks) {
+                task.runAsync(this);
+            }
+            if (mPendingTaskCount > 1 && !mSites.isEmpty()
+                    && mCallback instanceof WebsitePermissionsProgressCallback) {
+                ((WebsitePermissionsProgressCallback) mCallback)
+                        .onPartialWebsitePermissionsAvailable(new ArrayList<>(mSites.values()));
+            }
+            onTaskDone();
+        }
+
+        void onTaskDone() {
+            assert mPendingTaskCount > 0;
+            if (--mPendingTaskCount == 0) mCallback.onWebsitePermissionsAvailable(mSites.values());
         }
     }
 
@@ -283,7 +312,7 @@ public class WebsitePermissionsFetcher {
 
     private class LocalStorageInfoFetcher extends Task {
         @Override
-        public void runAsync(final TaskQueue queue) {
+        public void runAsync(final TaskRunner runner) {
             WebsitePreferenceBridge.fetchLocalStorageInfo(new Callback<HashMap>() {
                 @Override
                 public void onResult(HashMap result) {
@@ -295,7 +324,7 @@ public class WebsitePermissionsFetcher {
                         if (address == null) continue;
                         findOrCreateSite(address, null).setLocalStorageInfo(entry.getValue());
                     }
-                    queue.next();
+                    runner.onTaskDone();
                 }
             });
         }
@@ -303,7 +332,7 @@ public class WebsitePermissionsFetcher {
 
     private class WebStorageInfoFetcher extends Task {
         @Override
-        public void runAsync(final TaskQueue queue) {
+        public void runAsync(final TaskRunner runner) {
             WebsitePreferenceBridge.fetchStorageInfo(new Callback<ArrayList>() {
                 @Override
                 public void onResult(ArrayList result) {
@@ -315,7 +344,7 @@ public class WebsitePermissionsFetcher {
                         if (address == null) continue;
                         findOrCreateSite(address, null).addStorageInfo(info);
                     }
-                    queue.next();
+                    runner.onTaskDone();
                 }
             });
         }
@@ -388,11 +417,4 @@ public class WebsitePermissionsFetcher {
             }
         }
     }
-
-    private class PermissionsAvailableCallbackRunner extends Task {
-        @Override
-        public void run() {
-            mCallback.onWebsitePermissionsAvailable(mSites.values());
-        }
-    }
 }
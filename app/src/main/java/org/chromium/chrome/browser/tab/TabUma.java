@@ -6,7 +6,7 @@ package org.chromium.chrome.browser.tab;
 
 import android.os.SystemClock;
 
-import org.chromium.base.metrics.RecordHistogram;
+import org.chromium.chrome.browser.metrics.BufferedRecordHistogram;
 import org.chromium.chrome.browser.tabmodel.TabModel.TabSelectionType;
 import org.chromium.net.NetError;
 
@@ -118,21 +118,22 @@ public class TabUma {
     private void recordTabRestoreResult(boolean succeeded, long time, long perceivedTime,
             int errorCode) {
         if (succeeded) {
-            RecordHistogram.recordEnumeratedHistogram(
+            BufferedRecordHistogram.recordEnumeratedHistogram(
                     "Tab.RestoreResult", TAB_RESTORE_RESULT_SUCCESS, TAB_RESTORE_RESULT_COUNT);
-            RecordHistogram.recordCountHistogram("Tab.RestoreTime", (int) time);
-            RecordHistogram.recordCountHistogram("Tab.PerceivedRestoreTime", (int) perceivedTime);
+            BufferedRecordHistogram.recordCountHistogram("Tab.RestoreTime", (int) time);
+            BufferedRecordHistogram.recordCountHistogram(
+                    "Tab.PerceivedRestoreTime", (int) perceivedTime);
         } else {
             switch (errorCode) {
                 case NetError.ERR_INTERNET_DISCONNECTED:
                 case NetError.ERR_NAME_RESOLUTION_FAILED:
                 case NetError.ERR_DNS_TIMED_OUT:
-                    RecordHistogram.recordEnumeratedHistogram("Tab.RestoreResult",
+                    BufferedRecordHistogram.recordEnumeratedHistogram("Tab.RestoreResult",
                             TAB_RESTORE_RESULT_FAILURE_NETWORK_CONNECTIVITY,
                             TAB_RESTORE_RESULT_COUNT);
                     break;
                 default:
-                    RecordHistogram.recordEnumeratedHistogram("Tab.RestoreResult",
+                    BufferedRecordHistogram.recordEnumeratedHistogram("Tab.RestoreResult",
                             TAB_RESTORE_RESULT_FAILURE_OTHER, TAB_RESTORE_RESULT_COUNT);
             }
         }
@@ -143,7 +144,7 @@ public class TabUma {
      * UMA_HISTOGRAM_LONG_TIMES_100.
      */
     private void recordLongTimesHistogram100(String name, long duration) {
-        RecordHistogram.recordCustomTimesHistogram(
+        BufferedRecordHistogram.recordCustomTimesHistogram(
                 name, TimeUnit.MILLISECONDS.toMillis(duration),
                 TimeUnit.MILLISECONDS.toMillis(1), TimeUnit.HOURS.toMillis(1),
                 TimeUnit.MILLISECONDS, 100);
@@ -167,13 +168,13 @@ public class TabUma {
         }
 
         if (prevState == TAB_STATE_INITIAL) {
-            RecordHistogram.recordEnumeratedHistogram("Tabs.StateTransfer.Target_Initial", newState,
-                    TAB_STATE_MAX);
+            BufferedRecordHistogram.recordEnumeratedHistogram(
+                    "Tabs.StateTransfer.Target_Initial", newState, TAB_STATE_MAX);
         } else if (prevState == TAB_STATE_ACTIVE) {
-            RecordHistogram.recordEnumeratedHistogram("Tabs.StateTransfer.Target_Active", newState,
-                    TAB_STATE_MAX);
+            BufferedRecordHistogram.recordEnumeratedHistogram(
+                    "Tabs.StateTransfer.Target_Active", newState, TAB_STATE_MAX);
         } else if (prevState == TAB_STATE_INACTIVE) {
-            RecordHistogram.recordEnumeratedHistogram("Tabs.StateTransfer.Target_Inactive",
+            BufferedRecordHistogram.recordEnumeratedHistogram("Tabs.StateTransfer.Target_Inactive",
                     newState, TAB_STATE_MAX);
         }
     }
@@ -184,7 +185,7 @@ public class TabUma {
      */
     private void recordNumBackgroundTabsOpened() {
         if (mNumBackgroundTabsOpened > 0) {
-            RecordHistogram.recordCount100Histogram(
+            BufferedRecordHistogram.recordCount100Histogram(
                     "Tab.BackgroundTabsOpenedViaContextMenuCount", mNumBackgroundTabsOpened);
         }
         mNumBackgroundTabsOpened = 0;
@@ -216,8 +217,8 @@ public class TabUma {
         // incognito tab and the current normal mode tab is shown).
         if (mLastShownTimestamp != -1 && selectionType == TabSelectionType.FROM_USER) {
             long age = now - mLastShownTimestamp;
-            RecordHistogram.recordCountHistogram("Tab.SwitchedToForegroundAge", (int) age);
-            RecordHistogram.recordCountHistogram("Tab.SwitchedToForegroundMRURank", rank);
+            BufferedRecordHistogram.recordCountHistogram("Tab.SwitchedToForegroundAge", (int) age);
+            BufferedRecordHistogram.recordCountHistogram("Tab.SwitchedToForegroundMRURank", rank);
         }
 
         increaseTabShowCount();
@@ -251,7 +252,7 @@ public class TabUma {
         // created tabs (FROM_NEW) or selections of the previous tab that happen when we close the
         // tab opened from intent while exiting Chrome (FROM_CLOSE).
         if (selectionType == TabSelectionType.FROM_USER) {
-            RecordHistogram.recordEnumeratedHistogram(
+            BufferedRecordHistogram.recordEnumeratedHistogram(
                     "Tab.StatusWhenSwitchedBackToForeground", status, TAB_STATUS_LIM);
         }
 
@@ -259,14 +260,14 @@ public class TabUma {
         if (mLastShownTimestamp == -1) {
             if (mTabCreationState == TabCreationState.LIVE_IN_BACKGROUND) {
                 if (mRestoreStartedAtMillis == -1) {
-                    RecordHistogram.recordEnumeratedHistogram("Tab.BackgroundLoadStatus",
+                    BufferedRecordHistogram.recordEnumeratedHistogram("Tab.BackgroundLoadStatus",
                             TAB_BACKGROUND_LOAD_SHOWN, TAB_BACKGROUND_LOAD_LIM);
                 } else {
-                    RecordHistogram.recordEnumeratedHistogram("Tab.BackgroundLoadStatus",
+                    BufferedRecordHistogram.recordEnumeratedHistogram("Tab.BackgroundLoadStatus",
                             TAB_BACKGROUND_LOAD_LOST, TAB_BACKGROUND_LOAD_LIM);
 
                     if (previousTimestampMillis > 0) {
-                        RecordHistogram.recordMediumTimesHistogram(
+                        BufferedRecordHistogram.recordMediumTimesHistogram(
                                 "Tab.LostTabAgeWhenSwitchedToForeground",
                                 System.currentTimeMillis() - previousTimestampMillis,
                                 TimeUnit.MILLISECONDS);
@@ -274,7 +275,7 @@ public class TabUma {
                 }
             } else if (mTabCreationState == TabCreationState.FROZEN_FOR_LAZY_LOAD) {
                 assert mRestoreStartedAtMillis == -1;
-                RecordHistogram.recordEnumeratedHistogram("Tab.BackgroundLoadStatus",
+                BufferedRecordHistogram.recordEnumeratedHistogram("Tab.BackgroundLoadStatus",
                         TAB_BACKGROUND_LOAD_SKIPPED, TAB_BACKGROUND_LOAD_LIM);
             }
         }
@@ -283,11 +284,11 @@ public class TabUma {
         // cold starts.
         if (mLastShownTimestamp == -1 && previousTimestampMillis > 0) {
             if (isOnBrowserStartup) {
-                RecordHistogram.recordCountHistogram("Tabs.ForegroundTabAgeAtStartup",
+                BufferedRecordHistogram.recordCountHistogram("Tabs.ForegroundTabAgeAtStartup",
                         (int) millisecondsToMinutes(System.currentTimeMillis()
                                                              - previousTimestampMillis));
             } else if (selectionType == TabSelectionType.FROM_USER) {
-                RecordHistogram.recordCountHistogram("Tab.AgeUponRestoreFromColdStart",
+                BufferedRecordHistogram.recordCountHistogram("Tab.AgeUponRestoreFromColdStart",
                         (int) millisecondsToMinutes(System.currentTimeMillis()
                                                              - previousTimestampMillis));
             }
@@ -312,7 +313,7 @@ public class TabUma {
 
         if (mTabCreationState == TabCreationState.LIVE_IN_BACKGROUND
                 || mTabCreationState == TabCreationState.FROZEN_FOR_LAZY_LOAD) {
-            RecordHistogram.recordBooleanHistogram(
+            BufferedRecordHistogram.recordBooleanHistogram(
                     "Tab.BackgroundTabShown", mLastShownTimestamp != -1);
         }
 
@@ -0,0 +1,312 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.tabmodel;
+
+import org.chromium.base.Log;
+import org.chromium.base.StreamUtil;
+import org.chromium.chrome.browser.tabmodel.TabPersistentStore.TabModelMetadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Journal of the changes made to the TabModels since their metadata file was last written.
+ *
+ * Rather than re-serializing every tab whenever the TabModels change, small records describing
+ * each insertion, removal, move, selection and URL change are appended to a journal file that
+ * sits next to the metadata file.  Readers of the metadata file replay the journal on top of it
+ * through {@link #readMetadataFile}.  Writing a full metadata file compacts the journal away.
+ *
+ * Records are recorded on the UI thread into an in-memory buffer, which is handed off to the
+ * background thread with {@link #takePendingRecords()}.
+ */
+public class TabMetadataJournal {
+    private static final String TAG = "tabmodel";
+
+    /** Prefix of the journal file that accompanies a metadata file. */
+    static final String JOURNAL_FILE_PREFIX = "tab_journal";
+
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_MOVE = 3;
+    private static final byte OP_SELECT = 4;
+    private static final byte OP_URL = 5;
+
+    /** Number of records after which the metadata file is rewritten and the journal dropped. */
+    static final int MAX_RECORDS_BEFORE_COMPACTION = 500;
+
+    private ByteArrayOutputStream mPendingBytes = new ByteArrayOutputStream();
+    private DataOutputStream mPendingRecords = new DataOutputStream(mPendingBytes);
+    private int mRecordCount;
+    private boolean mHasPendingRecords;
+
+    /** Records that a tab was inserted into a TabModel. */
+    void recordInsert(boolean incognito, int index, int tabId, String url) {
+        try {
+            mPendingRecords.writeByte(OP_INSERT);
+            mPendingRecords.writeBoolean(incognito);
+            mPendingRecords.writeInt(index);
+            mPendingRecords.writeInt(tabId);
+            mPendingRecords.writeUTF(url != null ? url : "");
+            onRecordAdded();
+        } catch (IOException e) {
+            assert false : "Writing to memory should not fail.";
+        }
+    }
+
+    /** Records that a tab was removed from a TabModel. */
+    void recordRemove(boolean incognito, int tabId) {
+        try {
+            mPendingRecords.writeByte(OP_REMOVE);
+            mPendingRecords.writeBoolean(incognito);
+            mPendingRecords.writeInt(tabId);
+            onRecordAdded();
+        } catch (IOException e) {
+            assert false : "Writing to memory should not fail.";
+        }
+    }
+
+    /** Records that a tab was moved to a new index within its TabModel. */
+    void recordMove(boolean incognito, int tabId, int newIndex) {
+        try {
+            mPendingRecords.writeByte(OP_MOVE);
+            mPendingRecords.writeBoolean(incognito);
+            mPendingRecords.writeInt(tabId);
+            mPendingRecords.writeInt(newIndex);
+            onRecordAdded();
+        } catch (IOException e) {
+            assert false : "Writing to memory should not fail.";
+        }
+    }
+
+    /** Records the selected index of a TabModel. */
+    void recordSelect(boolean incognito, int index) {
+        try {
+            mPendingRecords.writeByte(OP_SELECT);
+            mPendingRecords.writeBoolean(incognito);
+            mPendingRecords.writeInt(index);
+            onRecordAdded();
+        } catch (IOException e) {
+            assert false : "Writing to memory should not fail.";
+        }
+    }
+
+    /** Records that the URL of a tab changed. */
+    void recordUrl(boolean incognito, int tabId, String url) {
+        try {
+            mPendingRecords.writeByte(OP_URL);
+            mPendingRecords.writeBoolean(incognito);
+            mPendingRecords.writeInt(tabId);
+            mPendingRecords.writeUTF(url != null ? url : "");
+            onRecordAdded();
+        } catch (IOException e) {
+            assert false : "Writing to memory should not fail.";
+        }
+    }
+
+    private void onRecordAdded() {
+        mRecordCount++;
+        mHasPendingRecords = true;
+    }
+
+    /** @return Whether records were added since {@link #takePendingRecords()} was last called. */
+    boolean hasPendingRecords() {
+        return mHasPendingRecords;
+    }
+
+    /** @return Whether enough records were written that the journal should be compacted. */
+    boolean needsCompaction() {
+        return mRecordCount >= MAX_RECORDS_BEFORE_COMPACTION;
+    }
+
+    /**
+     * @return The records added since the last call, which are then cleared from the buffer.
+     */
+    byte[] takePendingRecords() {
+        byte[] records = mPendingBytes.toByteArray();
+        mPendingBytes = new ByteArrayOutputStream();
+        mPendingRecords = new DataOutputStream(mPendingBytes);
+        mHasPendingRecords = false;
+        return records;
+    }
+
+    /**
+     * Drops all records, which is done whenever a full metadata file is about to be written.
+     */
+    void reset() {
+        takePendingRecords();
+        mRecordCount = 0;
+    }
+
+    /**
+     * @param stateDirectory Directory containing the metadata file.
+     * @param stateFileName  Name of the metadata file.
+     * @return The journal file that belongs to the metadata file.
+     */
+    static File getJournalFile(File stateDirectory, String stateFileName) {
+        return new File(stateDirectory,
+                JOURNAL_FILE_PREFIX + TabPersistentStore.getStateFileUniqueId(stateFileName));
+    }
+
+    /**
+     * Appends records to the journal of a metadata file.  Must be called while holding the lock
+     * that guards writes of the metadata file.
+     * @param journalFile Journal to append to.
+     * @param records     Records obtained from {@link #takePendingRecords()}.
+     */
+    static void appendRecords(File journalFile, byte[] records) {
+        FileOutputStream stream = null;
+        try {
+            stream = new FileOutputStream(journalFile, true);
+            stream.write(records);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write file: " + journalFile.getAbsolutePath());
+        } finally {
+            StreamUtil.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Deletes the journal of a metadata file.  Must be called while holding the lock that guards
+     * writes of the metadata file.
+     * @param journalFile Journal to delete.
+     */
+    static void deleteJournal(File journalFile) {
+        if (journalFile.exists() && !journalFile.delete()) {
+            Log.e(TAG, "Failed to delete file: " + journalFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads a metadata file and replays its journal on top of it, if there is one.
+     * @param metadataFile The metadata file to read.
+     * @return The data in the format of a full metadata file, suitable for
+     *         {@link TabPersistentStore#readSavedStateFile}.
+     */
+    public static byte[] readMetadataFile(File metadataFile) throws IOException {
+        byte[] metadata = readFile(metadataFile);
+        File journalFile = getJournalFile(metadataFile.getParentFile(), metadataFile.getName());
+        if (!journalFile.exists()) return metadata;
+        return replay(metadata, readFile(journalFile));
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        FileInputStream stream = null;
+        try {
+            stream = new FileInputStream(file);
+            byte[] data = new byte[(int) file.length()];
+            new DataInputStream(stream).readFully(data);
+            return data;
+        } finally {
+            StreamUtil.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Applies the journal records to the metadata.
+     * @param metadata Contents of a full metadata file.
+     * @param journal  Records that were appended after the metadata file was written.
+     * @return Contents of the full metadata file with the records applied.
+     */
+    static byte[] replay(byte[] metadata, byte[] journal) throws IOException {
+        if (journal.length == 0) return metadata;
+
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(metadata));
+        // Journals are only written for metadata files in the current format.
+        if (stream.readInt() != TabPersistentStore.SAVED_STATE_VERSION) return metadata;
+        int count = stream.readInt();
+        int incognitoCount = stream.readInt();
+        int incognitoActiveIndex = stream.readInt();
+        int standardActiveIndex = stream.readInt();
+        if (count < 0 || incognitoCount < 0 || incognitoCount > count) throw new IOException();
+
+        TabModelMetadata incognitoInfo = new TabModelMetadata(incognitoActiveIndex);
+        TabModelMetadata standardInfo = new TabModelMetadata(standardActiveIndex - incognitoCount);
+        for (int i = 0; i < count; i++) {
+            TabModelMetadata info = i < incognitoCount ? incognitoInfo : standardInfo;
+            info.ids.add(stream.readInt());
+            info.urls.add(stream.readUTF());
+        }
+        int incognitoIndex = incognitoInfo.index;
+        int standardIndex = standardInfo.index;
+
+        DataInputStream records = new DataInputStream(new ByteArrayInputStream(journal));
+        try {
+            while (true) {
+                byte op = records.readByte();
+                boolean incognito = records.readBoolean();
+                TabModelMetadata info = incognito ? incognitoInfo : standardInfo;
+                switch (op) {
+                    case OP_INSERT: {
+                        int index = records.readInt();
+                        int tabId = records.readInt();
+                        String url = records.readUTF();
+                        removeTab(info, tabId);
+                        index = Math.max(0, Math.min(index, info.ids.size()));
+                        info.ids.add(index, tabId);
+                        info.urls.add(index, url);
+                        break;
+                    }
+                    case OP_REMOVE:
+                        removeTab(info, records.readInt());
+                        break;
+                    case OP_MOVE: {
+                        int tabId = records.readInt();
+                        int newIndex = records.readInt();
+                        int index = info.ids.indexOf(tabId);
+                        if (index == -1) break;
+                        String url = info.urls.get(index);
+                        removeTab(info, tabId);
+                        newIndex = Math.max(0, Math.min(newIndex, info.ids.size()));
+                        info.ids.add(newIndex, tabId);
+                        info.urls.add(newIndex, url);
+                        break;
+                    }
+                    case OP_SELECT:
+                        if (incognito) {
+                            incognitoIndex = records.readInt();
+                        } else {
+                            standardIndex = records.readInt();
+                        }
+                        break;
+                    case OP_URL: {
+                        int index = info.ids.indexOf(records.readInt());
+                        String url = records.readUTF();
+                        if (index != -1) info.urls.set(index, url);
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown journal record: " + op);
+                }
+            }
+        } catch (EOFException e) {
+            // Reached the end of the journal, or a record that was only partially written.
+        }
+
+        return TabPersistentStore.writeMetadata(withIndex(standardInfo, standardIndex),
+                withIndex(incognitoInfo, incognitoIndex), null);
+    }
+
+    private static TabModelMetadata withIndex(TabModelMetadata info, int index) {
+        TabModelMetadata result = new TabModelMetadata(Math.min(index, info.ids.size() - 1));
+        result.ids.addAll(info.ids);
+        result.urls.addAll(info.urls);
+        return result;
+    }
+
+    private static void removeTab(TabModelMetadata info, int tabId) {
+        int index = info.ids.indexOf(tabId);
+        if (index == -1) return;
+        info.ids.remove(index);
+        info.urls.remove(index);
+    }
+}
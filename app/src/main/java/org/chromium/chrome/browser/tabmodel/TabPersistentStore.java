@@ -7,48 +7,58 @@ package org.chromium.chrome.browser.tabmodel;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.AsyncTask;
+import android.os.Process;
 import android.os.StrictMode;
 import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.v4.util.AtomicFile;
 import android.text.TextUtils;
 import android.util.Pair;
+import android.util.SparseArray;
 import android.util.SparseBooleanArray;
 import android.util.SparseIntArray;
 
 import org.chromium.base.Callback;
 import org.chromium.base.ContextUtils;
 import org.chromium.base.Log;
-import org.chromium.base.StreamUtil;
 import org.chromium.base.ThreadUtils;
 import org.chromium.base.VisibleForTesting;
 import org.chromium.base.library_loader.LibraryLoader;
 import org.chromium.base.metrics.RecordHistogram;
 import org.chromium.base.metrics.RecordUserAction;
 import org.chromium.chrome.browser.TabState;
+import org.chromium.chrome.browser.TabStateSegmentStore;
 import org.chromium.chrome.browser.compositor.layouts.content.TabContentManager;
 import org.chromium.chrome.browser.tab.Tab;
 import org.chromium.chrome.browser.tab.TabIdManager;
+import org.chromium.chrome.browser.tabmodel.TabModel.TabLaunchType;
 import org.chromium.content_public.browser.LoadUrlParams;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class handles saving and loading tab state from the persistent storage.
@@ -61,7 +71,7 @@ public class TabPersistentStore extends TabPersister {
      * Version 4: In addition to the tab's ID, save the tab's last URL.
      * Version 5: In addition to the total tab count, save the incognito tab count.
      */
-    private static final int SAVED_STATE_VERSION = 5;
+    static final int SAVED_STATE_VERSION = 5;
 
     private static final String BASE_STATE_FOLDER = "tabs";
 
@@ -79,6 +89,19 @@ public class TabPersistentStore extends TabPersister {
     /** Prevents two TabPersistentStores from saving the same file simultaneously. */
     private static final Object SAVE_LIST_LOCK = new Object();
 
+    /** Maximum number of TabStates restored in parallel. */
+    private static final int MAX_PARALLEL_TAB_RESTORES =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Number of tabs at the head of the restore queue whose TabStates are read and decoded ahead
+     * of the tab that is currently being added to the model.
+     */
+    private static final int TAB_RESTORE_LOOKAHEAD = 2 * MAX_PARALLEL_TAB_RESTORES;
+
+    /** Runs the TabState restores that are started ahead of time. */
+    private static final Executor RESTORE_EXECUTOR = createRestoreExecutor();
+
     /**
      * Callback interface to use while reading the persisted TabModelSelector info from disk.
      */
@@ -166,6 +189,30 @@ public class TabPersistentStore extends TabPersister {
     private final Set<Integer> mTabIdsToRestore;
 
     private LoadTabTask mLoadTabTask;
+
+    // Records the changes made to the TabModels since the metadata file was last written in full.
+    private final TabMetadataJournal mJournal = new TabMetadataJournal();
+    private final TabModelSelectorTabModelObserver mJournalTabModelObserver;
+    private final TabModelSelectorTabObserver mJournalTabObserver;
+    // Whether the last full metadata file matched the TabModels, i.e. whether changes can be
+    // journaled on top of it.
+    private boolean mIsJournalBaseValid;
+    // Tab counts and selected indices of the {standard, incognito} TabModels as the journal
+    // describes them.
+    private final int[] mJournaledTabCounts = new int[2];
+    private final int[] mJournaledIndices = new int[2];
+    private final Set<Integer> mJournaledPendingClosures = new HashSet<>();
+    private int mJournaledActiveTabId = Tab.INVALID_TAB_ID;
+    // Incremented whenever a full metadata file is serialized.  Journal records are only appended
+    // on top of the full metadata file they were recorded against.
+    private int mMetadataGeneration;
+    private final AtomicInteger mWrittenMetadataGeneration = new AtomicInteger();
+    // The last metadata generation that failed to be written out, which can't be journaled on.
+    private final AtomicInteger mFailedMetadataGeneration = new AtomicInteger(-1);
+
+    /** Restores of TabStates that were started ahead of time, keyed by tab ID. */
+    private final SparseArray<FutureTask<TabState>> mPrefetchedTabStates = new SparseArray<>();
+
     private SaveTabTask mSaveTabTask;
     private SaveListTask mSaveListTask;
 
@@ -189,6 +236,13 @@ public class TabPersistentStore extends TabPersister {
     // Set when restoreTabs() is called during a non-cold-start merge. Used for logging time to
     // restore per tab.
     private long mRestoreMergedTabsStartTime;
+    // Original index of the active tab read from the metadata file, used to prioritize the tabs
+    // around it.
+    private int mActiveTabOriginalIndex = TabList.INVALID_TAB_INDEX;
+    // Set when restoreTabs() is called on cold start. Used for logging the time it takes until the
+    // first and all of the tabs are restored.
+    private long mRestoreTabsStartTime;
+    private boolean mHasRecordedFirstTabRestored;
 
     @VisibleForTesting
     AsyncTask<Void, Void, TabState> mPrefetchActiveTabTask;
@@ -209,6 +263,14 @@ public class TabPersistentStore extends TabPersister {
         mTabIdsToRestore = new HashSet<>();
         mObserver = observer;
         mPreferences = ContextUtils.getAppSharedPreferences();
+        mJournalTabModelObserver = createJournalTabModelObserver();
+        mJournalTabObserver = new TabModelSelectorTabObserver(mTabModelSelector) {
+            @Override
+            public void onUrlUpdated(Tab tab) {
+                if (!mIsJournalBaseValid) return;
+                mJournal.recordUrl(tab.isIncognito(), tab.getId(), tab.getUrl());
+            }
+        };
 
         assert isStateFile(policy.getStateFileName()) : "State file name is not valid";
         boolean needsInitialization = mPersistencePolicy.performInitialization(
@@ -251,6 +313,63 @@ public class TabPersistentStore extends TabPersister {
         mPersistencePolicy.setTabContentManager(cache);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Unencrypted TabStates are appended to the {@link TabStateSegmentStore} of the state
+     * directory rather than being written to a file of their own.  Encrypted TabStates keep using
+     * standalone files, as each of them is written with its own cipher stream.
+     */
+    @Override
+    public boolean saveTabState(int tabId, boolean encrypted, TabState state) {
+        if (encrypted) return super.saveTabState(tabId, encrypted, state);
+        if (state == null || state.contentsState == null) return false;
+
+        try {
+            getSegmentStore().saveTabState(tabId, state);
+            // Make sure a file saved by an older version can't shadow the new state.
+            super.deleteTabState(tabId, false);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "IOException while attempting to save TabState.", e);
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "Out of memory error while attempting to save tab state.  Erasing.");
+            deleteTabState(tabId, encrypted);
+        }
+        return false;
+    }
+
+    @Override
+    public void deleteTabState(int id, boolean encrypted) {
+        if (!encrypted) getSegmentStore().deleteTabState(id);
+        super.deleteTabState(id, encrypted);
+    }
+
+    private TabStateSegmentStore getSegmentStore() {
+        return TabStateSegmentStore.getInstance(getStateDirectory());
+    }
+
+    private static Executor createRestoreExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL_TAB_RESTORES,
+                MAX_PARALLEL_TAB_RESTORES, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "TabRestore #" + mCount.incrementAndGet());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private static void logExecutionTime(String name, long time) {
         if (LibraryLoader.isInitialized()) {
             RecordHistogram.recordTimesHistogram("Android.StrictMode.TabPersistentStore." + name,
@@ -266,9 +385,17 @@ public class TabPersistentStore extends TabPersister {
             // The list of tabs should be saved first in case our activity is terminated early.
             // Explicitly toss out any existing SaveListTask because they only save the TabModel as
             // it looked when the SaveListTask was first created.
-            if (mSaveListTask != null) mSaveListTask.cancel(true);
+            boolean hadSaveListTask = mSaveListTask != null;
+            if (hadSaveListTask) mSaveListTask.cancel(true);
+            mSaveListTask = null;
             try {
-                saveListToFile(serializeTabMetadata());
+                if (!hadSaveListTask && canJournalTabList()) {
+                    byte[] records = takeJournalRecords();
+                    if (records != null) appendJournalRecords(records, mMetadataGeneration);
+                } else {
+                    byte[] listData = serializeTabMetadata();
+                    saveListToFile(listData, mMetadataGeneration);
+                }
             } catch (IOException e) {
                 Log.w(TAG, "Error while saving tabs state; will attempt to continue...", e);
             }
@@ -308,15 +435,13 @@ public class TabPersistentStore extends TabPersister {
             }
 
             long saveTabsStartTime = SystemClock.uptimeMillis();
-            // Synchronously save any remaining unsaved tabs (hopefully very few).
+            // Synchronously save any remaining unsaved tabs (hopefully very few).  Unencrypted
+            // tabs are appended to the segment store, so this does not open a file per tab.
             for (Tab tab : mTabsToSave) {
                 int id = tab.getId();
                 boolean incognito = tab.isIncognito();
                 try {
-                    TabState state = tab.getState();
-                    if (state != null) {
-                        TabState.saveState(getTabStateFile(id, incognito), state, incognito);
-                    }
+                    saveTabState(id, incognito, tab.getState());
                 } catch (OutOfMemoryError e) {
                     Log.w(TAG, "Out of memory error while attempting to save tab state.  Erasing.");
                     deleteTabState(id, incognito);
@@ -352,6 +477,7 @@ public class TabPersistentStore extends TabPersister {
         mCancelIncognitoTabLoads = ignoreIncognitoFiles;
         mNormalTabsRestored = new SparseIntArray();
         mIncognitoTabsRestored = new SparseIntArray();
+        mActiveTabOriginalIndex = TabList.INVALID_TAB_INDEX;
         try {
             long timeLoadingState = SystemClock.uptimeMillis();
             assert mTabModelSelector.getModel(true).getCount() == 0;
@@ -373,6 +499,7 @@ public class TabPersistentStore extends TabPersister {
                                     false),
                             null,
                             false);
+                    prioritizeTabsToRestore();
                     logExecutionTime("LoadStateInternalTime", timeLoadingState);
                 }
             }
@@ -469,6 +596,10 @@ public class TabPersistentStore extends TabPersister {
      *                     loaded asynchronously.
      */
     public void restoreTabs(boolean setActiveTab) {
+        if (mLoadInProgress) {
+            mRestoreTabsStartTime = SystemClock.uptimeMillis();
+            mHasRecordedFirstTabRestored = false;
+        }
         if (setActiveTab) {
             // Restore and select the active tab, which is first in the restore list.
             // If the active tab can't be restored, restore and select another tab. Otherwise, the
@@ -521,6 +652,7 @@ public class TabPersistentStore extends TabPersister {
 
         if (tabToRestore != null) {
             mTabsToRestore.remove(tabToRestore);
+            cancelPrefetchedTabState(tabToRestore.id);
             restoreTab(tabToRestore, false);
         }
     }
@@ -623,6 +755,40 @@ public class TabPersistentStore extends TabPersister {
             }
         }
         restoredTabs.put(tabToRestore.originalIndex, tabId);
+
+        if (mRestoreTabsStartTime != 0 && !mHasRecordedFirstTabRestored) {
+            mHasRecordedFirstTabRestored = true;
+            logRestoreTime("Android.TabPersistentStore.RestoreTimeToFirstTab");
+        }
+    }
+
+    private void logRestoreTime(String histogram) {
+        if (!LibraryLoader.isInitialized()) return;
+        RecordHistogram.recordTimesHistogram(histogram,
+                SystemClock.uptimeMillis() - mRestoreTabsStartTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reorders the tabs to restore so that the tabs closest to the active tab in the TabList are
+     * read first, right after the active tab itself.  This does not affect the order of the tabs
+     * in the TabModel, as every tab is inserted at its original index.
+     */
+    private void prioritizeTabsToRestore() {
+        if (mActiveTabOriginalIndex == TabList.INVALID_TAB_INDEX || mTabsToRestore.size() < 3) {
+            return;
+        }
+
+        final int activeIndex = mActiveTabOriginalIndex;
+        List<TabRestoreDetails> tabsToRestore = new ArrayList<>(mTabsToRestore);
+        Collections.sort(tabsToRestore, new Comparator<TabRestoreDetails>() {
+            @Override
+            public int compare(TabRestoreDetails lhs, TabRestoreDetails rhs) {
+                return Math.abs(lhs.originalIndex - activeIndex)
+                        - Math.abs(rhs.originalIndex - activeIndex);
+            }
+        });
+        mTabsToRestore.clear();
+        mTabsToRestore.addAll(tabsToRestore);
     }
 
     /**
@@ -642,6 +808,7 @@ public class TabPersistentStore extends TabPersister {
         AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
             @Override
             public void run() {
+                TabStateSegmentStore.clearAll();
                 File[] baseStateFiles = getOrCreateBaseStateDirectory().listFiles();
                 if (baseStateFiles == null) return;
                 for (File baseStateFile : baseStateFiles) {
@@ -693,6 +860,7 @@ public class TabPersistentStore extends TabPersister {
     public void removeTabFromQueues(Tab tab) {
         mTabsToSave.remove(tab);
         mTabsToRestore.remove(getTabToRestoreById(tab.getId()));
+        cancelPrefetchedTabState(tab.getId());
 
         if (mLoadTabTask != null && mLoadTabTask.mTabToRestore.id == tab.getId()) {
             mLoadTabTask.cancel(false);
@@ -731,10 +899,16 @@ public class TabPersistentStore extends TabPersister {
         mDestroyed = true;
         mPersistencePolicy.destroy();
         if (mLoadTabTask != null) mLoadTabTask.cancel(true);
+        for (int i = 0; i < mPrefetchedTabStates.size(); i++) {
+            mPrefetchedTabStates.valueAt(i).cancel(false);
+        }
+        mPrefetchedTabStates.clear();
         mTabsToSave.clear();
         mTabsToRestore.clear();
         if (mSaveTabTask != null) mSaveTabTask.cancel(false);
         if (mSaveListTask != null) mSaveListTask.cancel(true);
+        mJournalTabModelObserver.destroy();
+        mJournalTabObserver.destroy();
     }
 
     private void cleanupPersistentData(int id, boolean incognito) {
@@ -753,7 +927,147 @@ public class TabPersistentStore extends TabPersister {
             tabsToRestore.add(details);
         }
 
-        return serializeTabModelSelector(mTabModelSelector, tabsToRestore);
+        byte[] listData = serializeTabModelSelector(mTabModelSelector, tabsToRestore);
+
+        // The full metadata file replaces whatever was journaled so far.  Tabs that are still being
+        // restored aren't part of the TabModels, so changes can't be journaled until they are.
+        mJournal.reset();
+        mMetadataGeneration++;
+        mIsJournalBaseValid = tabsToRestore.isEmpty();
+        mJournaledPendingClosures.clear();
+        for (int i = 0; i < 2; i++) {
+            TabModel model = mTabModelSelector.getModel(i == 1);
+            mJournaledTabCounts[i] = model.getCount();
+            mJournaledIndices[i] = model.index();
+        }
+        mJournaledActiveTabId = getActiveTabId(mTabModelSelector.getModel(false));
+        return listData;
+    }
+
+    /**
+     * @return Whether the changes made since the last full metadata file can be written out as
+     *         journal records rather than as a new full metadata file.
+     */
+    private boolean canJournalTabList() {
+        if (!mIsJournalBaseValid || mJournal.needsCompaction()) return false;
+        // The records would be dropped, as the metadata file they describe changes to is missing.
+        if (mFailedMetadataGeneration.get() == mMetadataGeneration) return false;
+        if (mLoadTabTask != null || !mTabsToRestore.isEmpty()) return false;
+        // Catch any change that wasn't reported through the TabModelObservers.
+        for (int i = 0; i < 2; i++) {
+            if (mTabModelSelector.getModel(i == 1).getCount() != mJournaledTabCounts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the selected indices and takes the journal records that haven't been written yet.
+     * Also updates the cached active tab ID, as serializing the full metadata file would.
+     * @return The records to append to the journal, or null if there are none.
+     */
+    private byte[] takeJournalRecords() {
+        for (int i = 0; i < 2; i++) {
+            int index = mTabModelSelector.getModel(i == 1).index();
+            if (index == mJournaledIndices[i]) continue;
+            mJournal.recordSelect(i == 1, index);
+            mJournaledIndices[i] = index;
+        }
+
+        int activeTabId = getActiveTabId(mTabModelSelector.getModel(false));
+        if (activeTabId != mJournaledActiveTabId) {
+            mJournaledActiveTabId = activeTabId;
+            mPreferences.edit().putInt(PREF_ACTIVE_TAB_ID, activeTabId).apply();
+        }
+
+        return mJournal.hasPendingRecords() ? mJournal.takePendingRecords() : null;
+    }
+
+    /**
+     * Appends records to the journal of this TabPersistentStore's metadata file, unless a newer
+     * full metadata file has been written since they were recorded.
+     * @param records    Records returned by {@link #takeJournalRecords()}.
+     * @param generation The metadata generation that the records were recorded against.
+     */
+    private void appendJournalRecords(byte[] records, int generation) {
+        synchronized (SAVE_LIST_LOCK) {
+            if (mWrittenMetadataGeneration.get() != generation) return;
+            File stateDirectory = getStateDirectory();
+            String stateFileName = mPersistencePolicy.getStateFileName();
+            TabMetadataJournal.appendRecords(
+                    TabMetadataJournal.getJournalFile(stateDirectory, stateFileName), records);
+            // Policies expire metadata files based on when they were last modified.
+            new File(stateDirectory, stateFileName).setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    private TabModelSelectorTabModelObserver createJournalTabModelObserver() {
+        return new TabModelSelectorTabModelObserver(mTabModelSelector) {
+            @Override
+            public void didAddTab(Tab tab, TabLaunchType type) {
+                journalTabInserted(tab);
+            }
+
+            @Override
+            public void didMoveTab(Tab tab, int newIndex, int curIndex) {
+                if (!mIsJournalBaseValid) return;
+                mJournal.recordMove(tab.isIncognito(), tab.getId(), newIndex);
+            }
+
+            @Override
+            public void tabPendingClosure(Tab tab) {
+                if (!mIsJournalBaseValid) return;
+                mJournaledPendingClosures.add(tab.getId());
+                journalTabRemoved(tab.getId(), tab.isIncognito());
+            }
+
+            @Override
+            public void tabClosureUndone(Tab tab) {
+                if (!mIsJournalBaseValid) return;
+                mJournaledPendingClosures.remove(tab.getId());
+                journalTabInserted(tab);
+            }
+
+            @Override
+            public void didCloseTab(int tabId, boolean incognito) {
+                if (!mIsJournalBaseValid) return;
+                // Tabs that were pending closure have already been removed from the journal.
+                if (mJournaledPendingClosures.remove(tabId)) return;
+                journalTabRemoved(tabId, incognito);
+            }
+
+            @Override
+            public void allTabsPendingClosure(List<Integer> tabIds) {
+                // Closing all tabs at once is rare enough to just write out a full metadata file.
+                mIsJournalBaseValid = false;
+            }
+
+            @Override
+            public void tabRemoved(Tab tab) {
+                if (!mIsJournalBaseValid) return;
+                journalTabRemoved(tab.getId(), tab.isIncognito());
+            }
+        };
+    }
+
+    private void journalTabInserted(Tab tab) {
+        if (!mIsJournalBaseValid) return;
+        boolean incognito = tab.isIncognito();
+        int index = mTabModelSelector.getModel(incognito).indexOf(tab);
+        mJournal.recordInsert(incognito, index, tab.getId(), tab.getUrl());
+        mJournaledTabCounts[incognito ? 1 : 0]++;
+    }
+
+    private void journalTabRemoved(int tabId, boolean incognito) {
+        mJournal.recordRemove(incognito, tabId);
+        mJournaledTabCounts[incognito ? 1 : 0]--;
+    }
+
+    private static int getActiveTabId(TabModel model) {
+        int activeIndex = model.index();
+        if (activeIndex == TabList.INVALID_TAB_INDEX) return Tab.INVALID_TAB_ID;
+        return model.getTabAt(activeIndex).getId();
     }
 
     /**
@@ -783,11 +1097,7 @@ public class TabPersistentStore extends TabPersister {
         }
 
         // Cache the active tab id to be pre-loaded next launch.
-        int activeTabId = Tab.INVALID_TAB_ID;
-        int activeIndex = normalModel.index();
-        if (activeIndex != TabList.INVALID_TAB_INDEX) {
-            activeTabId = normalModel.getTabAt(activeIndex).getId();
-        }
+        int activeTabId = getActiveTabId(normalModel);
         // Always override the existing value in case there is no active tab.
         ContextUtils.getAppSharedPreferences().edit().putInt(
                 PREF_ACTIVE_TAB_ID, activeTabId).apply();
@@ -806,7 +1116,14 @@ public class TabPersistentStore extends TabPersister {
             TabModelMetadata incognitoInfo, @Nullable List<TabRestoreDetails> tabsBeingRestored)
             throws IOException {
         ThreadUtils.assertOnUiThread();
+        return writeMetadata(standardInfo, incognitoInfo, tabsBeingRestored);
+    }
 
+    /**
+     * Same as {@link #serializeMetadata}, but callable from any thread.
+     */
+    static byte[] writeMetadata(TabModelMetadata standardInfo, TabModelMetadata incognitoInfo,
+            @Nullable List<TabRestoreDetails> tabsBeingRestored) throws IOException {
         int standardCount = standardInfo.ids.size();
         int incognitoCount = incognitoInfo.ids.size();
 
@@ -852,11 +1169,35 @@ public class TabPersistentStore extends TabPersister {
         return output.toByteArray();
     }
 
-    private void saveListToFile(byte[] listData) {
-        if (Arrays.equals(mLastSavedMetadata, listData)) return;
+    /**
+     * Writes out a full metadata file, which also drops the journal.
+     * @param listData   Serialized metadata returned by {@link #serializeTabMetadata()}.
+     * @param generation The metadata generation of {@code listData}.
+     */
+    private void saveListToFile(byte[] listData, int generation) {
+        synchronized (SAVE_LIST_LOCK) {
+            // Never replace the metadata with an older version of it.
+            if (generation < mWrittenMetadataGeneration.get()) return;
+
+            if (Arrays.equals(mLastSavedMetadata, listData)) {
+                // The metadata file is up to date, but the journal may describe changes that have
+                // since been reverted.
+                TabMetadataJournal.deleteJournal(TabMetadataJournal.getJournalFile(
+                        getStateDirectory(), mPersistencePolicy.getStateFileName()));
+                mWrittenMetadataGeneration.set(generation);
+                return;
+            }
 
-        saveListToFile(getStateDirectory(), mPersistencePolicy.getStateFileName(), listData);
-        mLastSavedMetadata = listData;
+            if (!writeMetadataFile(
+                    getStateDirectory(), mPersistencePolicy.getStateFileName(), listData)) {
+                // The old metadata file and its journal are still consistent with each other, but
+                // the next save has to write a full metadata file again.
+                mFailedMetadataGeneration.set(generation);
+                return;
+            }
+            mWrittenMetadataGeneration.set(generation);
+            mLastSavedMetadata = listData;
+        }
         if (LibraryLoader.isInitialized()) {
             RecordHistogram.recordCountHistogram(
                     "Android.TabPersistentStore.MetadataFileSize", listData.length);
@@ -871,20 +1212,36 @@ public class TabPersistentStore extends TabPersister {
      */
     public static void saveListToFile(File stateDirectory, String stateFileName, byte[] listData) {
         synchronized (SAVE_LIST_LOCK) {
-            // Save the index file containing the list of tabs to restore.
-            File metadataFile = new File(stateDirectory, stateFileName);
+            writeMetadataFile(stateDirectory, stateFileName, listData);
+        }
+    }
 
-            AtomicFile file = new AtomicFile(metadataFile);
-            FileOutputStream stream = null;
-            try {
-                stream = file.startWrite();
-                stream.write(listData, 0, listData.length);
-                file.finishWrite(stream);
-            } catch (IOException e) {
-                if (stream != null) file.failWrite(stream);
-                Log.e(TAG, "Failed to write file: " + metadataFile.getAbsolutePath());
-            }
+    /**
+     * Atomically writes out a metadata file and deletes the journal of the metadata file it
+     * replaces.  Must be called while holding {@link #SAVE_LIST_LOCK}.
+     * @return Whether the metadata file was written.
+     */
+    private static boolean writeMetadataFile(
+            File stateDirectory, String stateFileName, byte[] listData) {
+        // Save the index file containing the list of tabs to restore.
+        File metadataFile = new File(stateDirectory, stateFileName);
+
+        AtomicFile file = new AtomicFile(metadataFile);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            stream.write(listData, 0, listData.length);
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            if (stream != null) file.failWrite(stream);
+            Log.e(TAG, "Failed to write file: " + metadataFile.getAbsolutePath());
+            return false;
         }
+
+        // The journal of the previous metadata file doesn't apply to the new one.
+        TabMetadataJournal.deleteJournal(
+                TabMetadataJournal.getJournalFile(stateDirectory, stateFileName));
+        return true;
     }
 
     /**
@@ -919,6 +1276,7 @@ public class TabPersistentStore extends TabPersister {
                         || (isStandardActiveIndex && !isIncognitoSelected))) {
                     // Active tab gets loaded first
                     mTabsToRestore.addFirst(details);
+                    mActiveTabOriginalIndex = index;
                 } else {
                     mTabsToRestore.addLast(details);
                 }
@@ -964,15 +1322,9 @@ public class TabPersistentStore extends TabPersister {
                         if (tabStateInfo != null) {
                             maxId = Math.max(maxId, tabStateInfo.first);
                         } else if (isStateFile(file.getName())) {
-                            DataInputStream stream = null;
-                            try {
-                                stream = new DataInputStream(
-                                        new BufferedInputStream(new FileInputStream(file)));
-                                maxId = Math.max(
-                                        maxId, readSavedStateFile(stream, null, null, false));
-                            } finally {
-                                StreamUtil.closeQuietly(stream);
-                            }
+                            DataInputStream stream = new DataInputStream(new ByteArrayInputStream(
+                                    TabMetadataJournal.readMetadataFile(file)));
+                            maxId = Math.max(maxId, readSavedStateFile(stream, null, null, false));
                         }
                     }
                 }
@@ -1056,9 +1408,18 @@ public class TabPersistentStore extends TabPersister {
     }
 
     /**
-     * Kick off an AsyncTask to save the current list of Tabs.
+     * Kick off an AsyncTask to save the current list of Tabs.  If the TabModels were only changed
+     * through operations that could be journaled since the last time the full list was saved,
+     * only those changes are appended to the journal of the metadata file.
      */
     public void saveTabListAsynchronously() {
+        if (canJournalTabList()) {
+            // Runs after any pending SaveListTask, which writes the metadata file the records
+            // were recorded against.
+            new SaveJournalTask(takeJournalRecords(), mMetadataGeneration)
+                    .executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
+            return;
+        }
         if (mSaveListTask != null) mSaveListTask.cancel(true);
         mSaveListTask = new SaveListTask();
         mSaveListTask.executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
@@ -1100,12 +1461,14 @@ public class TabPersistentStore extends TabPersister {
 
     private class SaveListTask extends AsyncTask<Void, Void, Void> {
         byte[] mListData;
+        int mGeneration;
 
         @Override
         protected void onPreExecute() {
             if (mDestroyed || isCancelled()) return;
             try {
                 mListData = serializeTabMetadata();
+                mGeneration = mMetadataGeneration;
             } catch (IOException e) {
                 mListData = null;
             }
@@ -1114,7 +1477,7 @@ public class TabPersistentStore extends TabPersister {
         @Override
         protected Void doInBackground(Void... voids) {
             if (mListData == null || isCancelled()) return null;
-            saveListToFile(mListData);
+            saveListToFile(mListData, mGeneration);
             mListData = null;
             return null;
         }
@@ -1130,6 +1493,32 @@ public class TabPersistentStore extends TabPersister {
         }
     }
 
+    private class SaveJournalTask extends AsyncTask<Void, Void, Void> {
+        private final byte[] mRecords;
+        private final int mGeneration;
+
+        /**
+         * @param records    Records to append to the journal, or null if there are none.
+         * @param generation The metadata generation that the records were recorded against.
+         */
+        SaveJournalTask(@Nullable byte[] records, int generation) {
+            mRecords = records;
+            mGeneration = generation;
+        }
+
+        @Override
+        protected Void doInBackground(Void... voids) {
+            if (mRecords != null) appendJournalRecords(mRecords, mGeneration);
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void v) {
+            if (mDestroyed) return;
+            if (mObserver != null) mObserver.onMetadataSavedAsynchronously();
+        }
+    }
+
     private void onStateLoaded() {
         if (mObserver != null) mObserver.onStateLoaded();
     }
@@ -1142,6 +1531,11 @@ public class TabPersistentStore extends TabPersister {
             mIncognitoTabsRestored = null;
             mLoadInProgress = false;
 
+            if (mRestoreTabsStartTime != 0) {
+                logRestoreTime("Android.TabPersistentStore.RestoreTimeToAllTabs");
+                mRestoreTabsStartTime = 0;
+            }
+
             // If tabs are done being merged into this instance, save the tab metadata file for this
             // TabPersistentStore and delete the metadata file for the other instance, then notify
             // observers.
@@ -1175,11 +1569,45 @@ public class TabPersistentStore extends TabPersister {
                     + "," + mTabModelSelector.getModel(true).getCount());
         } else {
             TabRestoreDetails tabToRestore = mTabsToRestore.removeFirst();
-            mLoadTabTask = new LoadTabTask(tabToRestore);
+            FutureTask<TabState> prefetchedState = mPrefetchedTabStates.get(tabToRestore.id);
+            mPrefetchedTabStates.remove(tabToRestore.id);
+            prefetchTabStates();
+            mLoadTabTask = new LoadTabTask(tabToRestore, prefetchedState);
             mLoadTabTask.execute();
         }
     }
 
+    /**
+     * Starts restoring the TabStates of the tabs at the head of the restore queue on
+     * {@link #RESTORE_EXECUTOR}.  Reading and decoding (or decrypting) several TabStates happens in
+     * parallel, while the LoadTabTask chain still adds the tabs to the model one at a time and in
+     * queue order.
+     */
+    private void prefetchTabStates() {
+        Iterator<TabRestoreDetails> iterator = mTabsToRestore.iterator();
+        for (int i = 0; i < TAB_RESTORE_LOOKAHEAD && iterator.hasNext(); i++) {
+            TabRestoreDetails details = iterator.next();
+            if (mPrefetchedTabStates.get(details.id) != null) continue;
+
+            final int tabId = details.id;
+            FutureTask<TabState> task = new FutureTask<>(new Callable<TabState>() {
+                @Override
+                public TabState call() {
+                    return TabState.restoreTabState(getStateDirectory(), tabId);
+                }
+            });
+            mPrefetchedTabStates.put(tabId, task);
+            RESTORE_EXECUTOR.execute(task);
+        }
+    }
+
+    private void cancelPrefetchedTabState(int tabId) {
+        FutureTask<TabState> task = mPrefetchedTabStates.get(tabId);
+        if (task == null) return;
+        task.cancel(false);
+        mPrefetchedTabStates.remove(tabId);
+    }
+
     /**
      * Asynchronously triggers a cleanup of any unused persistent data.
      */
@@ -1205,6 +1633,20 @@ public class TabPersistentStore extends TabPersister {
         new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... voids) {
+                // Unencrypted TabStates may also live in the segment store.
+                Pair<Integer, Boolean> tabInfo = TabState.parseInfoFromFilename(file);
+                if (tabInfo != null && !tabInfo.second) {
+                    getSegmentStore().deleteTabState(tabInfo.first);
+                }
+
+                // Metadata files may be accompanied by a journal.
+                if (isStateFile(file)) {
+                    synchronized (SAVE_LIST_LOCK) {
+                        TabMetadataJournal.deleteJournal(
+                                TabMetadataJournal.getJournalFile(getStateDirectory(), file));
+                    }
+                }
+
                 File stateFile = new File(getStateDirectory(), file);
                 if (stateFile.exists()) {
                     if (!stateFile.delete()) Log.e(TAG, "Failed to delete file: " + stateFile);
@@ -1224,15 +1666,23 @@ public class TabPersistentStore extends TabPersister {
 
     private class LoadTabTask extends AsyncTask<Void, Void, TabState> {
         public final TabRestoreDetails mTabToRestore;
+        private final FutureTask<TabState> mPrefetchedState;
 
-        public LoadTabTask(TabRestoreDetails tabToRestore) {
+        /**
+         * @param tabToRestore    Details of the tab to restore.
+         * @param prefetchedState Restore of the TabState that was already started, or null.
+         */
+        public LoadTabTask(TabRestoreDetails tabToRestore,
+                @Nullable FutureTask<TabState> prefetchedState) {
             mTabToRestore = tabToRestore;
+            mPrefetchedState = prefetchedState;
         }
 
         @Override
         protected TabState doInBackground(Void... voids) {
             if (mDestroyed || isCancelled()) return null;
             try {
+                if (mPrefetchedState != null) return mPrefetchedState.get();
                 return TabState.restoreTabState(getStateDirectory(), mTabToRestore.id);
             } catch (Exception e) {
                 Log.w(TAG, "Unable to read state: " + e);
@@ -1313,17 +1763,12 @@ public class TabPersistentStore extends TabPersister {
                             "Android.TabPersistentStore.MergeStateMetadataFileSize",
                             (int) stateFile.length());
                 }
-                FileInputStream stream = null;
                 byte[] data;
                 try {
-                    stream = new FileInputStream(stateFile);
-                    data = new byte[(int) stateFile.length()];
-                    stream.read(data);
+                    data = TabMetadataJournal.readMetadataFile(stateFile);
                 } catch (IOException exception) {
                     Log.e(TAG, "Could not read state file.", exception);
                     return null;
-                } finally {
-                    StreamUtil.closeQuietly(stream);
                 }
                 Log.w(TAG, "Finished fetching tab list.");
                 return new DataInputStream(new ByteArrayInputStream(data));
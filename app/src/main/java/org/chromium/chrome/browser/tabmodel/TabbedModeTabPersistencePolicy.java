@@ -15,18 +15,17 @@ import org.chromium.base.Callback;
 import org.chromium.base.ContextUtils;
 import org.chromium.base.Log;
 import org.chromium.base.PathUtils;
-import org.chromium.base.StreamUtil;
 import org.chromium.base.ThreadUtils;
 import org.chromium.base.VisibleForTesting;
 import org.chromium.base.library_loader.LibraryLoader;
 import org.chromium.base.metrics.RecordHistogram;
 import org.chromium.chrome.browser.TabState;
+import org.chromium.chrome.browser.TabStateSegmentStore;
 import org.chromium.chrome.browser.compositor.layouts.content.TabContentManager;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -377,6 +376,7 @@ public class TabbedModeTabPersistencePolicy implements TabPersistencePolicy {
         private final Callback<List<String>> mFilesToDeleteCallback;
 
         private String[] mTabFileNames;
+        private int[] mSegmentTabIds;
         private String[] mThumbnailFileNames;
         private SparseBooleanArray mOtherTabIds;
 
@@ -389,6 +389,7 @@ public class TabbedModeTabPersistencePolicy implements TabPersistencePolicy {
             if (mDestroyed) return null;
 
             mTabFileNames = getOrCreateStateDirectory().list();
+            mSegmentTabIds = TabStateSegmentStore.getTabIds(getOrCreateStateDirectory());
             String thumbnailDirectory = PathUtils.getThumbnailCacheDirectory();
             mThumbnailFileNames = new File(thumbnailDirectory).list();
 
@@ -413,6 +414,11 @@ public class TabbedModeTabPersistencePolicy implements TabPersistencePolicy {
                         }
                     }
                 }
+                for (int tabId : mSegmentTabIds) {
+                    if (shouldDeleteTabFile(tabId, tabWindowManager)) {
+                        filesToDelete.add(TabState.getTabStateFilename(tabId, false));
+                    }
+                }
                 mFilesToDeleteCallback.onResult(filesToDelete);
             }
             if (mTabContentManager != null && mThumbnailFileNames != null) {
@@ -447,15 +453,12 @@ public class TabbedModeTabPersistencePolicy implements TabPersistencePolicy {
 
                 File metadataFile = new File(getOrCreateStateDirectory(), getStateFileName(i));
                 if (metadataFile.exists()) {
-                    DataInputStream stream = null;
                     try {
-                        stream = new DataInputStream(
-                                new BufferedInputStream(new FileInputStream(metadataFile)));
+                        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(
+                                TabMetadataJournal.readMetadataFile(metadataFile)));
                         TabPersistentStore.readSavedStateFile(stream, null, tabIds, false);
                     } catch (Exception e) {
                         Log.e(TAG, "Unable to read state for " + metadataFile.getName() + ": " + e);
-                    } finally {
-                        StreamUtil.closeQuietly(stream);
                     }
                 }
             }
@@ -8,7 +8,10 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
+import android.text.TextUtils;
+import android.util.Base64;
 
 import org.chromium.base.ContextUtils;
 import org.chromium.base.ThreadUtils;
@@ -19,6 +22,7 @@ import org.chromium.chrome.browser.ShortcutSource;
 import org.chromium.chrome.browser.util.IntentUtils;
 import org.chromium.content_public.common.ScreenOrientationValues;
 
+import java.io.ByteArrayOutputStream;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,11 +33,16 @@ import java.util.concurrent.TimeUnit;
 public class WebappDataStorage {
 
     static final String SHARED_PREFS_FILE_PREFIX = "webapp_";
+    // Base64 encoded splash screen image.  Only read to migrate it to the WebappIconStore.
     static final String KEY_SPLASH_ICON = "splash_icon";
+    // Name of the WebappIconStore file containing the splash screen image.
+    static final String KEY_SPLASH_ICON_FILE = "splash_icon_file";
     static final String KEY_LAST_USED = "last_used";
     static final String KEY_URL = "url";
     static final String KEY_SCOPE = "scope";
     static final String KEY_ICON = "icon";
+    // Name of the WebappIconStore file containing the icon, once it was moved out of KEY_ICON.
+    static final String KEY_ICON_FILE = "icon_file";
     static final String KEY_NAME = "name";
     static final String KEY_SHORT_NAME = "short_name";
     static final String KEY_DISPLAY_MODE = "display_mode";
@@ -148,8 +157,8 @@ public class WebappDataStorage {
         new AsyncTask<Void, Void, Bitmap>() {
             @Override
             protected final Bitmap doInBackground(Void... nothing) {
-                return ShortcutHelper.decodeBitmapFromString(
-                        mPreferences.getString(KEY_SPLASH_ICON, null));
+                return getImage(KEY_SPLASH_ICON_FILE, KEY_SPLASH_ICON,
+                        WebappIconStore.KIND_SPLASH);
             }
 
             @Override
@@ -161,12 +170,81 @@ public class WebappDataStorage {
     }
 
     /**
-     * Update the splash screen image associated with the web app with the specified data. The image
-     * must have been encoded using {@link ShortcutHelper#encodeBitmapAsString}.
-     * @param splashScreenImage The image which should be shown on the splash screen of the web app.
+     * Asynchronously updates the splash screen image associated with the web app. The image is
+     * encoded and written to the {@link WebappIconStore} on a background thread.
+     * @param splashScreenImage The image which should be shown on the splash screen of the web app,
+     *                          or null if there is no image to show.
      */
-    public void updateSplashScreenImage(String splashScreenImage) {
-        mPreferences.edit().putString(KEY_SPLASH_ICON, splashScreenImage).apply();
+    public void updateSplashScreenImage(final Bitmap splashScreenImage) {
+        new AsyncTask<Void, Void, String>() {
+            @Override
+            protected final String doInBackground(Void... nothing) {
+                if (splashScreenImage == null) return null;
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                splashScreenImage.compress(Bitmap.CompressFormat.PNG, 100, output);
+                return WebappIconStore.writeImage(
+                        mId, WebappIconStore.KIND_SPLASH, output.toByteArray());
+            }
+
+            @Override
+            protected final void onPostExecute(String fileName) {
+                mPreferences.edit()
+                        .putString(KEY_SPLASH_ICON_FILE, fileName)
+                        .remove(KEY_SPLASH_ICON)
+                        .apply();
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Moves the images still stored as Base64 strings in the SharedPreferences into the
+     * {@link WebappIconStore}.  Must not be called on the main thread.
+     */
+    void migrateImagesToIconStore() {
+        assert !ThreadUtils.runningOnUiThread();
+        migrateImage(KEY_SPLASH_ICON_FILE, KEY_SPLASH_ICON, WebappIconStore.KIND_SPLASH);
+        migrateImage(KEY_ICON_FILE, KEY_ICON, WebappIconStore.KIND_ICON);
+    }
+
+    /**
+     * Returns an image of the web app, reading it from the {@link WebappIconStore} and falling
+     * back to (and migrating) the Base64 string stored in the SharedPreferences.
+     * @param fileKey   Key of the name of the WebappIconStore file.
+     * @param legacyKey Key of the Base64 encoded image.
+     * @param kind      Kind of the image in the WebappIconStore.
+     * @return The decoded image, or null if there is none.
+     */
+    private Bitmap getImage(String fileKey, String legacyKey, String kind) {
+        String fileName = mPreferences.getString(fileKey, null);
+        if (fileName != null && !mPreferences.contains(legacyKey)) {
+            return WebappIconStore.readImage(fileName);
+        }
+
+        byte[] encodedImage = migrateImage(fileKey, legacyKey, kind);
+        if (encodedImage == null) return null;
+        return BitmapFactory.decodeByteArray(encodedImage, 0, encodedImage.length);
+    }
+
+    /**
+     * Writes the image stored as a Base64 string under {@code legacyKey} to the
+     * {@link WebappIconStore}, and replaces the string with the name of the file.
+     * @return The encoded image, or null if there was no image to migrate.
+     */
+    private byte[] migrateImage(String fileKey, String legacyKey, String kind) {
+        String encodedString = mPreferences.getString(legacyKey, null);
+        if (encodedString == null) return null;
+
+        byte[] encodedImage = TextUtils.isEmpty(encodedString)
+                ? null : Base64.decode(encodedString, Base64.DEFAULT);
+        String fileName = encodedImage == null
+                ? null : WebappIconStore.writeImage(mId, kind, encodedImage);
+        if (encodedImage == null || fileName != null) {
+            // Only drop the string if it wasn't replaced while the file was being written.
+            if (encodedString.equals(mPreferences.getString(legacyKey, null))) {
+                mPreferences.edit().putString(fileKey, fileName).remove(legacyKey).apply();
+            }
+        }
+        return encodedImage;
     }
 
     /**
@@ -188,8 +266,7 @@ public class WebappDataStorage {
                 mPreferences.getString(KEY_SCOPE, null),
                 mPreferences.getString(KEY_NAME, null),
                 mPreferences.getString(KEY_SHORT_NAME, null),
-                ShortcutHelper.decodeBitmapFromString(
-                        mPreferences.getString(KEY_ICON, null)), version,
+                getImage(KEY_ICON_FILE, KEY_ICON, WebappIconStore.KIND_ICON), version,
                 mPreferences.getInt(KEY_DISPLAY_MODE, WebDisplayMode.Standalone),
                 mPreferences.getInt(KEY_ORIENTATION, ScreenOrientationValues.DEFAULT),
                 mPreferences.getLong(KEY_THEME_COLOR,
@@ -208,6 +285,7 @@ public class WebappDataStorage {
 
         SharedPreferences.Editor editor = mPreferences.edit();
         boolean updated = false;
+        boolean scopeUpdated = false;
 
         // The URL and scope may have been deleted by the user clearing their history. Check whether
         // they are present, and update if necessary.
@@ -226,6 +304,7 @@ public class WebappDataStorage {
             }
             editor.putString(KEY_SCOPE, scope);
             updated = true;
+            scopeUpdated = true;
         }
 
         // For all other fields, assume that if the version key is present and equal to
@@ -266,6 +345,7 @@ public class WebappDataStorage {
             updated = true;
         }
         if (updated) editor.apply();
+        if (scopeUpdated) WebappRegistry.getInstance().onScopeUpdated(mId, this);
     }
 
     /**
@@ -283,6 +363,13 @@ public class WebappDataStorage {
      */
     void delete() {
         mPreferences.edit().clear().apply();
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected final Void doInBackground(Void... nothing) {
+                WebappIconStore.deleteImages(mId);
+                return null;
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
     /**
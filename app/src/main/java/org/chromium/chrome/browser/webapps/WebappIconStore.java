@@ -0,0 +1,157 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.webapps;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import org.chromium.base.ContextUtils;
+import org.chromium.base.Log;
+import org.chromium.base.StreamUtil;
+import org.chromium.base.ThreadUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the images of web apps, e.g. their splash screen images, as encoded image files rather
+ * than as Base64 strings in their SharedPreferences.  This keeps the SharedPreferences files small,
+ * so that opening them doesn't require parsing large blobs, and lets images be decoded straight
+ * from disk.  Decoded images are kept in a memory cache.
+ *
+ * Files are named after the ID of the web app, the kind of image and the hash of its contents, so
+ * a file name identifies one version of an image.  All methods do disk I/O and must not be called
+ * on the UI thread.
+ */
+public class WebappIconStore {
+    private static final String TAG = "WebappIconStore";
+
+    static final String IMAGE_DIRECTORY_NAME = "webapp_images";
+    static final String KIND_SPLASH = "splash";
+    static final String KIND_ICON = "icon";
+
+    private static final char SEPARATOR = '_';
+    private static final String FILE_EXTENSION = ".img";
+
+    /** Maximum size of the decoded images kept in memory. */
+    private static final int MEMORY_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> sImageCache =
+            new LruCache<String, Bitmap>(MEMORY_CACHE_SIZE_BYTES) {
+                @Override
+                protected int sizeOf(String fileName, Bitmap image) {
+                    return image.getByteCount();
+                }
+            };
+
+    /** Guards the files in the image directory. */
+    private static final Object sLock = new Object();
+
+    private WebappIconStore() {}
+
+    /**
+     * Writes an encoded image, and deletes the previous image of the same kind for the web app.
+     * @param webappId     The ID of the web app.
+     * @param kind         The kind of image, e.g. {@link #KIND_SPLASH}.
+     * @param encodedImage The image, encoded in a format that {@link BitmapFactory} can decode.
+     * @return The name of the file containing the image, or null if it couldn't be written.
+     */
+    static String writeImage(String webappId, String kind, byte[] encodedImage) {
+        assert !ThreadUtils.runningOnUiThread();
+        CRC32 crc = new CRC32();
+        crc.update(encodedImage);
+        String fileName = webappId + SEPARATOR + kind + SEPARATOR
+                + Long.toHexString(crc.getValue()) + FILE_EXTENSION;
+
+        synchronized (sLock) {
+            File directory = getDirectory();
+            File file = new File(directory, fileName);
+            if (!file.exists()) {
+                File tempFile = new File(directory, fileName + ".tmp");
+                FileOutputStream stream = null;
+                boolean written = false;
+                try {
+                    stream = new FileOutputStream(tempFile);
+                    stream.write(encodedImage);
+                    written = true;
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to write file: " + tempFile.getName());
+                } finally {
+                    StreamUtil.closeQuietly(stream);
+                }
+                if (!written || !tempFile.renameTo(file)) {
+                    if (written) Log.e(TAG, "Failed to rename file: " + tempFile.getName());
+                    tempFile.delete();
+                    return null;
+                }
+            }
+            deleteImages(webappId, kind, fileName);
+        }
+        return fileName;
+    }
+
+    /**
+     * @param fileName Name of the file returned by {@link #writeImage}.
+     * @return The decoded image, or null if the file doesn't exist or couldn't be decoded.
+     */
+    static Bitmap readImage(String fileName) {
+        assert !ThreadUtils.runningOnUiThread();
+        Bitmap image = sImageCache.get(fileName);
+        if (image != null) return image;
+
+        File file = new File(getDirectory(), fileName);
+        if (!file.exists()) return null;
+        image = BitmapFactory.decodeFile(file.getPath());
+        if (image != null) sImageCache.put(fileName, image);
+        return image;
+    }
+
+    /**
+     * Deletes all images of a web app.
+     * @param webappId The ID of the web app.
+     */
+    static void deleteImages(String webappId) {
+        assert !ThreadUtils.runningOnUiThread();
+        synchronized (sLock) {
+            deleteImages(webappId, null, null);
+        }
+    }
+
+    /**
+     * Deletes the images of a web app.  Must be called while holding {@link #sLock}.
+     * @param webappId     The ID of the web app.
+     * @param kind         The kind of images to delete, or null to delete images of all kinds.
+     * @param fileToKeep   Name of a file not to delete, or null.
+     */
+    private static void deleteImages(String webappId, String kind, String fileToKeep) {
+        File[] files = getDirectory().listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String fileName = file.getName();
+            if (fileName.equals(fileToKeep)) continue;
+            if (!fileName.startsWith(webappId + SEPARATOR)) continue;
+
+            // Web app IDs may contain the separator, so parse the kind from the end.
+            int hashStart = fileName.lastIndexOf(SEPARATOR);
+            int kindStart = fileName.lastIndexOf(SEPARATOR, hashStart - 1);
+            if (kindStart != webappId.length()) continue;
+            if (kind != null && !kind.equals(fileName.substring(kindStart + 1, hashStart))) {
+                continue;
+            }
+
+            sImageCache.remove(fileName);
+            if (!file.delete()) Log.e(TAG, "Failed to delete file: " + fileName);
+        }
+    }
+
+    private static File getDirectory() {
+        return ContextUtils.getApplicationContext().getDir(
+                IMAGE_DIRECTORY_NAME, Context.MODE_PRIVATE);
+    }
+}
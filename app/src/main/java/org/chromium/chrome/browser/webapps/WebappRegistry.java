@@ -11,14 +11,17 @@ import android.content.pm.PackageManager.NameNotFoundException;
 import android.os.AsyncTask;
 
 import org.chromium.base.ContextUtils;
+import org.chromium.base.ThreadUtils;
 import org.chromium.base.VisibleForTesting;
 import org.chromium.base.annotations.CalledByNative;
 import org.chromium.chrome.browser.browsing_data.UrlFilter;
 import org.chromium.chrome.browser.browsing_data.UrlFilterBridge;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -56,6 +59,7 @@ public class WebappRegistry {
     }
 
     private HashMap<String, WebappDataStorage> mStorages;
+    private WebappScopeIndex mScopeIndex;
     private SharedPreferences mPreferences;
 
     /**
@@ -69,6 +73,7 @@ public class WebappRegistry {
     private WebappRegistry() {
         mPreferences = openSharedPreferences();
         mStorages = new HashMap<>();
+        mScopeIndex = new WebappScopeIndex();
     }
 
     /**
@@ -93,6 +98,31 @@ public class WebappRegistry {
         getInstance().initStorages(null, false);
     }
 
+    /**
+     * Moves the images of all web apps that are still stored as Base64 strings in their
+     * SharedPreferences into the {@link WebappIconStore}.  The web apps are collected on the UI
+     * thread, where the registry is modified, and their images are migrated on a background
+     * thread.  Should be called after {@link #warmUpSharedPrefs()}.
+     */
+    public static void migrateImagesToIconStore() {
+        ThreadUtils.postOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final List<WebappDataStorage> storages =
+                        new ArrayList<WebappDataStorage>(getInstance().mStorages.values());
+                new AsyncTask<Void, Void, Void>() {
+                    @Override
+                    protected final Void doInBackground(Void... nothing) {
+                        for (WebappDataStorage storage : storages) {
+                            storage.migrateImagesToIconStore();
+                        }
+                        return null;
+                    }
+                }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            }
+        });
+    }
+
     @VisibleForTesting
     public static void refreshSharedPrefsForTesting() {
         Holder.sInstance = new WebappRegistry();
@@ -120,6 +150,7 @@ public class WebappRegistry {
                 // Guarantee that last used time != WebappDataStorage.LAST_USED_INVALID. Must be
                 // run on the main thread as SharedPreferences.Editor.apply() is called.
                 mStorages.put(webappId, storage);
+                mScopeIndex.put(webappId, storage);
                 mPreferences.edit().putStringSet(KEY_WEBAPP_SET, mStorages.keySet()).apply();
                 storage.updateLastUsedTime();
                 if (callback != null) callback.onWebappDataStorageRetrieved(storage);
@@ -144,17 +175,18 @@ public class WebappRegistry {
      * @return The storage object for the web app, or null if one cannot be found.
      */
     public WebappDataStorage getWebappDataStorageForUrl(final String url) {
-        WebappDataStorage bestMatch = null;
-        int largestOverlap = 0;
-        for (HashMap.Entry<String, WebappDataStorage> entry : mStorages.entrySet()) {
-            WebappDataStorage storage = entry.getValue();
-            String scope = storage.getScope();
-            if (url.startsWith(scope) && scope.length() > largestOverlap) {
-                bestMatch = storage;
-                largestOverlap = scope.length();
-            }
-        }
-        return bestMatch;
+        return mScopeIndex.findLongestMatch(url);
+    }
+
+    /**
+     * Called when the scope stored in a WebappDataStorage has changed, so that the storage can be
+     * found by {@link #getWebappDataStorageForUrl}.
+     * @param webappId The id of the web app.
+     * @param storage  The storage object for the web app.
+     */
+    void onScopeUpdated(String webappId, WebappDataStorage storage) {
+        if (mStorages.get(webappId) != storage) return;
+        mScopeIndex.put(webappId, storage);
     }
 
     /**
@@ -195,6 +227,7 @@ public class WebappRegistry {
             }
             storage.delete();
             it.remove();
+            mScopeIndex.remove(entry.getKey());
         }
 
         mPreferences.edit()
@@ -216,11 +249,14 @@ public class WebappRegistry {
             if (urlFilter.matchesUrl(storage.getUrl())) {
                 storage.delete();
                 it.remove();
+                mScopeIndex.remove(entry.getKey());
             }
         }
 
         if (mStorages.isEmpty()) {
             mPreferences.edit().clear().apply();
+            // Drop anything the index still holds, so that it can't outlive the registry.
+            mScopeIndex.clear();
         } else {
             mPreferences.edit().putStringSet(KEY_WEBAPP_SET, mStorages.keySet()).apply();
         }
@@ -243,6 +279,7 @@ public class WebappRegistry {
             WebappDataStorage storage = entry.getValue();
             if (urlFilter.matchesUrl(storage.getUrl())) {
                 storage.clearHistory();
+                mScopeIndex.remove(entry.getKey());
             }
         }
     }
@@ -280,14 +317,19 @@ public class WebappRegistry {
         if (initAll) {
             for (String id : webapps) {
                 if (replaceExisting || !mStorages.containsKey(id)) {
-                    mStorages.put(id, WebappDataStorage.open(id));
+                    putStorage(id, WebappDataStorage.open(id));
                 }
             }
         } else {
             if (webapps.contains(idToInitialize)
                     && (replaceExisting || !mStorages.containsKey(idToInitialize))) {
-                mStorages.put(idToInitialize, WebappDataStorage.open(idToInitialize));
+                putStorage(idToInitialize, WebappDataStorage.open(idToInitialize));
             }
         }
     }
+
+    private void putStorage(String webappId, WebappDataStorage storage) {
+        mStorages.put(webappId, storage);
+        mScopeIndex.put(webappId, storage);
+    }
 }
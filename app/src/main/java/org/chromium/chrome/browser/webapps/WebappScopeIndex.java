@@ -0,0 +1,153 @@
+// Copyright 2017 The Chromium Authors. All rights reserved.
+// Use of this source code is governed by a BSD-style license that can be
+// found in the LICENSE file.
+
+package org.chromium.chrome.browser.webapps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index of the scopes of the web apps known to {@link WebappRegistry}, used to find the web app
+ * whose scope is the longest prefix of a URL without comparing the URL against every scope.
+ *
+ * Scopes are stored in a character trie, so a lookup only walks the characters of the URL that
+ * some scope starts with.  As scopes are read from SharedPreferences, the index must be told
+ * whenever the scope of a web app may have changed.  Web apps are indexed from background threads
+ * while the registry is being initialized, and looked up on the UI thread, so all accesses to the
+ * index are synchronized on it.
+ */
+class WebappScopeIndex {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static class Node {
+        // Children are kept in parallel arrays, as most nodes only have one or two of them.
+        char[] mKeys = NO_KEYS;
+        Node[] mChildren = NO_CHILDREN;
+        int mChildCount;
+
+        // IDs of the web apps whose scope ends at this node, mapped to their storage.
+        HashMap<String, WebappDataStorage> mStorages;
+
+        Node getChild(char key) {
+            for (int i = 0; i < mChildCount; i++) {
+                if (mKeys[i] == key) return mChildren[i];
+            }
+            return null;
+        }
+
+        Node getOrCreateChild(char key) {
+            Node child = getChild(key);
+            if (child != null) return child;
+
+            if (mChildCount == mKeys.length) {
+                int capacity = Math.max(2, mChildCount * 2);
+                char[] keys = new char[capacity];
+                Node[] children = new Node[capacity];
+                System.arraycopy(mKeys, 0, keys, 0, mChildCount);
+                System.arraycopy(mChildren, 0, children, 0, mChildCount);
+                mKeys = keys;
+                mChildren = children;
+            }
+            child = new Node();
+            mKeys[mChildCount] = key;
+            mChildren[mChildCount] = child;
+            mChildCount++;
+            return child;
+        }
+
+        void removeChild(Node child) {
+            for (int i = 0; i < mChildCount; i++) {
+                if (mChildren[i] != child) continue;
+                mChildCount--;
+                mKeys[i] = mKeys[mChildCount];
+                mChildren[i] = mChildren[mChildCount];
+                mChildren[mChildCount] = null;
+                return;
+            }
+        }
+
+        boolean isEmpty() {
+            return mChildCount == 0 && mStorages == null;
+        }
+    }
+
+    private Node mRoot = new Node();
+
+    // Scope that each web app is currently indexed under, keyed by web app ID.
+    private final HashMap<String, String> mIndexedScopes = new HashMap<>();
+
+    /**
+     * Indexes a web app under its current scope, replacing any previous entry for the web app.
+     * Web apps without a valid scope are not indexed.
+     * @param webappId The ID of the web app.
+     * @param storage  The storage of the web app.
+     */
+    synchronized void put(String webappId, WebappDataStorage storage) {
+        remove(webappId);
+
+        String scope = storage.getScope();
+        if (scope == null || scope.isEmpty()) return;
+
+        Node node = mRoot;
+        for (int i = 0; i < scope.length(); i++) {
+            node = node.getOrCreateChild(scope.charAt(i));
+        }
+        if (node.mStorages == null) node.mStorages = new HashMap<>();
+        node.mStorages.put(webappId, storage);
+        mIndexedScopes.put(webappId, scope);
+    }
+
+    /**
+     * Removes a web app from the index.
+     * @param webappId The ID of the web app.
+     */
+    synchronized void remove(String webappId) {
+        String scope = mIndexedScopes.remove(webappId);
+        if (scope == null) return;
+
+        List<Node> path = new ArrayList<>(scope.length() + 1);
+        Node node = mRoot;
+        path.add(node);
+        for (int i = 0; i < scope.length() && node != null; i++) {
+            node = node.getChild(scope.charAt(i));
+            path.add(node);
+        }
+        if (node == null || node.mStorages == null) return;
+
+        node.mStorages.remove(webappId);
+        if (node.mStorages.isEmpty()) node.mStorages = null;
+
+        // Prune the nodes that no longer lead to any scope.
+        for (int i = path.size() - 1; i > 0 && path.get(i).isEmpty(); i--) {
+            path.get(i - 1).removeChild(path.get(i));
+        }
+    }
+
+    /**
+     * Removes all web apps from the index.
+     */
+    synchronized void clear() {
+        mRoot = new Node();
+        mIndexedScopes.clear();
+    }
+
+    /**
+     * @param url The URL to search for.
+     * @return The storage of a web app whose scope is the longest prefix of the URL, or null if
+     *         no scope is a prefix of the URL.
+     */
+    synchronized WebappDataStorage findLongestMatch(String url) {
+        HashMap<String, WebappDataStorage> bestMatches = null;
+        Node node = mRoot;
+        for (int i = 0; i < url.length(); i++) {
+            node = node.getChild(url.charAt(i));
+            if (node == null) break;
+            if (node.mStorages != null) bestMatches = node.mStorages;
+        }
+        if (bestMatches == null) return null;
+        return bestMatches.values().iterator().next();
+    }
+}